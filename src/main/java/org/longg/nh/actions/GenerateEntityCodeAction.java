@@ -137,7 +137,8 @@ public class GenerateEntityCodeAction extends AnAction {
             entityName + "Service.java",
             entityName + "ServiceImpl.java",
             entityName + "Controller.java",
-            entityName + "Filter.java"
+            entityName + "Filter.java",
+            entityName + "CacheConfig.java"
         };
         
         // Search in the source directory
@@ -17,9 +17,11 @@ import com.intellij.util.ui.JBUI;
 import com.intellij.icons.AllIcons;
 import org.jetbrains.annotations.Nullable;
 import org.longg.nh.model.ArchitectureConfig;
+import org.longg.nh.model.TextSearchStrategy;
 import org.longg.nh.model.ValidationOption;
 import org.longg.nh.service.CodeGenerationService;
 import org.longg.nh.util.JavaClassAnalyzer;
+import org.longg.nh.util.ResourceFileWriter;
 import org.longg.nh.util.JavaClassAnalyzer.ClassField;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.fileChooser.FileChooser;
@@ -51,10 +53,35 @@ public class EntityCodeGeneratorDialog extends DialogWrapper {
     private JBCheckBox generateControllerCheckbox;
     private JBCheckBox generateFilterCheckbox;
     private JBCheckBox useDtoValidationCheckbox;
+    private JBCheckBox generateBatchOperationsCheckbox;
+    private JBCheckBox generateStreamingExportCheckbox;
+    private JBCheckBox useSpringCacheCheckbox;
+    private JBCheckBox reactiveCheckbox;
+    private JBCheckBox generateIndexMigrationCheckbox;
+    private JBCheckBox boundedResultsCheckbox;
+    private JBCheckBox useSliceSearchCheckbox;
+    private JBCheckBox cacheSearchCountsCheckbox;
+    private JBCheckBox useEstimatedCountCheckbox;
+    private JBCheckBox useDirectWritesCheckbox;
+    private JBCheckBox generatePatchEndpointCheckbox;
+    private JBCheckBox generateMetricsCheckbox;
+    private JBCheckBox generateSqlStatementMonitoringCheckbox;
+    private JBCheckBox generateQueryCountTestsCheckbox;
+    private JBCheckBox useRecordsCheckbox;
+    private JBCheckBox useSecondLevelCacheCheckbox;
+    private JBCheckBox tuneFetchingCheckbox;
+    private JBCheckBox generateOpenApiSpecCheckbox;
+    private JBCheckBox useFunctionalRouterCheckbox;
+    private JBCheckBox generateNativeHintsCheckbox;
+    private JBCheckBox useBaseCrudClassesCheckbox;
+    private JBCheckBox generateFetchByIdsCheckbox;
+    private JBCheckBox generateGetSearchCheckbox;
     private JBList<String> fieldsList;
     private JList<String> filterFieldsList;
     private JButton configureValidationsButton;
+    private JButton configureTextSearchButton;
     private Map<String, ValidationOption> validationOptions = new HashMap<>();
+    private final List<String> fetchWarnings = new ArrayList<>();
     
     // Custom path fields
     private JTextField customDtoPathField;
@@ -216,11 +243,23 @@ public class EntityCodeGeneratorDialog extends DialogWrapper {
             }
         });
         filterFieldsList.setEnabled(false);
+        
+        // Add configure text search button
+        configureTextSearchButton = new JButton("Configure Text Search");
+        configureTextSearchButton.setToolTipText("Choose the search strategy of each String filter field");
+        configureTextSearchButton.setEnabled(false);
+        configureTextSearchButton.addActionListener(e -> configureTextSearch());
+        generateFilterCheckbox.addActionListener(e -> 
+            configureTextSearchButton.setEnabled(generateFilterCheckbox.isSelected()));
+        
+        JPanel filterPanel = new JPanel(new BorderLayout());
+        filterPanel.add(filterFieldsScrollPane, BorderLayout.CENTER);
+        filterPanel.add(configureTextSearchButton, BorderLayout.SOUTH);
 
         // Add field lists to a panel
         JPanel fieldListsPanel = new JPanel(new GridLayout(2, 1, 0, 10));
         fieldListsPanel.add(dtoPanel);
-        fieldListsPanel.add(filterFieldsScrollPane);
+        fieldListsPanel.add(filterPanel);
         
         fieldsPanel.add(fieldListsPanel, BorderLayout.CENTER);
         tabbedPane.addTab("Fields", fieldsPanel);
@@ -378,6 +417,9 @@ public class EntityCodeGeneratorDialog extends DialogWrapper {
         pathsPanel.add(new JPanel(), c);
         
         tabbedPane.addTab("Custom Paths", pathsPanel);
+        
+        // Options tab
+        tabbedPane.addTab("Options", createOptionsPanel());
 
         mainPanel.add(tabbedPane, BorderLayout.CENTER);
 
@@ -545,6 +587,11 @@ public class EntityCodeGeneratorDialog extends DialogWrapper {
                     }
                 });
             
+            // Associations that still load eagerly after the fetch tuning
+            if (!fetchWarnings.isEmpty()) {
+                Messages.showWarningDialog(project, String.join("\n", fetchWarnings), "Fetch Strategy");
+            }
+            
             super.doOKAction();
         } catch (Exception e) {
             e.printStackTrace();
@@ -565,6 +612,29 @@ public class EntityCodeGeneratorDialog extends DialogWrapper {
         config.setCustomRepositoryPath(customRepositoryPathField.getText().trim());
         config.setCustomControllerPath(customControllerPathField.getText().trim());
         config.setCustomFilterPath(customFilterPathField.getText().trim());
+        config.setGenerateBatchOperations(generateBatchOperationsCheckbox.isSelected());
+        config.setGenerateStreamingExport(generateStreamingExportCheckbox.isSelected());
+        config.setUseSpringCache(useSpringCacheCheckbox.isSelected());
+        config.setReactive(reactiveCheckbox.isSelected());
+        config.setGenerateIndexMigration(generateIndexMigrationCheckbox.isSelected());
+        config.setBoundedResults(boundedResultsCheckbox.isSelected());
+        config.setUseSliceSearch(useSliceSearchCheckbox.isSelected());
+        config.setCacheSearchCounts(cacheSearchCountsCheckbox.isSelected());
+        config.setUseEstimatedCount(useEstimatedCountCheckbox.isSelected());
+        config.setUseDirectWrites(useDirectWritesCheckbox.isSelected());
+        config.setGeneratePatchEndpoint(generatePatchEndpointCheckbox.isSelected());
+        config.setGenerateMetrics(generateMetricsCheckbox.isSelected());
+        config.setGenerateSqlStatementMonitoring(generateSqlStatementMonitoringCheckbox.isSelected());
+        config.setGenerateQueryCountTests(generateQueryCountTestsCheckbox.isSelected());
+        config.setUseRecords(useRecordsCheckbox.isSelected());
+        config.setUseSecondLevelCache(useSecondLevelCacheCheckbox.isSelected());
+        config.setTuneFetching(tuneFetchingCheckbox.isSelected());
+        config.setGenerateOpenApiSpec(generateOpenApiSpecCheckbox.isSelected());
+        config.setUseFunctionalRouter(useFunctionalRouterCheckbox.isSelected());
+        config.setGenerateNativeHints(generateNativeHintsCheckbox.isSelected());
+        config.setUseBaseCrudClasses(useBaseCrudClassesCheckbox.isSelected());
+        config.setGenerateFetchByIds(generateFetchByIdsCheckbox.isSelected());
+        config.setGenerateGetSearch(generateGetSearchCheckbox.isSelected());
 
         // Ensure directories exist
         List<String> directoriesToCreate = new ArrayList<>();
@@ -595,6 +665,14 @@ public class EntityCodeGeneratorDialog extends DialogWrapper {
             }
         }
 
+        // Batch fetching of the entity associations
+        fetchWarnings.clear();
+        if (config.isTuneFetching() && !config.isReactive()) {
+            fetchWarnings.addAll(codeGenerationService.tuneEntityFetching());
+            PsiClass fetchConfigClass = codeGenerationService.generateFetchConfig();
+            saveFile(fetchConfigClass.getContainingFile(), config.getConfigPackage(), "");
+        }
+
         // Generate DTO
         if (generateDtoCheckbox.isSelected() && !selectedDtoFields.isEmpty()) {
             String customDtoName = customDtoNameField.getText().trim();
@@ -611,26 +689,105 @@ public class EntityCodeGeneratorDialog extends DialogWrapper {
 
         // Generate Repository
         if (generateRepositoryCheckbox.isSelected()) {
-            PsiClass repositoryClass = codeGenerationService.generateRepository(selectedFilterFields);
+            PsiClass repositoryClass = codeGenerationService.generateRepository(selectedFilterFields, selectedDtoFields);
             PsiFile repositoryFile = repositoryClass.getContainingFile();
             saveFile(repositoryFile, config.getRepositoryPackage(), config.getCustomRepositoryPath());
             generatedClasses.put("repository", repositoryClass);
+            
+            // Projection read by the export stream
+            if (config.isGenerateStreamingExport() && !config.isReactive()) {
+                PsiClass exportRowClass = codeGenerationService.generateExportRow();
+                saveFile(exportRowClass.getContainingFile(), config.getDtoPackage(), config.getCustomDtoPath());
+            }
+            
+            // Hibernate second-level cache: annotate the entity and generate its regions
+            if (config.isUseSecondLevelCache() && !config.isReactive()) {
+                codeGenerationService.annotateEntityForSecondLevelCache();
+                PsiClass secondLevelCacheConfigClass = codeGenerationService.generateSecondLevelCacheConfig();
+                saveFile(secondLevelCacheConfigClass.getContainingFile(), config.getConfigPackage(), "");
+            }
         }
 
         // Generate Service
         if (generateServiceCheckbox.isSelected()) {
-            PsiClass serviceClass = codeGenerationService.generateService(generateRepositoryCheckbox.isSelected());
+            PsiClass serviceClass = codeGenerationService.generateService(generateRepositoryCheckbox.isSelected(), selectedDtoFields);
             PsiFile serviceFile = serviceClass.getContainingFile();
             saveFile(serviceFile, config.getServicePackage(), config.getCustomServicePath());
             generatedClasses.put("service", serviceClass);
+            
+            // Module-wide CRUD base class the entity service extends
+            if (config.isUseBaseCrudClasses() && !config.isReactive() && generateRepositoryCheckbox.isSelected()) {
+                PsiClass baseServiceClass = codeGenerationService.generateBaseCrudService();
+                saveFile(baseServiceClass.getContainingFile(), config.getServicePackage(), config.getCustomServicePath());
+            }
+            
+            // Generate cache configuration for the cached service
+            if (config.isUseSpringCache() && !config.isReactive() && generateRepositoryCheckbox.isSelected()) {
+                PsiClass cacheConfigClass = codeGenerationService.generateCacheConfig();
+                saveFile(cacheConfigClass.getContainingFile(), config.getConfigPackage(), "");
+                generatedClasses.put("cacheConfig", cacheConfigClass);
+            }
+            
+            // Field-by-field patcher behind the PATCH endpoint
+            if (config.isGeneratePatchEndpoint() && !config.isReactive() && generateRepositoryCheckbox.isSelected()) {
+                PsiClass patcherClass = codeGenerationService.generatePatcher(selectedDtoFields);
+                saveFile(patcherClass.getContainingFile(), config.getServicePackage(), config.getCustomServicePath());
+                // Hibernate chỉ UPDATE các cột thay đổi
+                codeGenerationService.annotateEntity("org.hibernate.annotations.DynamicUpdate");
+            }
+            
+            // Module-wide metrics configuration (identical for every entity)
+            if (config.isGenerateMetrics() && !config.isReactive()) {
+                PsiClass metricsConfigClass = codeGenerationService.generateMetricsConfig();
+                saveFile(metricsConfigClass.getContainingFile(), config.getConfigPackage(), "");
+            }
+            
+            // Module-wide IN-list padding behind findAllByIds
+            if (config.isGenerateFetchByIds() && !config.isReactive() && generateRepositoryCheckbox.isSelected()) {
+                PsiClass inClauseConfigClass = codeGenerationService.generateInClauseConfig();
+                saveFile(inClauseConfigClass.getContainingFile(), config.getConfigPackage(), "");
+            }
+            
+            // Module-wide SQL statement counting for non-prod profiles
+            if (config.isGenerateSqlStatementMonitoring() && !config.isReactive()) {
+                PsiClass sqlStatementConfigClass = codeGenerationService.generateSqlStatementConfig();
+                saveFile(sqlStatementConfigClass.getContainingFile(), config.getConfigPackage(), "");
+            }
         }
 
         // Generate Controller
         if (generateControllerCheckbox.isSelected()) {
-            PsiClass controllerClass = codeGenerationService.generateController(generateServiceCheckbox.isSelected());
+            PsiClass controllerClass = codeGenerationService.generateController(generateServiceCheckbox.isSelected(), selectedDtoFields);
             PsiFile controllerFile = controllerClass.getContainingFile();
             saveFile(controllerFile, config.getControllerPackage(), config.getCustomControllerPath());
             generatedClasses.put("controller", controllerClass);
+            
+            // Module-wide CRUD endpoints the entity controller extends
+            if (config.isUseBaseCrudClasses() && !config.isReactive() && !config.isUseFunctionalRouter()
+                    && generateServiceCheckbox.isSelected()) {
+                PsiClass baseControllerClass = codeGenerationService.generateBaseCrudController();
+                saveFile(baseControllerClass.getContainingFile(), config.getControllerPackage(), config.getCustomControllerPath());
+            }
+            
+            // Handler behind the functional routes
+            if (config.isUseFunctionalRouter() && !config.isReactive() && generateServiceCheckbox.isSelected()) {
+                PsiClass handlerClass = codeGenerationService.generateRouterHandler(selectedDtoFields);
+                saveFile(handlerClass.getContainingFile(), config.getControllerPackage(), config.getCustomControllerPath());
+                generatedClasses.put("handler", handlerClass);
+            }
+            
+            // Shared response type of the Slice search endpoints
+            if (config.isUseSliceSearch() && !config.isReactive() && generateServiceCheckbox.isSelected()) {
+                PsiClass sliceResponseClass = codeGenerationService.generateSliceResponse();
+                saveFile(sliceResponseClass.getContainingFile(), config.getDtoPackage(), config.getCustomDtoPath());
+            }
+        }
+        
+        // Shared Page type carrying the estimated flag of the search total
+        if (generateServiceCheckbox.isSelected() && config.isUseEstimatedCount()
+                && !config.isUseSliceSearch() && !config.isReactive()) {
+            PsiClass estimatedPageClass = codeGenerationService.generateEstimatedPage();
+            saveFile(estimatedPageClass.getContainingFile(), config.getDtoPackage(), config.getCustomDtoPath());
         }
 
         // Generate Filter
@@ -641,6 +798,51 @@ public class EntityCodeGeneratorDialog extends DialogWrapper {
             generatedClasses.put("filter", filterClass);
         }
 
+        // Generate index migration for the filter fields
+        List<PsiFile> generatedResources = new ArrayList<>();
+        if (config.isGenerateIndexMigration() && !selectedFilterFields.isEmpty()) {
+            PsiFile migrationFile = codeGenerationService.generateIndexMigration(selectedFilterFields);
+            if (migrationFile != null) {
+                generatedResources.add(saveResourceFile(migrationFile, codeGenerationService.getMigrationDirectory()));
+            }
+            
+            PsiFile textSearchMigrationFile = codeGenerationService.generateTextSearchIndexMigration(selectedFilterFields);
+            if (textSearchMigrationFile != null) {
+                generatedResources.add(saveResourceFile(textSearchMigrationFile,
+                        codeGenerationService.getTextSearchMigrationDirectory()));
+                // Chỉ profile postgresql đọc thư mục migration riêng của PostgreSQL
+                PsiFile profileFile = codeGenerationService.generatePostgresqlProfileProperties();
+                if (profileFile != null) {
+                    generatedResources.add(saveResourceFile(profileFile, codeGenerationService.getResourceDirectory()));
+                }
+            }
+        }
+
+        // Query-count regression test next to the repository and service
+        if (config.isGenerateQueryCountTests() && !config.isReactive()
+                && generateRepositoryCheckbox.isSelected() && generateServiceCheckbox.isSelected()) {
+            PsiClass testClass = codeGenerationService.generateQueryCountTest(selectedDtoFields);
+            generatedResources.add(saveResourceFile(testClass.getContainingFile(),
+                    codeGenerationService.getTestSourceDirectory()));
+        }
+
+        // Static OpenAPI spec: the entity fragment merged with the fragments of the other entities
+        if (config.isGenerateOpenApiSpec() && generateControllerCheckbox.isSelected()) {
+            PsiFile openApiFragment = codeGenerationService.generateOpenApiFragment(selectedDtoFields, selectedFilterFields,
+                    config.isUseDtoValidation() ? validationOptions : null);
+            saveResourceFile(openApiFragment, codeGenerationService.getOpenApiFragmentDirectory());
+            generatedResources.add(saveResourceFile(codeGenerationService.generateOpenApiSpec(openApiFragment),
+                    codeGenerationService.getOpenApiSpecDirectory()));
+        }
+
+        // Module-wide native image hints, covering the classes generated for every entity so far
+        if (config.isGenerateNativeHints()) {
+            PsiClass nativeHintsClass = codeGenerationService.generateNativeHints();
+            if (nativeHintsClass != null) {
+                saveFile(nativeHintsClass.getContainingFile(), config.getConfigPackage(), "");
+            }
+        }
+
         // Open generated files in editor
         for (Map.Entry<String, PsiClass> entry : generatedClasses.entrySet()) {
             PsiFile file = entry.getValue().getContainingFile();
@@ -648,6 +850,18 @@ public class EntityCodeGeneratorDialog extends DialogWrapper {
                 FileEditorManager.getInstance(project).openFile(file.getVirtualFile(), true);
             }
         }
+        for (PsiFile file : generatedResources) {
+            if (file != null && file.getVirtualFile() != null) {
+                FileEditorManager.getInstance(project).openFile(file.getVirtualFile(), true);
+            }
+        }
+    }
+
+    /**
+     * Saves a non-Java file (e.g. a migration script) under a directory relative to the project root
+     */
+    private PsiFile saveResourceFile(PsiFile file, String relativePath) {
+        return ResourceFileWriter.save(project, file, relativePath);
     }
 
     private void saveFile(PsiFile file, String packageSuffix, String customPath) {
@@ -939,6 +1153,66 @@ public class EntityCodeGeneratorDialog extends DialogWrapper {
         dialog.show();
     }
 
+    private void configureTextSearch() {
+        // Text search strategies only apply to String filter fields
+        Set<String> selectedFilterFields = new HashSet<>();
+        for (int index : filterFieldsList.getSelectedIndices()) {
+            selectedFilterFields.add(entityFields.get(index).getName());
+        }
+        
+        DefaultTableModel model = new DefaultTableModel() {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return column == 1; // Only the "Strategy" column is editable
+            }
+        };
+        
+        model.addColumn("Field");
+        model.addColumn("Strategy");
+        
+        for (ClassField field : entityFields) {
+            if (selectedFilterFields.contains(field.getName()) && field.getType().equals("String")) {
+                model.addRow(new Object[]{field.getName(), config.getTextSearchStrategy(field.getName())});
+            }
+        }
+        
+        if (model.getRowCount() == 0) {
+            Messages.showInfoMessage("No String field is selected for Filter.", "Configure Text Search");
+            return;
+        }
+        
+        JTable table = new JTable(model);
+        table.setRowHeight(30);
+        table.getColumnModel().getColumn(1).setCellEditor(
+            new DefaultCellEditor(new JComboBox<>(TextSearchStrategy.values())));
+        
+        DialogWrapper dialog = new DialogWrapper(true) {
+            {
+                init();
+                setTitle("Configure Text Search");
+            }
+            
+            @Nullable
+            @Override
+            protected JComponent createCenterPanel() {
+                JPanel panel = new JPanel(new BorderLayout());
+                panel.setPreferredSize(new Dimension(400, 300));
+                panel.add(new JScrollPane(table), BorderLayout.CENTER);
+                return panel;
+            }
+        };
+        
+        if (dialog.showAndGet()) {
+            if (table.isEditing()) {
+                table.getCellEditor().stopCellEditing();
+            }
+            for (int row = 0; row < model.getRowCount(); row++) {
+                config.getTextSearchStrategies().put(
+                    (String) model.getValueAt(row, 0), (TextSearchStrategy) model.getValueAt(row, 1));
+            }
+        }
+    }
+
     // Button renderer and editor for the validation options table
     private static class ButtonRenderer extends JButton implements TableCellRenderer {
         public ButtonRenderer() {
@@ -998,6 +1272,146 @@ public class EntityCodeGeneratorDialog extends DialogWrapper {
         }
     }
 
+    /**
+     * Creates the panel with optional generation features
+     */
+    private JPanel createOptionsPanel() {
+        JPanel optionsPanel = new JPanel(new BorderLayout());
+        optionsPanel.setBorder(JBUI.Borders.empty(10));
+        
+        generateBatchOperationsCheckbox = new JBCheckBox("Batch write endpoints");
+        generateBatchOperationsCheckbox.setToolTipText("Generate POST/PUT/DELETE /batch endpoints backed by chunked saveAll/deleteAllByIdInBatch");
+        generateBatchOperationsCheckbox.setSelected(config.isGenerateBatchOperations());
+        
+        generateStreamingExportCheckbox = new JBCheckBox("Streaming NDJSON/CSV export");
+        generateStreamingExportCheckbox.setToolTipText("Generate GET /export backed by a Stream-returning repository method");
+        generateStreamingExportCheckbox.setSelected(config.isGenerateStreamingExport());
+        
+        useSpringCacheCheckbox = new JBCheckBox("Spring Cache (Caffeine)");
+        useSpringCacheCheckbox.setToolTipText("Cache findById/search in the service and generate a Caffeine cache configuration");
+        useSpringCacheCheckbox.setSelected(config.isUseSpringCache());
+        
+        reactiveCheckbox = new JBCheckBox("Reactive (WebFlux + R2DBC)");
+        reactiveCheckbox.setToolTipText("Generate R2dbcRepository, Mono/Flux services and a WebFlux controller instead of MVC + JPA");
+        reactiveCheckbox.setSelected(config.isReactive());
+        
+        generateIndexMigrationCheckbox = new JBCheckBox("Index migration for filter fields");
+        generateIndexMigrationCheckbox.setToolTipText("Generate a " + config.getMigrationTool()
+                + " migration with single-column and composite indexes for the selected filter fields");
+        generateIndexMigrationCheckbox.setSelected(config.isGenerateIndexMigration());
+        
+        boundedResultsCheckbox = new JBCheckBox("Bounded results (max page size " + config.getMaxPageSize() + ")");
+        boundedResultsCheckbox.setToolTipText("Generate only Page and findTopNBy finders and clamp page size in the Param and service");
+        boundedResultsCheckbox.setSelected(config.isBoundedResults());
+        
+        useSliceSearchCheckbox = new JBCheckBox("Slice search (no count query)");
+        useSliceSearchCheckbox.setToolTipText("Return Slice instead of Page from paged finders and search, with a hasNext response");
+        useSliceSearchCheckbox.setSelected(config.isUseSliceSearch());
+        
+        cacheSearchCountsCheckbox = new JBCheckBox("Cache search totals (" + config.getCountCacheTtlSeconds() + "s TTL)");
+        cacheSearchCountsCheckbox.setToolTipText("Cache the Page total per filter (without page/size) instead of running count(*) on every page turn");
+        cacheSearchCountsCheckbox.setSelected(config.isCacheSearchCounts());
+        
+        useEstimatedCountCheckbox = new JBCheckBox("Estimated total for unfiltered search (PostgreSQL)");
+        useEstimatedCountCheckbox.setToolTipText("Use the planner row estimate from pg_class when no filter is set and mark the response as estimated");
+        useEstimatedCountCheckbox.setSelected(config.isUseEstimatedCount());
+        
+        useDirectWritesCheckbox = new JBCheckBox("Direct update/delete (no SELECT before write)");
+        useDirectWritesCheckbox.setToolTipText("Generate @Modifying JPQL update of the DTO fields and delete by id, one statement per write");
+        useDirectWritesCheckbox.setSelected(config.isUseDirectWrites());
+        
+        generatePatchEndpointCheckbox = new JBCheckBox("PATCH endpoint (partial update)");
+        generatePatchEndpointCheckbox.setToolTipText("Generate PATCH /{id} with a field-by-field patcher of the DTO fields and add @DynamicUpdate to the entity");
+        generatePatchEndpointCheckbox.setSelected(config.isGeneratePatchEndpoint());
+        
+        generateMetricsCheckbox = new JBCheckBox("Micrometer metrics (" + config.getMetricsPrefix() + ".*)");
+        generateMetricsCheckbox.setToolTipText("Generate @Timed with entity/operation tags, page size and result count summaries, and a MetricsConfig");
+        generateMetricsCheckbox.setSelected(config.isGenerateMetrics());
+        
+        generateSqlStatementMonitoringCheckbox = new JBCheckBox("SQL statement counting (non-prod, slow query > "
+                + config.getSlowQueryThresholdMs() + " ms)");
+        generateSqlStatementMonitoringCheckbox.setToolTipText("Generate a datasource-proxy configuration counting statements per request and service call, with metrics, response header and slow-query log");
+        generateSqlStatementMonitoringCheckbox.setSelected(config.isGenerateSqlStatementMonitoring());
+        
+        generateQueryCountTestsCheckbox = new JBCheckBox("Query-count tests (H2, @DataJpaTest)");
+        generateQueryCountTestsCheckbox.setToolTipText("Generate a test under src/test/java asserting the SQL statement count of findById, findAll and search");
+        generateQueryCountTestsCheckbox.setSelected(config.isGenerateQueryCountTests());
+        
+        useRecordsCheckbox = new JBCheckBox("Java records for DTO and Param (Java 17)");
+        useRecordsCheckbox.setToolTipText("Generate immutable records with validation on the components and a static factory from the entity");
+        useRecordsCheckbox.setSelected(config.isUseRecords());
+        
+        useSecondLevelCacheCheckbox = new JBCheckBox("Hibernate second-level cache (" + config.getSecondLevelCacheStrategy()
+                + ", " + config.getSecondLevelCacheMaxEntries() + " entries)");
+        useSecondLevelCacheCheckbox.setToolTipText("Add @Cacheable/@Cache to the entity, generate JCache (Caffeine) regions and query cache hints on the finders");
+        useSecondLevelCacheCheckbox.setSelected(config.isUseSecondLevelCache());
+        
+        tuneFetchingCheckbox = new JBCheckBox("Batch fetching (@BatchSize " + config.getBatchFetchSize()
+                + (config.isRewriteEagerToOne() ? ", EAGER @ManyToOne to LAZY)" : ", report EAGER @ManyToOne)"));
+        tuneFetchingCheckbox.setToolTipText("Add @BatchSize to lazy collections, generate HibernateFetchConfig with hibernate.default_batch_fetch_size and check EAGER to-one associations");
+        tuneFetchingCheckbox.setSelected(config.isTuneFetching());
+        
+        generateOpenApiSpecCheckbox = new JBCheckBox("Static OpenAPI spec (static/openapi.yaml)");
+        generateOpenApiSpecCheckbox.setToolTipText("Generate an OpenAPI fragment per entity and merge all fragments into one spec served as a static resource, instead of springdoc scanning at startup");
+        generateOpenApiSpecCheckbox.setSelected(config.isGenerateOpenApiSpec());
+        
+        useFunctionalRouterCheckbox = new JBCheckBox("Functional routes (RouterFunction + handler) instead of @RestController");
+        useFunctionalRouterCheckbox.setToolTipText("Register the endpoints with a WebMvc.fn RouterFunction bean and a plain handler class, no annotated controller to introspect at startup");
+        useFunctionalRouterCheckbox.setSelected(config.isUseFunctionalRouter());
+        
+        generateNativeHintsCheckbox = new JBCheckBox("Native image hints (Spring 6 RuntimeHintsRegistrar)");
+        generateNativeHintsCheckbox.setToolTipText("Generate NativeHintsConfig registering every DTO, param and entity for Jackson binding and every repository for JDK proxies");
+        generateNativeHintsCheckbox.setSelected(config.isGenerateNativeHints());
+        if (!codeGenerationService.isNativeHintsSupported()) {
+            // RuntimeHintsRegistrar chỉ có từ Spring Framework 6, không biên dịch được trên Spring Boot 2
+            generateNativeHintsCheckbox.setSelected(false);
+            generateNativeHintsCheckbox.setEnabled(false);
+            generateNativeHintsCheckbox.setToolTipText("Requires Spring Framework 6 (org.springframework.aot.hint.RuntimeHintsRegistrar) on the module classpath");
+        }
+        
+        useBaseCrudClassesCheckbox = new JBCheckBox("Shared BaseCrudService / BaseCrudController");
+        useBaseCrudClassesCheckbox.setToolTipText("Generate the CRUD methods and endpoints once per module in generic base classes, entity services and controllers only keep what is entity-specific");
+        useBaseCrudClassesCheckbox.setSelected(config.isUseBaseCrudClasses());
+        
+        generateFetchByIdsCheckbox = new JBCheckBox("Fetch by ids endpoint (POST /by-ids, IN chunks of "
+                + Integer.highestOneBit(Math.max(1, config.getInClauseChunkSize())) + ")");
+        generateFetchByIdsCheckbox.setToolTipText("Generate findAllByIds with power-of-two IN chunks and HibernateInClauseConfig enabling in_clause_parameter_padding, results in request order");
+        generateFetchByIdsCheckbox.setSelected(config.isGenerateFetchByIds());
+        
+        generateGetSearchCheckbox = new JBCheckBox("Cacheable GET /search (query string, weak ETag)");
+        generateGetSearchCheckbox.setToolTipText("Generate GET /search binding EntityParam from query parameters, with a weak ETag from the result ids and @Version values and 304 on If-None-Match");
+        generateGetSearchCheckbox.setSelected(config.isGenerateGetSearch());
+        
+        JPanel checkboxesPanel = new JPanel(new GridLayout(0, 1, 0, 10));
+        checkboxesPanel.setBorder(JBUI.Borders.empty(10));
+        checkboxesPanel.add(generateBatchOperationsCheckbox);
+        checkboxesPanel.add(generateStreamingExportCheckbox);
+        checkboxesPanel.add(useSpringCacheCheckbox);
+        checkboxesPanel.add(reactiveCheckbox);
+        checkboxesPanel.add(generateIndexMigrationCheckbox);
+        checkboxesPanel.add(boundedResultsCheckbox);
+        checkboxesPanel.add(useSliceSearchCheckbox);
+        checkboxesPanel.add(cacheSearchCountsCheckbox);
+        checkboxesPanel.add(useEstimatedCountCheckbox);
+        checkboxesPanel.add(useDirectWritesCheckbox);
+        checkboxesPanel.add(generatePatchEndpointCheckbox);
+        checkboxesPanel.add(generateMetricsCheckbox);
+        checkboxesPanel.add(generateSqlStatementMonitoringCheckbox);
+        checkboxesPanel.add(generateQueryCountTestsCheckbox);
+        checkboxesPanel.add(useRecordsCheckbox);
+        checkboxesPanel.add(useSecondLevelCacheCheckbox);
+        checkboxesPanel.add(tuneFetchingCheckbox);
+        checkboxesPanel.add(generateOpenApiSpecCheckbox);
+        checkboxesPanel.add(useFunctionalRouterCheckbox);
+        checkboxesPanel.add(generateNativeHintsCheckbox);
+        checkboxesPanel.add(useBaseCrudClassesCheckbox);
+        checkboxesPanel.add(generateFetchByIdsCheckbox);
+        checkboxesPanel.add(generateGetSearchCheckbox);
+        
+        optionsPanel.add(checkboxesPanel, BorderLayout.NORTH);
+        return optionsPanel;
+    }
+
     // In the createCenterPanel method, after creating the fieldsPanel section
     // Add DTO naming panel to the DTO panel section
     private JPanel createDtoNamingPanel() {
@@ -1233,7 +1647,8 @@ public class EntityCodeGeneratorDialog extends DialogWrapper {
             entityName + "Service.java",
             entityName + "ServiceImpl.java",
             entityName + "Controller.java",
-            entityName + "Filter.java"
+            entityName + "Filter.java",
+            entityName + "CacheConfig.java"
         };
         
         // Search in the source directory
@@ -0,0 +1,54 @@
+package org.longg.nh.inspection;
+
+import com.intellij.codeInspection.AbstractBaseJavaLocalInspectionTool;
+import com.intellij.codeInspection.LocalQuickFix;
+import com.intellij.codeInspection.ProblemDescriptor;
+import com.intellij.codeInspection.ProblemsHolder;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.longg.nh.util.JavaClassAnalyzer;
+
+/**
+ * Flags EAGER to-many associations of @Entity classes: every parent row loaded by a finder or a
+ * page also loads the whole collection
+ */
+public class EagerToManyInspection extends AbstractBaseJavaLocalInspectionTool {
+
+    @Override
+    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        return new JavaElementVisitor() {
+            @Override
+            public void visitField(@NotNull PsiField field) {
+                PsiClass entityClass = field.getContainingClass();
+                if (entityClass == null || !JavaClassAnalyzer.isEntity(entityClass)) {
+                    return;
+                }
+                PsiAnnotation association = JavaClassAnalyzer.findPersistenceAnnotation(field,
+                        "OneToMany", "ManyToMany", "ElementCollection");
+                if (association != null && JavaClassAnalyzer.isEagerFetch(association, false)) {
+                    holder.registerProblem(association,
+                            "EAGER to-many association loads the whole collection with every parent row",
+                            new LazyFetchQuickFix());
+                }
+            }
+        };
+    }
+
+    private static class LazyFetchQuickFix implements LocalQuickFix {
+
+        @Override
+        public @NotNull String getFamilyName() {
+            return "Use FetchType.LAZY with @BatchSize";
+        }
+
+        @Override
+        public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor) {
+            PsiField field = PsiTreeUtil.getParentOfType(descriptor.getPsiElement(), PsiField.class);
+            if (field != null && field.getContainingClass() != null) {
+                InspectionSupport.generator(field.getContainingClass()).lazyFetch(field);
+            }
+        }
+    }
+}
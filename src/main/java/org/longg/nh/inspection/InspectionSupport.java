@@ -0,0 +1,128 @@
+package org.longg.nh.inspection;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.psi.*;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.psi.util.PsiUtil;
+import com.intellij.refactoring.RefactoringFactory;
+import org.longg.nh.model.ArchitectureConfig;
+import org.longg.nh.service.CodeGenerationService;
+import org.longg.nh.service.ConfigurationService;
+import org.longg.nh.util.JavaClassAnalyzer;
+
+import java.util.Set;
+
+/**
+ * Shared lookups of the performance inspections: which entity a repository or service belongs to
+ * and the generator configured for the project
+ */
+final class InspectionSupport {
+
+    static final String TRANSACTIONAL = "org.springframework.transaction.annotation.Transactional";
+
+    private InspectionSupport() {
+    }
+
+    /**
+     * Entity managed by a Spring Data repository interface, i.e. the first type argument of
+     * JpaRepository&lt;E, ID&gt; (or any other Spring Data repository it extends)
+     */
+    static PsiClass repositoryEntity(PsiClass repository) {
+        if (repository == null || !repository.isInterface()) {
+            return null;
+        }
+        for (PsiClassType type : repository.getExtendsListTypes()) {
+            PsiClass superInterface = type.resolve();
+            String name = superInterface != null ? superInterface.getQualifiedName() : null;
+            if (name == null || !name.startsWith("org.springframework.data.") || type.getParameters().length == 0) {
+                continue;
+            }
+            PsiClass entity = PsiUtil.resolveClassInClassTypeOnly(type.getParameters()[0]);
+            if (entity != null && JavaClassAnalyzer.isEntity(entity)) {
+                return entity;
+            }
+        }
+        return null;
+    }
+
+    static boolean isRepository(PsiClass psiClass) {
+        if (psiClass == null || !psiClass.isInterface()) {
+            return false;
+        }
+        String name = psiClass.getQualifiedName();
+        return name != null && name.startsWith("org.springframework.data.") || repositoryEntity(psiClass) != null;
+    }
+
+    /**
+     * Entity of a @Service class, resolved through the type of its repository field
+     */
+    static PsiClass serviceEntity(PsiClass service) {
+        if (service == null || !service.hasAnnotation("org.springframework.stereotype.Service")) {
+            return null;
+        }
+        for (PsiField field : service.getFields()) {
+            PsiClass entity = repositoryEntity(PsiUtil.resolveClassInClassTypeOnly(field.getType()));
+            if (entity != null) {
+                return entity;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Derived query method: declared without a body and without @Query
+     */
+    static boolean isDerivedQuery(PsiMethod method) {
+        return method.getBody() == null && !method.hasAnnotation("org.springframework.data.jpa.repository.Query");
+    }
+
+    static boolean returnsType(PsiMethod method, String qualifiedName) {
+        PsiType returnType = method.getReturnType();
+        PsiClass returnClass = returnType != null ? PsiUtil.resolveClassInClassTypeOnly(returnType) : null;
+        return returnClass != null && qualifiedName.equals(returnClass.getQualifiedName());
+    }
+
+    static ArchitectureConfig config(Project project) {
+        return ConfigurationService.getInstance().getConfiguration(project).orElseGet(ArchitectureConfig::new);
+    }
+
+    /**
+     * Copy of the project configuration for a quick fix to change; the cached instance shared by
+     * the inspections and the generator stays as loaded until the copy is saved
+     */
+    static ArchitectureConfig configCopy(Project project) {
+        ObjectMapper mapper = new ObjectMapper();
+        try {
+            return mapper.treeToValue(mapper.valueToTree(config(project)), ArchitectureConfig.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot copy the generator configuration", e);
+        }
+    }
+
+    static CodeGenerationService generator(PsiClass entityClass) {
+        Project project = entityClass.getProject();
+        return new CodeGenerationService(project, config(project), entityClass);
+    }
+
+    /**
+     * Leading index columns of the entity table (see CodeGenerationService#knownIndexLeadingColumns),
+     * cached on the entity until a PSI change or a VFS event, e.g. an edited or added migration
+     */
+    static Set<String> knownIndexLeadingColumns(PsiClass entityClass) {
+        return CachedValuesManager.getCachedValue(entityClass, () -> CachedValueProvider.Result.create(
+                generator(entityClass).knownIndexLeadingColumns(),
+                PsiModificationTracker.MODIFICATION_COUNT, VirtualFileManager.getInstance()));
+    }
+
+    /**
+     * Renames a repository method together with its call sites; must run outside a write action
+     */
+    static void renameWithUsages(PsiMethod method, String newName) {
+        RefactoringFactory.getInstance(method.getProject()).createRename(method, newName).run();
+    }
+}
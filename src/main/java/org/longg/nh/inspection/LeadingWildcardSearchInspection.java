@@ -0,0 +1,130 @@
+package org.longg.nh.inspection;
+
+import com.intellij.codeInspection.AbstractBaseJavaLocalInspectionTool;
+import com.intellij.codeInspection.LocalQuickFix;
+import com.intellij.codeInspection.ProblemDescriptor;
+import com.intellij.codeInspection.ProblemsHolder;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.longg.nh.model.ArchitectureConfig;
+import org.longg.nh.model.TextSearchStrategy;
+import org.longg.nh.service.CodeGenerationService;
+import org.longg.nh.service.ConfigurationService;
+import org.longg.nh.util.ResourceFileWriter;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Flags derived Containing finders on String fields: they become like '%x%', which no B-tree
+ * index can serve
+ */
+public class LeadingWildcardSearchInspection extends AbstractBaseJavaLocalInspectionTool {
+
+    @Override
+    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        return new JavaElementVisitor() {
+            @Override
+            public void visitMethod(@NotNull PsiMethod method) {
+                PsiClass entityClass = InspectionSupport.repositoryEntity(method.getContainingClass());
+                if (entityClass == null || !InspectionSupport.isDerivedQuery(method)
+                        || !method.getName().contains("Containing") || method.getNameIdentifier() == null) {
+                    return;
+                }
+                List<String> fields = containingStringFields(entityClass, method.getName());
+                if (!fields.isEmpty()) {
+                    holder.registerProblem(method.getNameIdentifier(),
+                            "Containing searches with like '%x%', which cannot use an index on " + String.join(", ", fields),
+                            new PrefixSearchQuickFix(fields));
+                }
+            }
+        };
+    }
+
+    private static List<String> containingStringFields(PsiClass entityClass, String methodName) {
+        return InspectionSupport.generator(entityClass).finderFields(methodName).stream()
+                .filter(field -> containingPart(field).matcher(methodName).find())
+                .filter(field -> {
+                    PsiField psiField = entityClass.findFieldByName(field, true);
+                    return psiField != null && psiField.getType().getCanonicalText().equals("java.lang.String");
+                })
+                .toList();
+    }
+
+    /**
+     * Matches the {@code <Field>Containing[IgnoreCase]} part of a finder name, so that another property
+     * ending with the same name (firstName for name) is not taken for it
+     */
+    private static Pattern containingPart(String field) {
+        String capitalized = Character.toUpperCase(field.charAt(0)) + field.substring(1);
+        return Pattern.compile("(?<=By|And|Or)" + Pattern.quote(capitalized) + "Containing(IgnoreCase)?(?=[A-Z]|$)");
+    }
+
+    /**
+     * Switches the fields to the PREFIX text search strategy: renames their part of the finder to
+     * StartingWithIgnoreCase, the upper(x) like 'x%' that generateRepository emits, and generates the upper(x) text_pattern_ops index of generateTextSearchIndexMigration together
+     * with the postgresql profile that reads its migration directory
+     */
+    private static class PrefixSearchQuickFix implements LocalQuickFix {
+        private final List<String> fields;
+
+        PrefixSearchQuickFix(List<String> fields) {
+            this.fields = fields;
+        }
+
+        @Override
+        public @NotNull String getFamilyName() {
+            return "Use prefix search (StartingWithIgnoreCase) with a matching index";
+        }
+
+        @Override
+        public boolean startInWriteAction() {
+            return false;
+        }
+
+        @Override
+        public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor) {
+            PsiMethod method = PsiTreeUtil.getParentOfType(descriptor.getPsiElement(), PsiMethod.class);
+            PsiClass entityClass = method != null ? InspectionSupport.repositoryEntity(method.getContainingClass()) : null;
+            if (entityClass == null) {
+                return;
+            }
+            
+            // Lưu chiến lược PREFIX để các lần sinh code sau cũng dùng StartingWith
+            ArchitectureConfig config = InspectionSupport.configCopy(project);
+            Map<String, TextSearchStrategy> strategies = config.getTextSearchStrategies() == null
+                    ? new HashMap<>()
+                    : new HashMap<>(config.getTextSearchStrategies());
+            for (String field : fields) {
+                strategies.put(field, TextSearchStrategy.PREFIX);
+            }
+            config.setTextSearchStrategies(strategies);
+            ConfigurationService.getInstance().updateConfiguration(project, config);
+            
+            // Chỉ đổi phần của các trường bị báo; IgnoreCase để câu truy vấn là upper(x) like 'x%', dùng được index
+            String newName = method.getName();
+            for (String field : fields) {
+                String capitalized = Character.toUpperCase(field.charAt(0)) + field.substring(1);
+                newName = containingPart(field).matcher(newName).replaceAll(Matcher.quoteReplacement(capitalized + "StartingWithIgnoreCase"));
+            }
+            InspectionSupport.renameWithUsages(method, newName);
+            
+            CodeGenerationService generator = new CodeGenerationService(project, config, entityClass);
+            PsiFile migration = generator.generateTextSearchIndexMigration(new LinkedHashSet<>(fields));
+            if (migration != null) {
+                ResourceFileWriter.save(project, migration, generator.getTextSearchMigrationDirectory());
+                // Chỉ profile postgresql đọc thư mục migration riêng của PostgreSQL
+                PsiFile profile = generator.generatePostgresqlProfileProperties();
+                if (profile != null) {
+                    ResourceFileWriter.save(project, profile, generator.getResourceDirectory());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.longg.nh.inspection;
+
+import com.intellij.codeInspection.AbstractBaseJavaLocalInspectionTool;
+import com.intellij.codeInspection.LocalQuickFix;
+import com.intellij.codeInspection.ProblemDescriptor;
+import com.intellij.codeInspection.ProblemsHolder;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Flags entity services without a class-level @Transactional: every repository call opens its own
+ * transaction and reads keep Hibernate's dirty checking and snapshots
+ */
+public class MissingReadOnlyTransactionInspection extends AbstractBaseJavaLocalInspectionTool {
+
+    @Override
+    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        return new JavaElementVisitor() {
+            @Override
+            public void visitClass(@NotNull PsiClass aClass) {
+                if (aClass.getNameIdentifier() == null || InspectionSupport.serviceEntity(aClass) == null
+                        || aClass.hasAnnotation(InspectionSupport.TRANSACTIONAL)
+                        || aClass.hasAnnotation("javax.transaction.Transactional")
+                        || aClass.hasAnnotation("jakarta.transaction.Transactional")) {
+                    return;
+                }
+                holder.registerProblem(aClass.getNameIdentifier(),
+                        "Service reads run without a read-only transaction",
+                        new ReadOnlyTransactionQuickFix());
+            }
+        };
+    }
+
+    private static class ReadOnlyTransactionQuickFix implements LocalQuickFix {
+
+        @Override
+        public @NotNull String getFamilyName() {
+            return "Add @Transactional(readOnly = true) with @Transactional on write methods";
+        }
+
+        @Override
+        public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor) {
+            PsiClass serviceClass = PsiTreeUtil.getParentOfType(descriptor.getPsiElement(), PsiClass.class);
+            PsiClass entityClass = InspectionSupport.serviceEntity(serviceClass);
+            if (entityClass != null) {
+                InspectionSupport.generator(entityClass).addReadOnlyTransactions(serviceClass);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.longg.nh.inspection;
+
+import com.intellij.codeInspection.AbstractBaseJavaLocalInspectionTool;
+import com.intellij.codeInspection.LocalQuickFix;
+import com.intellij.codeInspection.ProblemDescriptor;
+import com.intellij.codeInspection.ProblemsHolder;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.longg.nh.dialog.EntityCodeGeneratorDialog;
+import org.longg.nh.model.ArchitectureConfig;
+
+/**
+ * Flags service methods returning a Page straight from a repository: Spring Data runs a count(*)
+ * with the same predicates on every request, which doubles the database time on large tables
+ */
+public class PageSearchCountInspection extends AbstractBaseJavaLocalInspectionTool {
+
+    private static final String PAGE = "org.springframework.data.domain.Page";
+
+    @Override
+    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        return new JavaElementVisitor() {
+            @Override
+            public void visitMethod(@NotNull PsiMethod method) {
+                if (method.getBody() == null || method.getNameIdentifier() == null
+                        || !method.hasModifierProperty(PsiModifier.PUBLIC)
+                        || !InspectionSupport.returnsType(method, PAGE)
+                        || InspectionSupport.serviceEntity(method.getContainingClass()) == null) {
+                    return;
+                }
+                for (PsiMethodCallExpression call : PsiTreeUtil.findChildrenOfType(method.getBody(), PsiMethodCallExpression.class)) {
+                    PsiMethod called = call.resolveMethod();
+                    if (called != null && InspectionSupport.isRepository(called.getContainingClass())
+                            && InspectionSupport.returnsType(called, PAGE)) {
+                        holder.registerProblem(method.getNameIdentifier(),
+                                "Page search runs a count(*) with the same filter on every request",
+                                new RegenerateSearchQuickFix(false), new RegenerateSearchQuickFix(true));
+                        return;
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Opens the generator for the entity with cached totals or Slice search selected, so the
+     * repository, service and controller are regenerated consistently
+     */
+    private static class RegenerateSearchQuickFix implements LocalQuickFix {
+        private final boolean slice;
+
+        RegenerateSearchQuickFix(boolean slice) {
+            this.slice = slice;
+        }
+
+        @Override
+        public @NotNull String getName() {
+            return slice ? "Regenerate with Slice search (no count query)" : "Regenerate with cached search totals";
+        }
+
+        @Override
+        public @NotNull String getFamilyName() {
+            return "Regenerate search";
+        }
+
+        @Override
+        public boolean startInWriteAction() {
+            return false;
+        }
+
+        @Override
+        public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor) {
+            PsiClass serviceClass = PsiTreeUtil.getParentOfType(descriptor.getPsiElement(), PsiClass.class);
+            PsiClass entityClass = InspectionSupport.serviceEntity(serviceClass);
+            if (entityClass == null) {
+                return;
+            }
+            ArchitectureConfig config = InspectionSupport.configCopy(project);
+            if (slice) {
+                config.setUseSliceSearch(true);
+            } else {
+                config.setCacheSearchCounts(true);
+            }
+            new EntityCodeGeneratorDialog(project, entityClass, config).show();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.longg.nh.inspection;
+
+import com.intellij.codeInspection.AbstractBaseJavaLocalInspectionTool;
+import com.intellij.codeInspection.LocalQuickFix;
+import com.intellij.codeInspection.ProblemDescriptor;
+import com.intellij.codeInspection.ProblemsHolder;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.regex.Pattern;
+
+/**
+ * Flags derived repository finders returning List without Top/First or a Pageable: one unselective
+ * filter value loads every matching row
+ */
+public class UnboundedListFinderInspection extends AbstractBaseJavaLocalInspectionTool {
+
+    private static final Pattern UNBOUNDED_FINDER = Pattern.compile("^(find|read|get|query|stream)(All)?By");
+
+    @Override
+    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        return new JavaElementVisitor() {
+            @Override
+            public void visitMethod(@NotNull PsiMethod method) {
+                if (InspectionSupport.repositoryEntity(method.getContainingClass()) == null
+                        || !InspectionSupport.isDerivedQuery(method)
+                        || !InspectionSupport.returnsType(method, "java.util.List")
+                        || !UNBOUNDED_FINDER.matcher(method.getName()).lookingAt()
+                        || method.getNameIdentifier() == null) {
+                    return;
+                }
+                for (PsiParameter parameter : method.getParameterList().getParameters()) {
+                    String type = parameter.getType().getCanonicalText();
+                    if (type.equals("org.springframework.data.domain.Pageable") || type.equals("org.springframework.data.domain.Limit")) {
+                        return;
+                    }
+                }
+                holder.registerProblem(method.getNameIdentifier(),
+                        "List finder without a limit loads every matching row",
+                        new BoundedFinderQuickFix());
+            }
+        };
+    }
+
+    private static class BoundedFinderQuickFix implements LocalQuickFix {
+
+        @Override
+        public @NotNull String getFamilyName() {
+            return "Rename to the bounded findTopNBy finder";
+        }
+
+        @Override
+        public boolean startInWriteAction() {
+            return false;
+        }
+
+        @Override
+        public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor) {
+            PsiMethod method = PsiTreeUtil.getParentOfType(descriptor.getPsiElement(), PsiMethod.class);
+            PsiClass entityClass = method != null ? InspectionSupport.repositoryEntity(method.getContainingClass()) : null;
+            if (entityClass == null) {
+                return;
+            }
+            // Cùng tên với finder được sinh khi bật boundedResults (N = maxPageSize)
+            String boundedName = InspectionSupport.generator(entityClass).boundedFinderName(method.getName());
+            InspectionSupport.renameWithUsages(method, boundedName);
+        }
+    }
+}
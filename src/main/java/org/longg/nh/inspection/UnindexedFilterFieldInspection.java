@@ -0,0 +1,97 @@
+package org.longg.nh.inspection;
+
+import com.intellij.codeInspection.AbstractBaseJavaLocalInspectionTool;
+import com.intellij.codeInspection.LocalQuickFix;
+import com.intellij.codeInspection.ProblemDescriptor;
+import com.intellij.codeInspection.ProblemsHolder;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.longg.nh.service.CodeGenerationService;
+import org.longg.nh.util.ResourceFileWriter;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Flags repository finders filtering on columns that no known index starts with. Only reported
+ * when the DDL of the table is known (@Table(indexes) or a migration under the migration directory)
+ */
+public class UnindexedFilterFieldInspection extends AbstractBaseJavaLocalInspectionTool {
+
+    @Override
+    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        return new JavaElementVisitor() {
+            @Override
+            public void visitMethod(@NotNull PsiMethod method) {
+                PsiClass entityClass = InspectionSupport.repositoryEntity(method.getContainingClass());
+                if (entityClass == null || !InspectionSupport.isDerivedQuery(method) || method.getNameIdentifier() == null) {
+                    return;
+                }
+                CodeGenerationService generator = InspectionSupport.generator(entityClass);
+                List<String> fields = generator.finderFields(method.getName());
+                if (fields.isEmpty()) {
+                    return;
+                }
+                // Các migration chỉ được đọc lại khi PSI hoặc VFS thay đổi
+                Set<String> indexed = InspectionSupport.knownIndexLeadingColumns(entityClass);
+                if (indexed == null) {
+                    return;
+                }
+                List<String> unindexed = fields.stream()
+                        .distinct()
+                        .filter(field -> !indexed.contains(generator.columnName(field).toLowerCase()))
+                        .toList();
+                if (!unindexed.isEmpty()) {
+                    holder.registerProblem(method.getNameIdentifier(),
+                            "No index starts with the filter column(s) of " + String.join(", ", unindexed),
+                            new GenerateIndexMigrationQuickFix(unindexed));
+                }
+            }
+        };
+    }
+
+    private static class GenerateIndexMigrationQuickFix implements LocalQuickFix {
+        private final List<String> fields;
+
+        GenerateIndexMigrationQuickFix(List<String> fields) {
+            this.fields = fields;
+        }
+
+        @Override
+        public @NotNull String getName() {
+            return "Generate index migration for " + String.join(", ", fields);
+        }
+
+        @Override
+        public @NotNull String getFamilyName() {
+            return "Generate index migration";
+        }
+
+        @Override
+        public boolean startInWriteAction() {
+            return false;
+        }
+
+        @Override
+        public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor) {
+            PsiMethod method = PsiTreeUtil.getParentOfType(descriptor.getPsiElement(), PsiMethod.class);
+            PsiClass entityClass = method != null ? InspectionSupport.repositoryEntity(method.getContainingClass()) : null;
+            if (entityClass == null) {
+                return;
+            }
+            CodeGenerationService generator = InspectionSupport.generator(entityClass);
+            PsiFile indexMigration = generator.generateIndexMigration(new LinkedHashSet<>(fields));
+            if (indexMigration == null) {
+                return;
+            }
+            PsiFile migration = ResourceFileWriter.save(project, indexMigration, generator.getMigrationDirectory());
+            if (migration != null && migration.getVirtualFile() != null) {
+                FileEditorManager.getInstance(project).openFile(migration.getVirtualFile(), true);
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.longg.nh.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -16,8 +17,10 @@ public class ArchitectureConfig {
     private String repositoryPackage;
     private String controllerPackage;
     private String filterPackage;
+    private String configPackage;
     private boolean useLombok;
     private boolean useDtoValidation;
+    private boolean reactive;
     
     // Custom paths
     private String customDtoPath;
@@ -25,6 +28,46 @@ public class ArchitectureConfig {
     private String customRepositoryPath;
     private String customControllerPath;
     private String customFilterPath;
+    
+    // Performance options
+    private boolean generateBatchOperations;
+    private int batchSize;
+    private boolean generateStreamingExport;
+    private int exportFetchSize;
+    private boolean useSpringCache;
+    private long cacheMaxSize;
+    private int cacheTtlMinutes;
+    private boolean generateIndexMigration;
+    private String migrationTool;
+    private Map<String, TextSearchStrategy> textSearchStrategies;
+    private boolean boundedResults;
+    private int maxPageSize;
+    private boolean useSliceSearch;
+    private boolean cacheSearchCounts;
+    private int countCacheTtlSeconds;
+    private boolean useEstimatedCount;
+    private boolean useDirectWrites;
+    private boolean generatePatchEndpoint;
+    private boolean generateMetrics;
+    private String metricsPrefix;
+    private boolean generateSqlStatementMonitoring;
+    private long slowQueryThresholdMs;
+    private boolean generateQueryCountTests;
+    private boolean useRecords;
+    private boolean useSecondLevelCache;
+    private String secondLevelCacheStrategy;
+    private long secondLevelCacheMaxEntries;
+    private boolean tuneFetching;
+    private int batchFetchSize;
+    private boolean rewriteEagerToOne;
+    private boolean generateOpenApiSpec;
+    private String openApiTitle;
+    private boolean useFunctionalRouter;
+    private boolean generateNativeHints;
+    private boolean useBaseCrudClasses;
+    private boolean generateFetchByIds;
+    private int inClauseChunkSize;
+    private boolean generateGetSearch;
 
     public ArchitectureConfig() {
         this.name = "Default";
@@ -34,13 +77,53 @@ public class ArchitectureConfig {
         this.repositoryPackage = "repository";
         this.controllerPackage = "controller";
         this.filterPackage = "filter";
+        this.configPackage = "config";
         this.useLombok = true;
         this.useDtoValidation = false;
+        this.reactive = false;
         this.customDtoPath = "";
         this.customServicePath = "";
         this.customRepositoryPath = "";
         this.customControllerPath = "";
         this.customFilterPath = "";
+        this.generateBatchOperations = false;
+        this.batchSize = 500;
+        this.generateStreamingExport = false;
+        this.exportFetchSize = 1000;
+        this.useSpringCache = false;
+        this.cacheMaxSize = 10000;
+        this.cacheTtlMinutes = 10;
+        this.generateIndexMigration = false;
+        this.migrationTool = "flyway";
+        this.textSearchStrategies = new LinkedHashMap<>();
+        this.boundedResults = false;
+        this.maxPageSize = 100;
+        this.useSliceSearch = false;
+        this.cacheSearchCounts = false;
+        this.countCacheTtlSeconds = 30;
+        this.useEstimatedCount = false;
+        this.useDirectWrites = false;
+        this.generatePatchEndpoint = false;
+        this.generateMetrics = false;
+        this.metricsPrefix = "crud";
+        this.generateSqlStatementMonitoring = false;
+        this.slowQueryThresholdMs = 500L;
+        this.generateQueryCountTests = false;
+        this.useRecords = false;
+        this.useSecondLevelCache = false;
+        this.secondLevelCacheStrategy = "READ_WRITE";
+        this.secondLevelCacheMaxEntries = 1000L;
+        this.tuneFetching = false;
+        this.batchFetchSize = 16;
+        this.rewriteEagerToOne = false;
+        this.generateOpenApiSpec = false;
+        this.openApiTitle = "";
+        this.useFunctionalRouter = false;
+        this.generateNativeHints = false;
+        this.useBaseCrudClasses = false;
+        this.generateFetchByIds = false;
+        this.inClauseChunkSize = 512;
+        this.generateGetSearch = false;
     }
 
     public String getName() {
@@ -99,6 +182,14 @@ public class ArchitectureConfig {
         this.filterPackage = filterPackage;
     }
 
+    public String getConfigPackage() {
+        return configPackage;
+    }
+
+    public void setConfigPackage(String configPackage) {
+        this.configPackage = configPackage;
+    }
+
     public boolean isUseLombok() {
         return useLombok;
     }
@@ -115,6 +206,14 @@ public class ArchitectureConfig {
         this.useDtoValidation = useDtoValidation;
     }
     
+    public boolean isReactive() {
+        return reactive;
+    }
+    
+    public void setReactive(boolean reactive) {
+        this.reactive = reactive;
+    }
+    
     public String getCustomDtoPath() {
         return customDtoPath;
     }
@@ -154,4 +253,318 @@ public class ArchitectureConfig {
     public void setCustomFilterPath(String customFilterPath) {
         this.customFilterPath = customFilterPath;
     }
+    
+    public boolean isGenerateBatchOperations() {
+        return generateBatchOperations;
+    }
+    
+    public void setGenerateBatchOperations(boolean generateBatchOperations) {
+        this.generateBatchOperations = generateBatchOperations;
+    }
+    
+    public int getBatchSize() {
+        return batchSize;
+    }
+    
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+    
+    public boolean isGenerateStreamingExport() {
+        return generateStreamingExport;
+    }
+    
+    public void setGenerateStreamingExport(boolean generateStreamingExport) {
+        this.generateStreamingExport = generateStreamingExport;
+    }
+    
+    public int getExportFetchSize() {
+        return exportFetchSize;
+    }
+    
+    public void setExportFetchSize(int exportFetchSize) {
+        this.exportFetchSize = exportFetchSize;
+    }
+    
+    public boolean isUseSpringCache() {
+        return useSpringCache;
+    }
+    
+    public void setUseSpringCache(boolean useSpringCache) {
+        this.useSpringCache = useSpringCache;
+    }
+    
+    public long getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+    
+    public void setCacheMaxSize(long cacheMaxSize) {
+        this.cacheMaxSize = cacheMaxSize;
+    }
+    
+    public int getCacheTtlMinutes() {
+        return cacheTtlMinutes;
+    }
+    
+    public void setCacheTtlMinutes(int cacheTtlMinutes) {
+        this.cacheTtlMinutes = cacheTtlMinutes;
+    }
+    
+    public boolean isGenerateIndexMigration() {
+        return generateIndexMigration;
+    }
+    
+    public void setGenerateIndexMigration(boolean generateIndexMigration) {
+        this.generateIndexMigration = generateIndexMigration;
+    }
+    
+    public String getMigrationTool() {
+        return migrationTool;
+    }
+    
+    public void setMigrationTool(String migrationTool) {
+        this.migrationTool = migrationTool;
+    }
+    
+    public Map<String, TextSearchStrategy> getTextSearchStrategies() {
+        return textSearchStrategies;
+    }
+    
+    public void setTextSearchStrategies(Map<String, TextSearchStrategy> textSearchStrategies) {
+        this.textSearchStrategies = textSearchStrategies;
+    }
+    
+    /**
+     * Returns the text search strategy chosen for a String filter field, defaulting to CONTAINS
+     */
+    public TextSearchStrategy getTextSearchStrategy(String fieldName) {
+        if (textSearchStrategies == null) {
+            return TextSearchStrategy.CONTAINS;
+        }
+        return textSearchStrategies.getOrDefault(fieldName, TextSearchStrategy.CONTAINS);
+    }
+    
+    public boolean isBoundedResults() {
+        return boundedResults;
+    }
+    
+    public void setBoundedResults(boolean boundedResults) {
+        this.boundedResults = boundedResults;
+    }
+    
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+    
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+    
+    public boolean isUseSliceSearch() {
+        return useSliceSearch;
+    }
+    
+    public void setUseSliceSearch(boolean useSliceSearch) {
+        this.useSliceSearch = useSliceSearch;
+    }
+    
+    public boolean isCacheSearchCounts() {
+        return cacheSearchCounts;
+    }
+    
+    public void setCacheSearchCounts(boolean cacheSearchCounts) {
+        this.cacheSearchCounts = cacheSearchCounts;
+    }
+    
+    public int getCountCacheTtlSeconds() {
+        return countCacheTtlSeconds;
+    }
+    
+    public void setCountCacheTtlSeconds(int countCacheTtlSeconds) {
+        this.countCacheTtlSeconds = countCacheTtlSeconds;
+    }
+    
+    public boolean isUseEstimatedCount() {
+        return useEstimatedCount;
+    }
+    
+    public void setUseEstimatedCount(boolean useEstimatedCount) {
+        this.useEstimatedCount = useEstimatedCount;
+    }
+    
+    public boolean isUseDirectWrites() {
+        return useDirectWrites;
+    }
+    
+    public void setUseDirectWrites(boolean useDirectWrites) {
+        this.useDirectWrites = useDirectWrites;
+    }
+    
+    public boolean isGeneratePatchEndpoint() {
+        return generatePatchEndpoint;
+    }
+    
+    public void setGeneratePatchEndpoint(boolean generatePatchEndpoint) {
+        this.generatePatchEndpoint = generatePatchEndpoint;
+    }
+    
+    public boolean isGenerateMetrics() {
+        return generateMetrics;
+    }
+    
+    public void setGenerateMetrics(boolean generateMetrics) {
+        this.generateMetrics = generateMetrics;
+    }
+    
+    public String getMetricsPrefix() {
+        return metricsPrefix;
+    }
+    
+    public void setMetricsPrefix(String metricsPrefix) {
+        this.metricsPrefix = metricsPrefix;
+    }
+    
+    public boolean isGenerateSqlStatementMonitoring() {
+        return generateSqlStatementMonitoring;
+    }
+    
+    public void setGenerateSqlStatementMonitoring(boolean generateSqlStatementMonitoring) {
+        this.generateSqlStatementMonitoring = generateSqlStatementMonitoring;
+    }
+    
+    public long getSlowQueryThresholdMs() {
+        return slowQueryThresholdMs;
+    }
+    
+    public void setSlowQueryThresholdMs(long slowQueryThresholdMs) {
+        this.slowQueryThresholdMs = slowQueryThresholdMs;
+    }
+    
+    public boolean isGenerateQueryCountTests() {
+        return generateQueryCountTests;
+    }
+    
+    public void setGenerateQueryCountTests(boolean generateQueryCountTests) {
+        this.generateQueryCountTests = generateQueryCountTests;
+    }
+    
+    public boolean isUseRecords() {
+        return useRecords;
+    }
+    
+    public void setUseRecords(boolean useRecords) {
+        this.useRecords = useRecords;
+    }
+    
+    public boolean isUseSecondLevelCache() {
+        return useSecondLevelCache;
+    }
+    
+    public void setUseSecondLevelCache(boolean useSecondLevelCache) {
+        this.useSecondLevelCache = useSecondLevelCache;
+    }
+    
+    public String getSecondLevelCacheStrategy() {
+        return secondLevelCacheStrategy;
+    }
+    
+    public void setSecondLevelCacheStrategy(String secondLevelCacheStrategy) {
+        this.secondLevelCacheStrategy = secondLevelCacheStrategy;
+    }
+    
+    public long getSecondLevelCacheMaxEntries() {
+        return secondLevelCacheMaxEntries;
+    }
+    
+    public void setSecondLevelCacheMaxEntries(long secondLevelCacheMaxEntries) {
+        this.secondLevelCacheMaxEntries = secondLevelCacheMaxEntries;
+    }
+    
+    public boolean isTuneFetching() {
+        return tuneFetching;
+    }
+    
+    public void setTuneFetching(boolean tuneFetching) {
+        this.tuneFetching = tuneFetching;
+    }
+    
+    public int getBatchFetchSize() {
+        return batchFetchSize;
+    }
+    
+    public void setBatchFetchSize(int batchFetchSize) {
+        this.batchFetchSize = batchFetchSize;
+    }
+    
+    public boolean isRewriteEagerToOne() {
+        return rewriteEagerToOne;
+    }
+    
+    public void setRewriteEagerToOne(boolean rewriteEagerToOne) {
+        this.rewriteEagerToOne = rewriteEagerToOne;
+    }
+    
+    public boolean isGenerateOpenApiSpec() {
+        return generateOpenApiSpec;
+    }
+    
+    public void setGenerateOpenApiSpec(boolean generateOpenApiSpec) {
+        this.generateOpenApiSpec = generateOpenApiSpec;
+    }
+    
+    public String getOpenApiTitle() {
+        return openApiTitle;
+    }
+    
+    public void setOpenApiTitle(String openApiTitle) {
+        this.openApiTitle = openApiTitle;
+    }
+    
+    public boolean isUseFunctionalRouter() {
+        return useFunctionalRouter;
+    }
+    
+    public void setUseFunctionalRouter(boolean useFunctionalRouter) {
+        this.useFunctionalRouter = useFunctionalRouter;
+    }
+    
+    public boolean isGenerateNativeHints() {
+        return generateNativeHints;
+    }
+    
+    public void setGenerateNativeHints(boolean generateNativeHints) {
+        this.generateNativeHints = generateNativeHints;
+    }
+    
+    public boolean isUseBaseCrudClasses() {
+        return useBaseCrudClasses;
+    }
+    
+    public void setUseBaseCrudClasses(boolean useBaseCrudClasses) {
+        this.useBaseCrudClasses = useBaseCrudClasses;
+    }
+    
+    public boolean isGenerateFetchByIds() {
+        return generateFetchByIds;
+    }
+    
+    public void setGenerateFetchByIds(boolean generateFetchByIds) {
+        this.generateFetchByIds = generateFetchByIds;
+    }
+    
+    public int getInClauseChunkSize() {
+        return inClauseChunkSize;
+    }
+    
+    public void setInClauseChunkSize(int inClauseChunkSize) {
+        this.inClauseChunkSize = inClauseChunkSize;
+    }
+    
+    public boolean isGenerateGetSearch() {
+        return generateGetSearch;
+    }
+    
+    public void setGenerateGetSearch(boolean generateGetSearch) {
+        this.generateGetSearch = generateGetSearch;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,30 @@
+package org.longg.nh.model;
+
+/**
+ * Strategy used to generate the text search finder of a String filter field.
+ */
+public enum TextSearchStrategy {
+    /** findByXContainingIgnoreCase, leading wildcard, cannot use a B-tree index */
+    CONTAINS("Contains (%x%)"),
+    /** findByXStartingWithIgnoreCase backed by a functional upper(x) index */
+    PREFIX("Prefix (x%)"),
+    /** Native lower(x) LIKE query backed by a PostgreSQL pg_trgm GIN index */
+    TRIGRAM("PostgreSQL trigram"),
+    /** Native to_tsvector @@ plainto_tsquery query backed by a PostgreSQL GIN index */
+    FULL_TEXT("PostgreSQL full-text");
+
+    private final String displayName;
+
+    TextSearchStrategy(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
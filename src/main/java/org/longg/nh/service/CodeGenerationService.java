@@ -1,19 +1,52 @@
 package org.longg.nh.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.dataformat.yaml.YAMLGenerator;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.*;
 import com.intellij.psi.codeStyle.JavaCodeStyleManager;
+import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.util.PsiTreeUtil;
 import org.longg.nh.model.ArchitectureConfig;
+import org.longg.nh.model.TextSearchStrategy;
 import org.longg.nh.model.ValidationOption;
 import org.longg.nh.util.JavaClassAnalyzer;
 import org.longg.nh.util.JavaClassAnalyzer.ClassField;
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class CodeGenerationService {
+    private static final String TRANSACTIONAL = "org.springframework.transaction.annotation.Transactional";
+    private static final Pattern WRITE_METHOD_PATTERN = Pattern.compile("(save|update|delete|patch|create|insert|remove)");
+    private static final Pattern JAKARTA_IMPORT_PATTERN = Pattern.compile("import javax\\.(persistence|validation|servlet)\\.");
+    private static final String POSTGRESQL_MIGRATION_LOCATION = "db/vendor/postgresql";
+    private static final AtomicLong LAST_MIGRATION_VERSION = new AtomicLong();
+    private static final YAMLMapper YAML_MAPPER = YAMLMapper.builder()
+        .disable(YAMLGenerator.Feature.WRITE_DOC_START_MARKER)
+        .enable(YAMLGenerator.Feature.MINIMIZE_QUOTES)
+        .build();
+    
     private final Project project;
     private final ArchitectureConfig config;
     private final PsiClass entityClass;
@@ -38,6 +71,10 @@ public class CodeGenerationService {
         String dtoPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getDtoPackage());
         String dtoName = entityName + "Dto";
         
+        if (config.isUseRecords()) {
+            return generateRecordDto(selectedFields, validationOptions, dtoName);
+        }
+        
         // Tạo toàn bộ mã nguồn
         StringBuilder code = new StringBuilder();
         code.append("package ").append(dtoPackage).append(";\n\n");
@@ -109,7 +146,7 @@ public class CodeGenerationService {
         // Tạo file
         PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
         PsiJavaFile dtoFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
-                .createFileFromText(dtoName + ".java", JavaFileType.INSTANCE, code.toString());
+                .createFileFromText(dtoName + ".java", JavaFileType.INSTANCE, sourceText(code));
         
         JavaCodeStyleManager.getInstance(project).optimizeImports(dtoFile);
         
@@ -128,6 +165,10 @@ public class CodeGenerationService {
         String dtoPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getDtoPackage());
         String dtoName = customDtoName.endsWith("Dto") ? customDtoName : customDtoName + "Dto";
         
+        if (config.isUseRecords()) {
+            return generateRecordDto(selectedFields, validationOptions, dtoName);
+        }
+        
         // Tạo toàn bộ mã nguồn
         StringBuilder code = new StringBuilder();
         code.append("package ").append(dtoPackage).append(";\n\n");
@@ -204,13 +245,82 @@ public class CodeGenerationService {
         // Tạo file
         PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
         PsiJavaFile dtoFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
-                .createFileFromText(dtoName + ".java", JavaFileType.INSTANCE, code.toString());
+                .createFileFromText(dtoName + ".java", JavaFileType.INSTANCE, sourceText(code));
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(dtoFile);
+        
+        return dtoFile.getClasses()[0];
+    }
+    
+    /**
+     * Generates the DTO as a Java 17 record: validation annotations go on the record components
+     * and a static factory copies the selected fields from the entity
+     */
+    private PsiClass generateRecordDto(Set<String> selectedFields, Map<String, ValidationOption> validationOptions, String dtoName) {
+        String dtoPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getDtoPackage());
+        List<ClassField> recordFields = allFields.stream()
+            .filter(field -> selectedFields.contains(field.getName()))
+            .toList();
+        
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(dtoPackage).append(";\n\n");
+        
+        if (config.isUseDtoValidation()) {
+            code.append("import javax.validation.constraints.*;\n");
+            code.append("import org.hibernate.validator.constraints.*;\n");
+        }
+        code.append("import ").append(((PsiJavaFile) entityClass.getContainingFile()).getPackageName()).append(".")
+            .append(entityName).append(";\n");
+        appendFieldTypeImports(code, recordFields);
+        code.append("\n");
+        
+        code.append("/**\n")
+            .append(" * Data Transfer Object for ").append(entityName).append(" (record bất biến)\n")
+            .append(" */\n")
+            .append("public record ").append(dtoName).append("(\n");
+        
+        for (int i = 0; i < recordFields.size(); i++) {
+            ClassField field = recordFields.get(i);
+            if (config.isUseDtoValidation()) {
+                // Annotation trên component được áp dụng cho tham số của constructor chuẩn
+                StringBuilder annotations = new StringBuilder();
+                addValidationAnnotations(annotations, field, validationOptions);
+                code.append(annotations.toString().replace("    @", "        @"));
+            }
+            code.append("        ").append(field.getType()).append(" ").append(field.getName())
+                .append(i < recordFields.size() - 1 ? ",\n" : "\n");
+        }
+        code.append(") {\n\n");
+        
+        // Factory từ entity
+        code.append("    public static ").append(dtoName).append(" from(").append(entityName).append(" entity) {\n")
+            .append("        return new ").append(dtoName).append("(\n");
+        for (int i = 0; i < recordFields.size(); i++) {
+            code.append("                entity.").append(getterName(recordFields.get(i))).append("()")
+                .append(i < recordFields.size() - 1 ? ",\n" : "\n");
+        }
+        code.append("        );\n")
+            .append("    }\n")
+            .append("}");
+        
+        PsiJavaFile dtoFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText(dtoName + ".java", JavaFileType.INSTANCE, sourceText(code));
         
         JavaCodeStyleManager.getInstance(project).optimizeImports(dtoFile);
         
         return dtoFile.getClasses()[0];
     }
     
+    private void appendFieldTypeImports(StringBuilder code, List<ClassField> fields) {
+        for (ClassField field : fields) {
+            String qualifiedType = field.getQualifiedType();
+            if (qualifiedType != null && qualifiedType.contains(".") && !qualifiedType.startsWith("java.lang.")
+                    && !qualifiedType.contains("<")) {
+                code.append("import ").append(qualifiedType).append(";\n");
+            }
+        }
+    }
+    
     private void addValidationAnnotations(StringBuilder code, ClassField field, Map<String, ValidationOption> validationOptions) {
         String fieldType = field.getType();
         String fieldName = field.getName();
@@ -514,6 +624,14 @@ public class CodeGenerationService {
     }
     
     public PsiClass generateRepository(Set<String> selectedFilterFields) {
+        return generateRepository(selectedFilterFields, Collections.emptySet());
+    }
+    
+    public PsiClass generateRepository(Set<String> selectedFilterFields, Set<String> dtoFields) {
+        if (config.isReactive()) {
+            return generateReactiveRepository(selectedFilterFields);
+        }
+        
         String repositoryPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getRepositoryPackage());
         String repositoryName = entityName + "Repository";
         
@@ -521,24 +639,53 @@ public class CodeGenerationService {
         StringBuilder code = new StringBuilder();
         code.append("package ").append(repositoryPackage).append(";\n\n")
             .append("import org.springframework.data.jpa.repository.JpaRepository;\n")
-            .append("import org.springframework.data.domain.Page;\n")
+            .append("import org.springframework.data.domain.").append(pageType()).append(";\n")
             .append("import org.springframework.data.domain.Pageable;\n")
             .append("import ").append(((PsiJavaFile) entityClass.getContainingFile()).getPackageName()).append(".")
             .append(entityName).append(";\n")
-            .append("import java.util.List;\n\n")
+            .append("import java.util.List;\n");
+        
+        boolean nativeTextSearch = hasNativeTextSearch(selectedFilterFields);
+        List<ClassField> updatableFields = directUpdateFields(dtoFields);
+        if (config.isGenerateStreamingExport() || nativeTextSearch || isEstimatedCount() || isDirectWrites()) {
+            code.append("import org.springframework.data.jpa.repository.Query;\n");
+        }
+        if (nativeTextSearch || isDirectWrites()) {
+            code.append("import org.springframework.data.repository.query.Param;\n");
+        }
+        if (isDirectWrites()) {
+            code.append("import org.springframework.data.jpa.repository.Modifying;\n");
+        }
+        if (config.isGenerateStreamingExport()) {
+            code.append("import java.util.stream.Stream;\n")
+                .append("import ").append(JavaClassAnalyzer.derivePackageName(basePackage, config.getDtoPackage()))
+                .append(".").append(exportRowName()).append(";\n");
+        }
+        if (config.isGenerateStreamingExport() || isSecondLevelCache()) {
+            code.append("import javax.persistence.QueryHint;\n")
+                .append("import org.springframework.data.jpa.repository.QueryHints;\n");
+        }
+        if (isCountedSearch()) {
+            code.append("import java.util.ArrayList;\n")
+                .append("import javax.persistence.criteria.Predicate;\n")
+                .append("import org.springframework.data.jpa.domain.Specification;\n")
+                .append("import org.springframework.data.jpa.repository.JpaSpecificationExecutor;\n")
+                .append("import ").append(JavaClassAnalyzer.derivePackageName(basePackage, config.getDtoPackage()))
+                .append(".filter.").append(entityName).append("Param;\n");
+        }
+        
+        code.append("\n")
             .append("public interface ").append(repositoryName).append(" extends JpaRepository<")
             .append(entityName).append(", ");
         
         // Tìm loại ID
-        String idType = "Long"; // Mặc định
-        for (ClassField field : allFields) {
-            if (field.getAnnotations().stream().anyMatch(a -> a.endsWith("Id"))) {
-                idType = field.getType();
-                break;
-            }
-        }
+        String idType = resolveIdType();
         
-        code.append(idType).append("> {\n\n");
+        code.append(idType).append(">");
+        if (isCountedSearch()) {
+            code.append(", JpaSpecificationExecutor<").append(entityName).append(">");
+        }
+        code.append(" {\n\n");
         
         // Chỉ tạo các phương thức tìm kiếm cho các trường được chọn
         if (!selectedFilterFields.isEmpty()) {
@@ -552,41 +699,35 @@ public class CodeGenerationService {
                 String fieldType = field.getType();
                 
                 // Finder method tiêu chuẩn
-                code.append("    List<").append(entityName).append("> findBy")
+                code.append("    List<").append(entityName).append("> ").append(listFinderPrefix())
                     .append(capitalizeFirstLetter(fieldName))
                     .append("(").append(fieldType).append(" ").append(fieldName).append(");\n\n");
                 
                 // Finder method với phân trang
-                code.append("    Page<").append(entityName).append("> findBy")
+                code.append("    ").append(pageType()).append("<").append(entityName).append("> findBy")
                     .append(capitalizeFirstLetter(fieldName))
                     .append("(").append(fieldType).append(" ").append(fieldName).append(", Pageable pageable);\n\n");
                 
                 // Thêm các phương thức tìm kiếm đặc biệt dựa vào kiểu dữ liệu
                 if (fieldType.equals("String")) {
-                    code.append("    List<").append(entityName).append("> findBy")
-                        .append(capitalizeFirstLetter(fieldName))
-                        .append("ContainingIgnoreCase(String ").append(fieldName).append(");\n\n");
-                    
-                    code.append("    Page<").append(entityName).append("> findBy")
-                        .append(capitalizeFirstLetter(fieldName))
-                        .append("ContainingIgnoreCase(String ").append(fieldName).append(", Pageable pageable);\n\n");
+                    appendTextSearchFinders(code, field);
                 }
                 else if (isNumericType(fieldType) || fieldType.contains("Date") || fieldType.contains("LocalDate")) {
                     String minMaxPrefix = isNumericType(fieldType) ? "" : fieldType.contains("Date") ? "Date" : "Time";
                     String gtOperator = minMaxPrefix.isEmpty() ? "GreaterThanEqual" : "After";
                     String ltOperator = minMaxPrefix.isEmpty() ? "LessThanEqual" : "Before";
                     
-                    code.append("    List<").append(entityName).append("> findBy")
+                    code.append("    List<").append(entityName).append("> ").append(listFinderPrefix())
                         .append(capitalizeFirstLetter(fieldName))
                         .append(gtOperator).append("(").append(fieldType).append(" min")
                         .append(capitalizeFirstLetter(fieldName)).append(");\n\n");
                     
-                    code.append("    List<").append(entityName).append("> findBy")
+                    code.append("    List<").append(entityName).append("> ").append(listFinderPrefix())
                         .append(capitalizeFirstLetter(fieldName))
                         .append(ltOperator).append("(").append(fieldType).append(" max")
                         .append(capitalizeFirstLetter(fieldName)).append(");\n\n");
                     
-                    code.append("    Page<").append(entityName).append("> findBy")
+                    code.append("    ").append(pageType()).append("<").append(entityName).append("> findBy")
                         .append(capitalizeFirstLetter(fieldName))
                         .append("Between(").append(fieldType).append(" min")
                         .append(capitalizeFirstLetter(fieldName)).append(", ")
@@ -616,284 +757,5453 @@ public class CodeGenerationService {
                 
                 // Phương thức list
                 code.append("    List<").append(entityName).append("> ")
-                    .append(methodName)
+                    .append(listFinderPrefix()).append(methodName.substring("findBy".length()))
                     .append("(").append(parameters).append(");\n\n");
                 
                 // Phương thức với phân trang
-                code.append("    Page<").append(entityName).append("> ")
+                code.append("    ").append(pageType()).append("<").append(entityName).append("> ")
                     .append(methodName)
                     .append("(").append(parameters).append(", Pageable pageable);\n\n");
             }
         }
         
+        // Slice không chạy câu count, thay cho findAll(Pageable) trả về Page
+        if (config.isUseSliceSearch()) {
+            code.append("    Slice<").append(entityName).append("> findAllBy(Pageable pageable);\n\n");
+        }
+        
+        // Điều kiện lọc dùng chung cho nội dung trang và câu count, tổng số được đếm riêng (cache hoặc ước lượng)
+        if (isCountedSearch()) {
+            appendSearchSpecification(code, selectedFilterFields);
+        }
+        
+        // Ước lượng số dòng của bảng từ thống kê của PostgreSQL planner
+        if (isEstimatedCount()) {
+            code.append("    @Query(value = \"SELECT CAST(reltuples AS bigint) FROM pg_class WHERE oid = CAST('")
+                .append(resolveTableName()).append("' AS regclass)\", nativeQuery = true)\n")
+                .append("    Long estimateCount();\n\n");
+        }
+        
+        // Ghi trực tiếp bằng một câu lệnh, không SELECT trước khi UPDATE/DELETE
+        if (isDirectWrites()) {
+            appendDirectWriteQueries(code, idType, updatableFields);
+        }
+        
+        // Stream toàn bộ bảng cho export, đọc theo fetch size thay vì nạp hết vào heap.
+        // Projection chỉ gồm cột cơ bản và id của khóa ngoại: không có entity managed, không chạm proxy LAZY
+        if (config.isGenerateStreamingExport()) {
+            String exportRowName = exportRowName();
+            code.append("    @QueryHints(@QueryHint(name = \"org.hibernate.fetchSize\", value = \"").append(config.getExportFetchSize()).append("\"))\n")
+                .append("    @Query(\"select new ").append(JavaClassAnalyzer.derivePackageName(basePackage, config.getDtoPackage()))
+                .append(".").append(exportRowName).append("(");
+            List<ClassField> exportFields = exportFields();
+            for (int i = 0; i < exportFields.size(); i++) {
+                code.append(i > 0 ? ", " : "").append(exportColumnPath(exportFields.get(i)));
+            }
+            code.append(") from ").append(jpqlEntityName()).append(" e\")\n")
+                .append("    Stream<").append(exportRowName).append("> streamAll();\n\n");
+        }
+        
         code.append("}");
         
         // Tạo file
         PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
         PsiJavaFile repositoryFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
-                .createFileFromText(repositoryName + ".java", JavaFileType.INSTANCE, code.toString());
+                .createFileFromText(repositoryName + ".java", JavaFileType.INSTANCE, sourceText(code));
+        
+        // Kết quả các finder được lưu trong query cache của Hibernate
+        if (isSecondLevelCache()) {
+            addQueryCacheHints(repositoryFile.getClasses()[0]);
+        }
         
         JavaCodeStyleManager.getInstance(project).optimizeImports(repositoryFile);
         
         return repositoryFile.getClasses()[0];
     }
     
-    public PsiClass generateService(boolean hasRepository) {
+    /**
+     * Appends the text search finders of a String filter field according to its TextSearchStrategy
+     */
+    private void appendTextSearchFinders(StringBuilder code, ClassField field) {
+        String fieldName = field.getName();
+        String capitalized = capitalizeFirstLetter(fieldName);
+        TextSearchStrategy strategy = config.getTextSearchStrategy(fieldName);
+        
+        switch (strategy) {
+            case PREFIX:
+                // x% dùng được index upper(x) text_pattern_ops
+                code.append("    List<").append(entityName).append("> ").append(listFinderPrefix()).append(capitalized)
+                    .append("StartingWithIgnoreCase(String ").append(fieldName).append(");\n\n");
+                
+                code.append("    ").append(pageType()).append("<").append(entityName).append("> findBy").append(capitalized)
+                    .append("StartingWithIgnoreCase(String ").append(fieldName).append(", Pageable pageable);\n\n");
+                break;
+            case TRIGRAM:
+            case FULL_TEXT:
+                String tableName = resolveTableName();
+                String condition = textSearchCondition(field, strategy);
+                code.append("    @Query(value = \"SELECT * FROM ").append(tableName).append(" WHERE ").append(condition).append("\",\n");
+                if (!config.isUseSliceSearch()) {
+                    code.append("           countQuery = \"SELECT count(*) FROM ").append(tableName).append(" WHERE ").append(condition).append("\",\n");
+                }
+                code.append("           nativeQuery = true)\n")
+                    .append("    ").append(pageType()).append("<").append(entityName).append("> ").append(textSearchMethodName(fieldName, strategy))
+                    .append("(@Param(\"").append(fieldName).append("\") String ").append(fieldName)
+                    .append(", Pageable pageable);\n\n");
+                break;
+            default:
+                code.append("    List<").append(entityName).append("> ").append(listFinderPrefix()).append(capitalized)
+                    .append("ContainingIgnoreCase(String ").append(fieldName).append(");\n\n");
+                
+                code.append("    ").append(pageType()).append("<").append(entityName).append("> findBy").append(capitalized)
+                    .append("ContainingIgnoreCase(String ").append(fieldName).append(", Pageable pageable);\n\n");
+                break;
+        }
+    }
+    
+    /**
+     * Generates the field-by-field patcher used by the PATCH endpoint. Only the fields present in
+     * the request body are copied to the entity, without reflection or readerForUpdating. Every value
+     * is checked against its JSON node type and the DTO constraints first; on any error the entity
+     * is left untouched and InvalidPatchException carries the errors per field
+     */
+    public PsiClass generatePatcher(Set<String> dtoFields) {
         String servicePackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getServicePackage());
-        String serviceName = entityName + "Service";
+        String dtoPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getDtoPackage());
+        String patcherName = entityName + "Patcher";
+        String dtoName = entityName + "Dto";
+        List<ClassField> patchFields = directUpdateFields(dtoFields);
+        boolean useObjectMapper = patchFields.stream().anyMatch(field -> jsonNodeConversion(field) == null);
         
         StringBuilder code = new StringBuilder();
-        code.append("package ").append(servicePackage).append(";\n\n");
+        code.append("package ").append(servicePackage).append(";\n\n")
+            .append("import com.fasterxml.jackson.databind.JsonNode;\n")
+            .append("import java.time.DateTimeException;\n")
+            .append("import java.util.LinkedHashMap;\n")
+            .append("import java.util.Map;\n")
+            .append("import javax.validation.ConstraintViolation;\n")
+            .append("import javax.validation.Validator;\n")
+            .append("import org.springframework.stereotype.Component;\n")
+            .append("import ").append(((PsiJavaFile) entityClass.getContainingFile()).getPackageName()).append(".")
+            .append(entityName).append(";\n")
+            .append("import ").append(dtoPackage).append(".").append(dtoName).append(";\n");
+        if (useObjectMapper) {
+            code.append("import com.fasterxml.jackson.databind.ObjectMapper;\n");
+        }
+        for (ClassField field : patchFields) {
+            String qualifiedType = field.getQualifiedType();
+            if (qualifiedType != null && qualifiedType.contains(".") && !qualifiedType.startsWith("java.lang.")) {
+                code.append("import ").append(qualifiedType).append(";\n");
+            }
+        }
+        code.append("\n")
+            .append("/**\n")
+            .append(" * Áp dụng PATCH lên ").append(entityName).append(": chỉ các trường có trong body được ghi, trường vắng mặt giữ nguyên.\n")
+            .append(" * Giá trị được kiểm tra kiểu JSON và ràng buộc của ").append(dtoName).append(" trước khi ghi vào entity.\n")
+            .append(" * Thêm @DynamicUpdate (org.hibernate.annotations) vào entity để câu UPDATE chỉ chứa các cột đã thay đổi.\n")
+            .append(" */\n")
+            .append("@Component\n")
+            .append("public class ").append(patcherName).append(" {\n\n")
+            .append("    private final Validator validator;\n");
+        if (useObjectMapper) {
+            code.append("    private final ObjectMapper objectMapper;\n");
+        }
+        code.append("\n")
+            .append("    public ").append(patcherName).append("(Validator validator").append(useObjectMapper ? ", ObjectMapper objectMapper" : "").append(") {\n")
+            .append("        this.validator = validator;\n");
+        if (useObjectMapper) {
+            code.append("        this.objectMapper = objectMapper;\n");
+        }
+        code.append("    }\n\n");
         
-        if (hasRepository) {
-            // Imports
-            code.append("import org.springframework.stereotype.Service;\n")
-                .append("import org.springframework.data.domain.Page;\n")
-                .append("import org.springframework.data.domain.PageRequest;\n")
-                .append("import org.springframework.data.domain.Pageable;\n")
-                .append("import java.util.List;\n")
-                .append("import java.util.Optional;\n");
-            
-            // Entity import
-            String entityFQN = ((PsiJavaFile) entityClass.getContainingFile()).getPackageName() + "." + entityName;
-            code.append("import ").append(entityFQN).append(";\n");
-            
-            // Repository import
-            String repositoryPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getRepositoryPackage());
-            String repositoryName = entityName + "Repository";
-            code.append("import ").append(repositoryPackage).append(".").append(repositoryName).append(";\n");
-            
-            // Param import
-            String dtoPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getDtoPackage());
-            String paramPackage = dtoPackage + ".filter";
-            String paramName = entityName + "Param";
-            code.append("import ").append(paramPackage).append(".").append(paramName).append(";\n\n");
-            
-            // Class definition
-            code.append("@Service\n")
-                .append("public class ").append(serviceName).append(" {\n\n");
-            
-            // Repository field
-            String repositoryFieldName = lcFirst(repositoryName);
-            code.append("    private final ").append(repositoryName).append(" ").append(repositoryFieldName).append(";\n\n");
-            
-            // Constructor
-            code.append("    public ").append(serviceName).append("(").append(repositoryName).append(" ")
-                .append(repositoryFieldName).append(") {\n")
-                .append("        this.").append(repositoryFieldName).append(" = ").append(repositoryFieldName).append(";\n")
-                .append("    }\n\n");
-            
-            // CRUD methods
-            // Find by ID - return entity
-            code.append("    public ").append(entityName).append(" findById(Long id) {\n")
-                .append("        return ").append(repositoryFieldName).append(".findById(id).orElse(null);\n")
-                .append("    }\n\n");
-            
-            // Find by ID - return optional entity
-            code.append("    public Optional<").append(entityName).append("> findOptionalById(Long id) {\n")
-                .append("        return ").append(repositoryFieldName).append(".findById(id);\n")
-                .append("    }\n\n");
-            
-            // Find all - return entity list
-            code.append("    public List<").append(entityName).append("> findAll() {\n")
-                .append("        return ").append(repositoryFieldName).append(".findAll();\n")
-                .append("    }\n\n");
-            
-            // Tìm kiếm với Param
-            code.append("    public Page<").append(entityName).append("> search(").append(paramName).append(" param) {\n")
-                .append("        Pageable pageable = PageRequest.of(param.getPage(), param.getSize());\n")
-                .append("        // Sử dụng các trường có trong param để xây dựng câu truy vấn\n")
-                .append("        // TODO: Thêm xử lý tìm kiếm dựa trên các trường trong param\n")
-                .append("        // Ví dụ:\n")
-                .append("        // if (param.getName() != null && !param.getName().isEmpty()) {\n")
-                .append("        //     return ").append(repositoryFieldName).append(".findByNameContainingIgnoreCase(param.getName(), pageable);\n")
-                .append("        // }\n")
-                .append("        return ").append(repositoryFieldName).append(".findAll(pageable);\n")
-                .append("    }\n\n");
-            
-            // Save - return entity
-            code.append("    public ").append(entityName).append(" save(").append(entityName).append(" entity) {\n")
-                .append("        return ").append(repositoryFieldName).append(".save(entity);\n")
-                .append("    }\n\n");
-            
-            // Update - return entity
-            code.append("    public ").append(entityName).append(" update(").append(entityName).append(" entity) {\n")
-                .append("        return ").append(repositoryFieldName).append(".save(entity);\n")
-                .append("    }\n\n");
-            
-            // Delete by ID
-            code.append("    public void deleteById(Long id) {\n")
-                .append("        ").append(repositoryFieldName).append(".deleteById(id);\n")
-                .append("    }\n\n");
-            
-            // Delete entity
-            code.append("    public void delete(").append(entityName).append(" entity) {\n")
-                .append("        ").append(repositoryFieldName).append(".delete(entity);\n")
-                .append("    }\n");
+        code.append("    /**\n")
+            .append("     * Ghi các trường có trong body vào entity; khi có lỗi entity giữ nguyên và InvalidPatchException\n")
+            .append("     * chứa lỗi theo tên trường\n")
+            .append("     */\n")
+            .append("    public void apply(JsonNode patch, ").append(entityName).append(" entity) {\n")
+            .append("        Map<String, String> errors = new LinkedHashMap<>();\n");
+        // Đọc và kiểm tra toàn bộ giá trị trước, chỉ ghi vào entity khi không có lỗi
+        for (ClassField field : patchFields) {
+            String name = field.getName();
+            String value = name + "Value";
+            String conversion = jsonNodeConversion(field);
+            if (conversion == null) {
+                conversion = "objectMapper.convertValue(node, " + field.getType() + ".class)";
+            }
+            String typeCheck = jsonNodeTypeCheck(field);
+            String conversionException = jsonNodeConversionException(field);
             
-        } else {
-            // Simple service without repository
-            code.append("import org.springframework.stereotype.Service;\n\n")
-                .append("@Service\n")
-                .append("public class ").append(serviceName).append(" {\n");
+            code.append("        boolean has").append(capitalizeFirstLetter(name)).append(" = patch.has(\"").append(name).append("\");\n")
+                .append("        ").append(field.getType()).append(" ").append(value).append(" = ")
+                .append(field.isPrimitive() ? primitiveDefault(field.getType()) : "null").append(";\n")
+                .append("        if (has").append(capitalizeFirstLetter(name)).append(") {\n")
+                .append("            JsonNode node = patch.get(\"").append(name).append("\");\n");
+            if (field.isPrimitive()) {
+                // Kiểu nguyên thủy không nhận null
+                code.append("            if (node.isNull()) {\n")
+                    .append("                errors.put(\"").append(name).append("\", \"must not be null\");\n")
+                    .append("            } else ");
+            } else {
+                code.append("            if (node.isNull()) {\n")
+                    .append("                validate(\"").append(name).append("\", null, errors);\n")
+                    .append("            } else ");
+            }
+            if (typeCheck != null) {
+                code.append("if (!").append(typeCheck).append(") {\n")
+                    .append("                errors.put(\"").append(name).append("\", \"").append(jsonNodeTypeMessage(field)).append("\");\n")
+                    .append("            } else ");
+            }
+            code.append("{\n");
+            if (conversionException != null) {
+                code.append("                try {\n")
+                    .append("                    ").append(value).append(" = ").append(conversion).append(";\n")
+                    .append("                    validate(\"").append(name).append("\", ").append(value).append(", errors);\n")
+                    .append("                } catch (").append(conversionException).append(" e) {\n")
+                    .append("                    errors.put(\"").append(name).append("\", \"has an invalid value\");\n")
+                    .append("                }\n");
+            } else {
+                code.append("                ").append(value).append(" = ").append(conversion).append(";\n")
+                    .append("                validate(\"").append(name).append("\", ").append(value).append(", errors);\n");
+            }
+            code.append("            }\n")
+                .append("        }\n");
+        }
+        code.append("        if (!errors.isEmpty()) {\n")
+            .append("            throw new InvalidPatchException(errors);\n")
+            .append("        }\n");
+        for (ClassField field : patchFields) {
+            String name = field.getName();
+            code.append("        if (has").append(capitalizeFirstLetter(name)).append(") {\n")
+                .append("            entity.set").append(capitalizeFirstLetter(name)).append("(").append(name).append("Value);\n")
+                .append("        }\n");
         }
+        code.append("    }\n\n");
         
-        code.append("}");
+        // Ràng buộc của DTO áp dụng cho từng giá trị, không cần dựng cả DTO
+        code.append("    private void validate(String property, Object value, Map<String, String> errors) {\n")
+            .append("        for (ConstraintViolation<").append(dtoName).append("> violation : validator.validateValue(")
+            .append(dtoName).append(".class, property, value)) {\n")
+            .append("            errors.putIfAbsent(property, violation.getMessage());\n")
+            .append("        }\n")
+            .append("    }\n\n");
         
-        // Tạo file
-        PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
-        PsiJavaFile serviceFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
-                .createFileFromText(serviceName + ".java", JavaFileType.INSTANCE, code.toString());
+        code.append("    /**\n")
+            .append("     * Body PATCH sai kiểu hoặc vi phạm ràng buộc, được trả về 400 kèm lỗi theo tên trường\n")
+            .append("     */\n")
+            .append("    public static class InvalidPatchException extends RuntimeException {\n\n")
+            .append("        private final Map<String, String> errors;\n\n")
+            .append("        public InvalidPatchException(Map<String, String> errors) {\n")
+            .append("            super(\"Invalid patch: \" + errors);\n")
+            .append("            this.errors = errors;\n")
+            .append("        }\n\n")
+            .append("        public Map<String, String> getErrors() {\n")
+            .append("            return errors;\n")
+            .append("        }\n")
+            .append("    }\n")
+            .append("}");
         
-        JavaCodeStyleManager.getInstance(project).optimizeImports(serviceFile);
+        PsiJavaFile patcherFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText(patcherName + ".java", JavaFileType.INSTANCE, sourceText(code));
         
-        return serviceFile.getClasses()[0];
+        JavaCodeStyleManager.getInstance(project).optimizeImports(patcherFile);
+        
+        return patcherFile.getClasses()[0];
     }
     
-    public PsiClass generateController(boolean hasService) {
-        String controllerPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getControllerPackage());
-        String controllerName = entityName + "Controller";
+    /**
+     * Reads a JsonNode named "node" as the field type, or null when the type needs the ObjectMapper
+     * (enums, embeddables, associations)
+     */
+    private String jsonNodeConversion(ClassField field) {
+        switch (field.getType()) {
+            case "String":
+                return "node.asText()";
+            case "Long":
+            case "long":
+                return "node.asLong()";
+            case "Integer":
+            case "int":
+                return "node.asInt()";
+            case "Short":
+            case "short":
+                return "(short) node.asInt()";
+            case "Double":
+            case "double":
+                return "node.asDouble()";
+            case "Float":
+            case "float":
+                return "(float) node.asDouble()";
+            case "Boolean":
+            case "boolean":
+                return "node.asBoolean()";
+            case "BigDecimal":
+                return "node.decimalValue()";
+            case "BigInteger":
+                return "node.bigIntegerValue()";
+            case "LocalDate":
+            case "LocalDateTime":
+            case "LocalTime":
+            case "OffsetDateTime":
+            case "Instant":
+                return field.getType() + ".parse(node.asText())";
+            case "UUID":
+                return "UUID.fromString(node.asText())";
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Condition on the JsonNode "node" the conversion of jsonNodeConversion expects, or null when the
+     * ObjectMapper decides (and reports a mismatch through IllegalArgumentException)
+     */
+    private String jsonNodeTypeCheck(ClassField field) {
+        switch (field.getType()) {
+            case "Long":
+            case "long":
+                return "node.canConvertToLong() && node.isIntegralNumber()";
+            case "Integer":
+            case "int":
+                return "node.canConvertToInt() && node.isIntegralNumber()";
+            case "Short":
+            case "short":
+                return "node.canConvertToInt() && node.isIntegralNumber() && node.asInt() == (short) node.asInt()";
+            case "BigInteger":
+                return "node.isIntegralNumber()";
+            case "Double":
+            case "double":
+            case "Float":
+            case "float":
+            case "BigDecimal":
+                return "node.isNumber()";
+            case "Boolean":
+            case "boolean":
+                return "node.isBoolean()";
+            default:
+                return jsonNodeConversion(field) == null ? null : "node.isTextual()";
+        }
+    }
+    
+    private String jsonNodeTypeMessage(ClassField field) {
+        String check = jsonNodeTypeCheck(field);
+        if (check.contains("isIntegralNumber")) {
+            return "must be an integer";
+        }
+        if (check.equals("node.isNumber()")) {
+            return "must be a number";
+        }
+        if (check.equals("node.isBoolean()")) {
+            return "must be a boolean";
+        }
+        return "must be a string";
+    }
+    
+    /**
+     * Exception thrown by a conversion that parses text or goes through the ObjectMapper, null when
+     * the type check already guarantees the conversion
+     */
+    private String jsonNodeConversionException(ClassField field) {
+        String conversion = jsonNodeConversion(field);
+        if (conversion == null || conversion.startsWith("UUID.")) {
+            return "IllegalArgumentException";
+        }
+        if (conversion.endsWith(".parse(node.asText())")) {
+            return "DateTimeException";
+        }
+        return null;
+    }
+    
+    private String primitiveDefault(String type) {
+        switch (type) {
+            case "boolean":
+                return "false";
+            case "char":
+                return "'\\0'";
+            default:
+                return "0";
+        }
+    }
+    
+    private boolean isPatchEndpoint(Set<String> dtoFields) {
+        return config.isGeneratePatchEndpoint() && !config.isReactive() && !directUpdateFields(dtoFields).isEmpty();
+    }
+    
+    /**
+     * Adds an annotation to the entity class through PSI unless it is already present
+     *
+     * @return true if the entity was modified
+     */
+    public boolean annotateEntity(String annotationFqn) {
+        PsiModifierList modifierList = entityClass.getModifierList();
+        if (modifierList == null || modifierList.findAnnotation(annotationFqn) != null) {
+            return false;
+        }
+        modifierList.addAnnotation(annotationFqn);
+        JavaCodeStyleManager.getInstance(project).shortenClassReferences(entityClass);
+        return true;
+    }
+    
+    /**
+     * Adds an annotation with attributes to the entity class through PSI, the same way
+     * addAnnotationToField does for fields, unless it is already present
+     *
+     * @param attributes Attribute text between the parentheses, with fully qualified references
+     * @return true if the entity was modified
+     */
+    public boolean annotateEntity(String annotationFqn, String attributes) {
+        PsiModifierList modifierList = entityClass.getModifierList();
+        if (modifierList == null || modifierList.findAnnotation(annotationFqn) != null) {
+            return false;
+        }
+        PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
+        PsiAnnotation annotation = factory.createAnnotationFromText("@" + annotationFqn + "(" + attributes + ")", entityClass);
+        modifierList.addAfter(annotation, null);
+        JavaCodeStyleManager.getInstance(project).shortenClassReferences(entityClass);
+        return true;
+    }
+    
+    /**
+     * Marks the entity as cacheable in the Hibernate second-level cache with the chosen
+     * concurrency strategy. The region keeps Hibernate's default name (the entity class name)
+     *
+     * @return true if the entity was modified
+     */
+    public boolean annotateEntityForSecondLevelCache() {
+        boolean cacheable = annotateEntity(persistenceAnnotation("Cacheable"));
+        boolean cache = annotateEntity("org.hibernate.annotations.Cache",
+                "usage = org.hibernate.annotations.CacheConcurrencyStrategy." + secondLevelCacheStrategy());
+        return cacheable || cache;
+    }
+    
+    /**
+     * @Immutable entities are never updated so READ_ONLY is always safe for them; otherwise
+     * the configured strategy is used, READ_WRITE when it is not a valid CacheConcurrencyStrategy
+     */
+    private String secondLevelCacheStrategy() {
+        PsiModifierList modifierList = entityClass.getModifierList();
+        if (modifierList != null && modifierList.findAnnotation("org.hibernate.annotations.Immutable") != null) {
+            return "READ_ONLY";
+        }
+        String strategy = config.getSecondLevelCacheStrategy();
+        if (strategy != null) {
+            switch (strategy.trim().toUpperCase()) {
+                case "READ_ONLY":
+                case "NONSTRICT_READ_WRITE":
+                case "READ_WRITE":
+                case "TRANSACTIONAL":
+                    return strategy.trim().toUpperCase();
+                default:
+                    break;
+            }
+        }
+        return "READ_WRITE";
+    }
+    
+    private boolean isSecondLevelCache() {
+        return config.isUseSecondLevelCache() && !config.isReactive();
+    }
+    
+    /**
+     * Adds the Hibernate query cache hint to every List/Page/Slice finder of a generated
+     * repository. The cached result only holds ids, the rows come from the entity region
+     */
+    private void addQueryCacheHints(PsiClass repositoryClass) {
+        PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
+        for (PsiMethod method : repositoryClass.getMethods()) {
+            PsiType returnType = method.getReturnType();
+            // Chỉ các finder (không có thân), bỏ qua phương thức static/default
+            if (method.getBody() != null || returnType == null || method.getModifierList() == null) {
+                continue;
+            }
+            String returnTypeText = returnType.getPresentableText();
+            if (returnTypeText.startsWith("List<") || returnTypeText.startsWith("Page<") || returnTypeText.startsWith("Slice<")) {
+                PsiAnnotation hint = factory.createAnnotationFromText(
+                        "@QueryHints(@QueryHint(name = \"org.hibernate.cacheable\", value = \"true\"))", method);
+                method.getModifierList().addAfter(hint, null);
+            }
+        }
+    }
+    
+    /**
+     * Generates the JCache (Caffeine) regions of the entity and turns on the second-level and
+     * query caches. Every entity gets its own size limit; the query result and timestamp regions
+     * are shared and created by whichever entity configuration runs first
+     */
+    public PsiClass generateSecondLevelCacheConfig() {
+        String configPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getConfigPackage());
+        String configName = entityName + "SecondLevelCacheConfig";
+        String entityPackage = ((PsiJavaFile) entityClass.getContainingFile()).getPackageName();
+        long maxEntries = config.getSecondLevelCacheMaxEntries();
         
-        // Tạo toàn bộ mã nguồn với tất cả các import cần thiết
         StringBuilder code = new StringBuilder();
-        code.append("package ").append(controllerPackage).append(";\n\n");
+        code.append("package ").append(configPackage).append(";\n\n")
+            .append("import ").append(entityPackage).append(".").append(entityName).append(";\n")
+            .append("import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;\n")
+            .append("import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;\n")
+            .append("import java.util.OptionalLong;\n")
+            .append("import javax.cache.CacheManager;\n")
+            .append("import javax.cache.Caching;\n")
+            .append("import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;\n")
+            .append("import org.springframework.context.annotation.Bean;\n")
+            .append("import org.springframework.context.annotation.Configuration;\n\n")
+            .append("/**\n")
+            .append(" * Hibernate second-level cache cho ").append(entityName)
+            .append(" (JCache + Caffeine, ").append(secondLevelCacheStrategy()).append(")\n")
+            .append(" */\n")
+            .append("@Configuration\n")
+            .append("public class ").append(configName).append(" {\n\n")
+            .append("    // Region mặc định của entity là tên đầy đủ của class\n")
+            .append("    public static final String REGION = ").append(entityName).append(".class.getName();\n\n")
+            .append("    private static final long MAXIMUM_SIZE = ").append(maxEntries).append("L;\n\n")
+            .append("    // Region dùng chung của query cache\n")
+            .append("    private static final String QUERY_RESULTS_REGION = \"default-query-results-region\";\n")
+            .append("    private static final String UPDATE_TIMESTAMPS_REGION = \"default-update-timestamps-region\";\n")
+            .append("    private static final long QUERY_RESULTS_MAXIMUM_SIZE = ").append(maxEntries * 10).append("L;\n\n")
+            .append("    @Bean\n")
+            .append("    public HibernatePropertiesCustomizer ").append(lcFirst(entityName)).append("SecondLevelCacheCustomizer() {\n")
+            .append("        return properties -> {\n")
+            .append("            CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName()).getCacheManager();\n")
+            .append("            createRegion(cacheManager, REGION, OptionalLong.of(MAXIMUM_SIZE));\n")
+            .append("            createRegion(cacheManager, QUERY_RESULTS_REGION, OptionalLong.of(QUERY_RESULTS_MAXIMUM_SIZE));\n")
+            .append("            // Timestamps không được evict, nếu không query cache có thể trả về dữ liệu cũ\n")
+            .append("            createRegion(cacheManager, UPDATE_TIMESTAMPS_REGION, OptionalLong.empty());\n\n")
+            .append("            properties.put(\"hibernate.cache.use_second_level_cache\", \"true\");\n")
+            .append("            properties.put(\"hibernate.cache.use_query_cache\", \"true\");\n")
+            .append("            properties.put(\"hibernate.cache.region.factory_class\", \"jcache\");\n")
+            .append("            properties.put(\"hibernate.javax.cache.cache_manager\", cacheManager);\n")
+            .append("            // Region chưa khai báo (vd. collection) được tạo không giới hạn kèm cảnh báo trong log\n")
+            .append("            properties.put(\"hibernate.javax.cache.missing_cache_strategy\", \"create-warn\");\n")
+            .append("        };\n")
+            .append("    }\n\n")
+            .append("    private static void createRegion(CacheManager cacheManager, String name, OptionalLong maximumSize) {\n")
+            .append("        if (cacheManager.getCache(name) == null) {\n")
+            .append("            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();\n")
+            .append("            configuration.setMaximumSize(maximumSize);\n")
+            .append("            configuration.setStatisticsEnabled(true);\n")
+            .append("            cacheManager.createCache(name, configuration);\n")
+            .append("        }\n")
+            .append("    }\n")
+            .append("}");
         
-        // Thêm import cần thiết
-        if (hasService) {
-            code.append("import java.util.List;\n")
-                .append("import org.springframework.data.domain.Page;\n")
-                .append("import org.springframework.http.HttpStatus;\n")
-                .append("import org.springframework.http.ResponseEntity;\n")
-                .append("import org.springframework.web.bind.annotation.*;\n");
+        // Tạo file
+        PsiJavaFile configFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText(configName + ".java", JavaFileType.INSTANCE, sourceText(code));
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(configFile);
+        
+        return configFile.getClasses()[0];
+    }
+    
+    /**
+     * Tunes the association fetching of the entity through PSI: lazy collections get @BatchSize,
+     * EAGER @ManyToOne associations are rewritten to LAZY when rewriteEagerToOne is set
+     *
+     * @return one warning per association that still loads eagerly
+     */
+    public List<String> tuneEntityFetching() {
+        List<String> warnings = new ArrayList<>();
+        
+        for (PsiField psiField : entityClass.getFields()) {
+            ClassField field = allFields.stream()
+                .filter(candidate -> candidate.getName().equals(psiField.getName()))
+                .findFirst()
+                .orElse(null);
+            if (field == null) {
+                continue;
+            }
+            String location = entityName + "." + field.getName();
             
-            // Add validation imports
-            code.append("import javax.validation.Valid;\n")
-                .append("import org.springframework.validation.BindingResult;\n")
-                .append("import org.springframework.validation.FieldError;\n")
-                .append("import java.util.HashMap;\n")
-                .append("import java.util.Map;\n");
+            if (field.isCollection()) {
+                PsiAnnotation association = JavaClassAnalyzer.findPersistenceAnnotation(psiField, "OneToMany", "ManyToMany", "ElementCollection");
+                if (association == null) {
+                    continue;
+                }
+                if (JavaClassAnalyzer.isEagerFetch(association, false)) {
+                    // @BatchSize không tránh được việc nạp collection cho mọi bản ghi cha
+                    warnings.add(location + ": EAGER collection is loaded with every parent row, use FetchType.LAZY");
+                } else if (psiField.getAnnotation("org.hibernate.annotations.BatchSize") == null) {
+                    addAnnotationToField(psiField, "org.hibernate.annotations.BatchSize",
+                            "size", String.valueOf(config.getBatchFetchSize()));
+                }
+                continue;
+            }
             
-            // Import entity
+            PsiAnnotation manyToOne = JavaClassAnalyzer.findPersistenceAnnotation(psiField, "ManyToOne");
+            if (manyToOne != null && JavaClassAnalyzer.isEagerFetch(manyToOne, true)) {
+                if (config.isRewriteEagerToOne()) {
+                    setLazyFetch(manyToOne, psiField);
+                } else {
+                    warnings.add(location + ": @ManyToOne is EAGER (the JPA default), every parent row loads it, use FetchType.LAZY");
+                }
+                continue;
+            }
+            
+            PsiAnnotation oneToOne = JavaClassAnalyzer.findPersistenceAnnotation(psiField, "OneToOne");
+            if (oneToOne != null && JavaClassAnalyzer.isEagerFetch(oneToOne, true)) {
+                // Phía mappedBy của @OneToOne không LAZY được nếu không có bytecode enhancement nên chỉ cảnh báo
+                warnings.add(location + ": @OneToOne is EAGER, every parent row loads it");
+            }
+        }
+        
+        JavaCodeStyleManager.getInstance(project).shortenClassReferences(entityClass);
+        return warnings;
+    }
+    
+    /**
+     * Rewrites an association of the entity to FetchType.LAZY; collections also get @BatchSize
+     * so that initializing them for a page of parents stays bounded
+     */
+    public void lazyFetch(PsiField field) {
+        PsiAnnotation association = JavaClassAnalyzer.findPersistenceAnnotation(field,
+                "OneToMany", "ManyToMany", "ElementCollection", "ManyToOne", "OneToOne");
+        if (association == null) {
+            return;
+        }
+        setLazyFetch(association, field);
+        
+        boolean collection = allFields.stream()
+            .anyMatch(candidate -> candidate.getName().equals(field.getName()) && candidate.isCollection());
+        if (collection && field.getAnnotation("org.hibernate.annotations.BatchSize") == null) {
+            addAnnotationToField(field, "org.hibernate.annotations.BatchSize", "size", String.valueOf(config.getBatchFetchSize()));
+        }
+        JavaCodeStyleManager.getInstance(project).shortenClassReferences(field);
+    }
+    
+    private void setLazyFetch(PsiAnnotation association, PsiField field) {
+        String fetchType = association.getQualifiedName().startsWith("jakarta.")
+                ? "jakarta.persistence.FetchType.LAZY"
+                : "javax.persistence.FetchType.LAZY";
+        PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
+        association.setDeclaredAttributeValue("fetch", factory.createExpressionFromText(fetchType, field));
+    }
+    
+    /**
+     * Generates the module-wide default batch fetch size, so lazy associations without
+     * @BatchSize are also initialized in batches instead of one query per parent row
+     */
+    public PsiClass generateFetchConfig() {
+        String configPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getConfigPackage());
+        
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(configPackage).append(";\n\n")
+            .append("import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;\n")
+            .append("import org.springframework.context.annotation.Bean;\n")
+            .append("import org.springframework.context.annotation.Configuration;\n\n")
+            .append("/**\n")
+            .append(" * Nạp các association LAZY theo lô (IN với tối đa ").append(config.getBatchFetchSize()).append(" id)\n")
+            .append(" */\n")
+            .append("@Configuration\n")
+            .append("public class HibernateFetchConfig {\n\n")
+            .append("    private static final int DEFAULT_BATCH_FETCH_SIZE = ").append(config.getBatchFetchSize()).append(";\n\n")
+            .append("    @Bean\n")
+            .append("    public HibernatePropertiesCustomizer batchFetchSizeCustomizer() {\n")
+            .append("        // Giá trị trong spring.jpa.properties được ưu tiên\n")
+            .append("        return properties -> properties.putIfAbsent(\"hibernate.default_batch_fetch_size\", String.valueOf(DEFAULT_BATCH_FETCH_SIZE));\n")
+            .append("    }\n")
+            .append("}");
+        
+        // Tạo file
+        PsiJavaFile configFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText("HibernateFetchConfig.java", JavaFileType.INSTANCE, sourceText(code));
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(configFile);
+        
+        return configFile.getClasses()[0];
+    }
+    
+    /**
+     * Appends the @Modifying JPQL statements behind the direct update/delete service methods.
+     * Both return the affected row count, which replaces the findById/existsById round trip
+     */
+    private void appendDirectWriteQueries(StringBuilder code, String idType, List<ClassField> updatableFields) {
+        String jpqlEntity = jpqlEntityName();
+        String idFieldName = resolveIdFieldName();
+        
+        if (!updatableFields.isEmpty()) {
+            List<String> assignments = new ArrayList<>();
+            for (ClassField field : updatableFields) {
+                assignments.add("e." + field.getName() + " = :" + field.getName());
+            }
+            // Bulk update bỏ qua optimistic locking của Hibernate nên tự tăng version
+            ClassField versionField = findVersionField();
+            if (versionField != null) {
+                assignments.add("e." + versionField.getName() + " = e." + versionField.getName() + " + 1");
+            }
+            
+            code.append("    @Modifying(flushAutomatically = true, clearAutomatically = true)\n")
+                .append("    @Query(\"UPDATE ").append(jpqlEntity).append(" e SET ").append(String.join(", ", assignments))
+                .append(" WHERE e.").append(idFieldName).append(" = :").append(idFieldName).append("\")\n")
+                .append("    int updateFields(@Param(\"").append(idFieldName).append("\") ").append(idType).append(" ").append(idFieldName);
+            for (ClassField field : updatableFields) {
+                code.append(",\n                     @Param(\"").append(field.getName()).append("\") ")
+                    .append(field.getType()).append(" ").append(field.getName());
+            }
+            code.append(");\n\n");
+        }
+        
+        if (!isDirectDelete()) {
+            return;
+        }
+        code.append("    @Modifying(flushAutomatically = true, clearAutomatically = true)\n")
+            .append("    @Query(\"DELETE FROM ").append(jpqlEntity).append(" e WHERE e.").append(idFieldName)
+            .append(" = :").append(idFieldName).append("\")\n")
+            .append("    int deleteDirectlyById(@Param(\"").append(idFieldName).append("\") ").append(idType)
+            .append(" ").append(idFieldName).append(");\n\n");
+    }
+    
+    /**
+     * DTO fields that can be written by the JPQL update: the id, @Version, transient and
+     * collection fields are left out
+     */
+    private List<ClassField> directUpdateFields(Set<String> dtoFields) {
+        String idFieldName = resolveIdFieldName();
+        return allFields.stream()
+            .filter(field -> dtoFields.contains(field.getName()))
+            .filter(field -> !field.getName().equals(idFieldName) && !field.isCollection())
+            .filter(field -> field.getAnnotations().stream()
+                .noneMatch(a -> a.endsWith("Version") || a.endsWith("Transient")))
+            .toList();
+    }
+    
+    private ClassField findVersionField() {
+        for (ClassField field : allFields) {
+            if (field.getAnnotations().stream().anyMatch(a -> a.endsWith("Version"))) {
+                return field;
+            }
+        }
+        return null;
+    }
+    
+    private String jpqlEntityName() {
+        String logicalName = annotationStringValue(entityClass, "Entity", "name");
+        return logicalName != null ? logicalName : entityName;
+    }
+    
+    private boolean isDirectWrites() {
+        return config.isUseDirectWrites() && !config.isReactive();
+    }
+    
+    /**
+     * A JPQL DELETE skips cascades, orphan removal and the rows of collection tables, so the direct
+     * delete is only generated for entities without collections and without cascading associations
+     */
+    private boolean isDirectDelete() {
+        return isDirectWrites() && isBulkDeleteSafe();
+    }
+    
+    private boolean isBulkDeleteSafe() {
+        return allFields.stream().noneMatch(this::needsEntityDelete);
+    }
+    
+    private boolean needsEntityDelete(ClassField field) {
+        if (field.isCollection() || field.getAnnotations().stream().anyMatch(a -> a.endsWith(".OneToMany")
+                || a.endsWith(".ManyToMany") || a.endsWith(".ElementCollection") || a.equals("org.hibernate.annotations.Cascade"))) {
+            return true;
+        }
+        if (!isToOneAssociation(field)) {
+            return false;
+        }
+        PsiField psiField = entityClass.findFieldByName(field.getName(), true);
+        PsiAnnotation association = psiField == null ? null
+            : JavaClassAnalyzer.findPersistenceAnnotation(psiField, "ManyToOne", "OneToOne");
+        if (association == null) {
+            return false;
+        }
+        PsiAnnotationMemberValue cascade = association.findDeclaredAttributeValue("cascade");
+        PsiAnnotationMemberValue orphanRemoval = association.findDeclaredAttributeValue("orphanRemoval");
+        return cascade != null && (cascade.getText().contains("ALL") || cascade.getText().contains("REMOVE"))
+            || orphanRemoval != null && orphanRemoval.getText().equals("true");
+    }
+    
+    /**
+     * Native SQL condition of the trigram / full-text finders. The trigram condition also runs on H2,
+     * the full-text one needs PostgreSQL (e.g. embedded Postgres in tests)
+     */
+    private String textSearchCondition(ClassField field, TextSearchStrategy strategy) {
+        String columnName = resolveColumnName(field);
+        if (strategy == TextSearchStrategy.FULL_TEXT) {
+            return "to_tsvector('simple', " + columnName + ") @@ plainto_tsquery('simple', :" + field.getName() + ")";
+        }
+        return "lower(" + columnName + ") LIKE lower(concat('%', :" + field.getName() + ", '%'))";
+    }
+    
+    /**
+     * Appends the static Specification built from the EntityParam filters, shared by the content
+     * query and the count of the counted search so that both always apply the same predicate
+     */
+    private void appendSearchSpecification(StringBuilder code, Set<String> selectedFilterFields) {
+        code.append("    /**\n")
+            .append("     * Điều kiện lọc của search, dùng chung cho câu lấy nội dung trang và câu count\n")
+            .append("     */\n")
+            .append("    static Specification<").append(entityName).append("> matching(").append(entityName).append("Param param) {\n")
+            .append("        return (root, query, cb) -> {\n")
+            .append("            List<Predicate> predicates = new ArrayList<>();\n");
+        for (ClassField field : allFields) {
+            if (!selectedFilterFields.contains(field.getName())) {
+                continue;
+            }
+            String fieldName = field.getName();
+            String fieldType = field.getType();
+            if (isNumericType(fieldType)) {
+                appendRangePredicate(code, field, "min" + capitalizeFirstLetter(fieldName), "greaterThanOrEqualTo");
+                appendRangePredicate(code, field, "max" + capitalizeFirstLetter(fieldName), "lessThanOrEqualTo");
+            } else if (!fieldType.equals("String") && (fieldType.contains("Date") || fieldType.contains("LocalDate"))) {
+                appendRangePredicate(code, field, "from" + capitalizeFirstLetter(fieldName), "greaterThanOrEqualTo");
+                appendRangePredicate(code, field, "to" + capitalizeFirstLetter(fieldName), "lessThanOrEqualTo");
+            } else if (fieldType.equals("String")) {
+                String value = "param." + paramAccessor(fieldName);
+                TextSearchStrategy strategy = config.getTextSearchStrategy(fieldName);
+                // Cùng biểu thức với index: upper(x) text_pattern_ops cho PREFIX, lower(x) gin_trgm_ops cho TRIGRAM;
+                // FULL_TEXT vẫn dùng finder native riêng, ở đây lọc bằng LIKE trên lower(x)
+                boolean upper = strategy == TextSearchStrategy.PREFIX || strategy == TextSearchStrategy.CONTAINS;
+                String caseFunction = upper ? "upper" : "lower";
+                String pattern = (strategy == TextSearchStrategy.PREFIX ? "" : "\"%\" + ")
+                    + escapedLikeValue(value + (upper ? ".toUpperCase()" : ".toLowerCase()")) + " + \"%\"";
+                code.append("            if (").append(value).append(" != null && !").append(value).append(".isEmpty()) {\n")
+                    .append("                predicates.add(cb.like(cb.").append(caseFunction).append("(root.get(\"").append(fieldName)
+                    .append("\")),\n")
+                    .append("                    ").append(pattern).append(", '\\\\'));\n")
+                    .append("            }\n");
+            } else if (fieldType.equals("boolean") || fieldType.equals("Boolean")
+                    || fieldType.startsWith(entityClass.getQualifiedName() + ".")) {
+                String value = "param." + paramAccessor(fieldName);
+                code.append("            if (").append(value).append(" != null) {\n")
+                    .append("                predicates.add(cb.equal(root.get(\"").append(fieldName).append("\"), ").append(value).append("));\n")
+                    .append("            }\n");
+            }
+        }
+        code.append("            return cb.and(predicates.toArray(new Predicate[0]));\n")
+            .append("        };\n")
+            .append("    }\n\n");
+    }
+    
+    private void appendRangePredicate(StringBuilder code, ClassField field, String propertyName, String comparison) {
+        String value = "param." + paramAccessor(propertyName);
+        String predicate = "predicates.add(cb." + comparison + "(root.<" + boxedType(field.getType()) + ">get(\""
+            + field.getName() + "\"), " + value + "));\n";
+        if (field.isPrimitive()) {
+            code.append("            ").append(predicate);
+            return;
+        }
+        code.append("            if (").append(value).append(" != null) {\n")
+            .append("                ").append(predicate)
+            .append("            }\n");
+    }
+    
+    /**
+     * Appends the static R2DBC Criteria built from the EntityParam filters, the reactive counterpart
+     * of appendSearchSpecification. Only PREFIX is supported in reactive mode, the other text
+     * strategies match anywhere in the value
+     */
+    private void appendSearchCriteria(StringBuilder code, Set<String> selectedFilterFields) {
+        code.append("    /**\n")
+            .append("     * Điều kiện lọc của search, các trường null hoặc rỗng trong param được bỏ qua\n")
+            .append("     */\n")
+            .append("    static Criteria matching(").append(entityName).append("Param param) {\n")
+            .append("        Criteria criteria = Criteria.empty();\n");
+        for (ClassField field : allFields) {
+            if (!selectedFilterFields.contains(field.getName())) {
+                continue;
+            }
+            String fieldName = field.getName();
+            String fieldType = field.getType();
+            if (isNumericType(fieldType)) {
+                appendRangeCriteria(code, field, "min" + capitalizeFirstLetter(fieldName), "greaterThanOrEquals");
+                appendRangeCriteria(code, field, "max" + capitalizeFirstLetter(fieldName), "lessThanOrEquals");
+            } else if (!fieldType.equals("String") && (fieldType.contains("Date") || fieldType.contains("LocalDate"))) {
+                appendRangeCriteria(code, field, "from" + capitalizeFirstLetter(fieldName), "greaterThanOrEquals");
+                appendRangeCriteria(code, field, "to" + capitalizeFirstLetter(fieldName), "lessThanOrEquals");
+            } else if (fieldType.equals("String")) {
+                String value = "param." + paramAccessor(fieldName);
+                String pattern = (config.getTextSearchStrategy(fieldName) == TextSearchStrategy.PREFIX ? "" : "\"%\" + ")
+                    + escapedLikeValue(value) + " + \"%\"";
+                // ignoreCase sinh UPPER(cột) LIKE UPPER(?), cùng biểu thức với index upper(x) text_pattern_ops
+                code.append("        if (").append(value).append(" != null && !").append(value).append(".isEmpty()) {\n")
+                    .append("            criteria = criteria.and(\"").append(fieldName).append("\").like(")
+                    .append(pattern).append(").ignoreCase(true);\n")
+                    .append("        }\n");
+            } else if (fieldType.equals("boolean") || fieldType.equals("Boolean")
+                    || fieldType.startsWith(entityClass.getQualifiedName() + ".")) {
+                String value = "param." + paramAccessor(fieldName);
+                code.append("        if (").append(value).append(" != null) {\n")
+                    .append("            criteria = criteria.and(\"").append(fieldName).append("\").is(").append(value).append(");\n")
+                    .append("        }\n");
+            }
+        }
+        code.append("        return criteria;\n")
+            .append("    }\n\n");
+    }
+    
+    private void appendRangeCriteria(StringBuilder code, ClassField field, String propertyName, String comparison) {
+        String value = "param." + paramAccessor(propertyName);
+        String criteria = "criteria = criteria.and(\"" + field.getName() + "\")." + comparison + "(" + value + ");\n";
+        if (field.isPrimitive()) {
+            code.append("        ").append(criteria);
+            return;
+        }
+        code.append("        if (").append(value).append(" != null) {\n")
+            .append("            ").append(criteria)
+            .append("        }\n");
+    }
+    
+    /**
+     * Escapes the LIKE wildcards of a user value, the same way derived Containing/StartingWith finders do
+     */
+    private String escapedLikeValue(String expression) {
+        return expression + ".replace(\"\\\\\", \"\\\\\\\\\").replace(\"%\", \"\\\\%\").replace(\"_\", \"\\\\_\")";
+    }
+    
+    private String boxedType(String type) {
+        switch (type) {
+            case "int":
+                return "Integer";
+            case "long":
+                return "Long";
+            case "float":
+                return "Float";
+            case "double":
+                return "Double";
+            case "boolean":
+                return "Boolean";
+            default:
+                return type;
+        }
+    }
+    
+    private String textSearchMethodName(String fieldName, TextSearchStrategy strategy) {
+        return "searchBy" + capitalizeFirstLetter(fieldName)
+            + (strategy == TextSearchStrategy.FULL_TEXT ? "FullText" : "Trigram");
+    }
+    
+    private boolean hasNativeTextSearch(Set<String> selectedFilterFields) {
+        return allFields.stream()
+            .filter(field -> selectedFilterFields.contains(field.getName()) && field.getType().equals("String"))
+            .map(field -> config.getTextSearchStrategy(field.getName()))
+            .anyMatch(strategy -> strategy == TextSearchStrategy.TRIGRAM || strategy == TextSearchStrategy.FULL_TEXT);
+    }
+    
+    public PsiClass generateService(boolean hasRepository) {
+        return generateService(hasRepository, Collections.emptySet());
+    }
+    
+    public PsiClass generateService(boolean hasRepository, Set<String> dtoFields) {
+        if (config.isReactive() && hasRepository) {
+            return generateReactiveService();
+        }
+        
+        String servicePackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getServicePackage());
+        String serviceName = entityName + "Service";
+        
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(servicePackage).append(";\n\n");
+        
+        if (hasRepository) {
+            // Imports
+            code.append("import org.springframework.stereotype.Service;\n")
+                .append("import org.springframework.data.domain.").append(pageType()).append(";\n")
+                .append("import org.springframework.data.domain.PageRequest;\n")
+                .append("import org.springframework.data.domain.Pageable;\n")
+                .append("import org.springframework.transaction.annotation.Transactional;\n")
+                .append("import java.util.List;\n")
+                .append("import java.util.Optional;\n");
+            
+            // Entity import
             String entityFQN = ((PsiJavaFile) entityClass.getContainingFile()).getPackageName() + "." + entityName;
             code.append("import ").append(entityFQN).append(";\n");
             
-            // Import DTO
-            String dtoPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getDtoPackage());
-            String dtoName = entityName + "Dto";
-            code.append("import ").append(dtoPackage).append(".").append(dtoName).append(";\n");
-            
-            // Import service
-            String servicePackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getServicePackage());
-            String serviceName = entityName + "Service";
-            code.append("import ").append(servicePackage).append(".").append(serviceName).append(";\n");
+            // Repository import
+            String repositoryPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getRepositoryPackage());
+            String repositoryName = entityName + "Repository";
+            code.append("import ").append(repositoryPackage).append(".").append(repositoryName).append(";\n");
             
-            // Import param
+            // Param import
+            String dtoPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getDtoPackage());
             String paramPackage = dtoPackage + ".filter";
             String paramName = entityName + "Param";
-            code.append("import ").append(paramPackage).append(".").append(paramName).append(";\n\n");
+            code.append("import ").append(paramPackage).append(".").append(paramName).append(";\n");
             
-            // Tạo class với annotation
-            code.append("@RestController\n")
-                .append("@RequestMapping(\"/").append(lcFirst(entityName)).append("s\")\n")
-                .append("public class ").append(controllerName).append(" {\n\n");
+            List<ClassField> updatableFields = directUpdateFields(dtoFields);
+            if (isDirectWrites() && !updatableFields.isEmpty()) {
+                code.append("import ").append(dtoPackage).append(".").append(entityName).append("Dto;\n");
+            }
             
-            // Service field
-            String serviceFieldName = lcFirst(serviceName);
-            code.append("    private final ").append(serviceName).append(" ").append(serviceFieldName).append(";\n\n");
+            boolean patchEndpoint = isPatchEndpoint(dtoFields);
+            if (patchEndpoint) {
+                code.append("import com.fasterxml.jackson.databind.JsonNode;\n");
+            }
             
-            // Constructor
-            code.append("    public ").append(controllerName).append("(").append(serviceName).append(" ")
-                .append(serviceFieldName).append(") {\n")
-                .append("        this.").append(serviceFieldName).append(" = ").append(serviceFieldName).append(";\n")
-                .append("    }\n\n");
+            // Metrics imports
+            if (config.isGenerateMetrics()) {
+                code.append("import io.micrometer.core.annotation.Timed;\n")
+                    .append("import io.micrometer.core.instrument.DistributionSummary;\n")
+                    .append("import io.micrometer.core.instrument.MeterRegistry;\n")
+                    .append("import org.springframework.data.domain.Slice;\n");
+            }
             
-            // Add validation error handler method
-            code.append("    private ResponseEntity<Map<String, String>> handleValidationErrors(BindingResult result) {\n")
-                .append("        Map<String, String> errors = new HashMap<>();\n")
-                .append("        result.getAllErrors().forEach((error) -> {\n")
-                .append("            String fieldName = ((FieldError) error).getField();\n")
-                .append("            String errorMessage = error.getDefaultMessage();\n")
-                .append("            errors.put(fieldName, errorMessage);\n")
-                .append("        });\n")
-                .append("        return ResponseEntity.badRequest().body(errors);\n")
-                .append("    }\n\n");
+            // EntityManager dùng cho batch (flush/clear) và cho nội dung trang của search không kèm count
+            boolean useEntityManager = config.isGenerateBatchOperations() || isCountedSearch();
             
-            // Endpoints
-            // GET all entities
-            code.append("    @GetMapping\n")
-                .append("    public List<").append(entityName).append("> getAll() {\n")
-                .append("        return ").append(serviceFieldName).append(".findAll();\n")
-                .append("    }\n\n");
+            // Batch imports
+            if (config.isGenerateBatchOperations()) {
+                code.append("import java.util.ArrayList;\n")
+                    .append("import java.util.Map;\n")
+                    .append("import java.util.function.BiConsumer;\n")
+                    .append("import org.springframework.transaction.PlatformTransactionManager;\n")
+                    .append("import org.springframework.transaction.TransactionDefinition;\n")
+                    .append("import org.springframework.transaction.annotation.Propagation;\n")
+                    .append("import org.springframework.transaction.support.TransactionTemplate;\n");
+            }
             
-            // Search with Param
-            code.append("    @PostMapping(\"/search\")\n")
-                .append("    public Page<").append(entityName).append("> search(@RequestBody ")
-                .append(paramName).append(" param) {\n")
-                .append("        return ").append(serviceFieldName).append(".search(param);\n")
-                .append("    }\n\n");
+            // Export imports
+            if (config.isGenerateStreamingExport()) {
+                code.append("import java.util.function.Consumer;\n")
+                    .append("import java.util.stream.Stream;\n")
+                    .append("import ").append(dtoPackage).append(".").append(exportRowName()).append(";\n");
+            }
             
-            // GET by ID - Entity
-            code.append("    @GetMapping(\"/{id}\")\n")
-                .append("    public ResponseEntity<").append(entityName).append("> getById(@PathVariable Long id) {\n")
-                .append("        ").append(entityName).append(" entity = ").append(serviceFieldName).append(".findById(id);\n")
-                .append("        return entity != null ? ResponseEntity.ok(entity) : ResponseEntity.notFound().build();\n")
-                .append("    }\n\n");
+            // Fetch by ids imports
+            if (config.isGenerateFetchByIds()) {
+                code.append("import java.util.ArrayList;\n")
+                    .append("import java.util.HashMap;\n")
+                    .append("import java.util.LinkedHashSet;\n")
+                    .append("import java.util.Map;\n");
+            }
             
-            // POST Entity - with validation
-            code.append("    @PostMapping\n")
-                .append("    public ResponseEntity<?> create(@Valid @RequestBody ")
-                .append(dtoName).append(" dto, BindingResult result) {\n")
-                .append("        if (result.hasErrors()) {\n")
-                .append("            return handleValidationErrors(result);\n")
-                .append("        }\n")
-                .append("        // TODO: Convert DTO to entity\n")
-                .append("        ").append(entityName).append(" entity = new ").append(entityName).append("();\n")
-                .append("        // ... map DTO fields to entity\n")
-                .append("        return ResponseEntity.status(HttpStatus.CREATED).body(")
-                .append(serviceFieldName).append(".save(entity));\n")
-                .append("    }\n\n");
+            if (useEntityManager) {
+                code.append("import javax.persistence.EntityManager;\n");
+            }
             
-            // PUT Entity - with validation
-            code.append("    @PutMapping(\"/{id}\")\n")
-                .append("    public ResponseEntity<?> update(@PathVariable Long id, @Valid @RequestBody ")
-                .append(dtoName).append(" dto, BindingResult result) {\n")
-                .append("        if (result.hasErrors()) {\n")
-                .append("            return handleValidationErrors(result);\n")
-                .append("        }\n")
-                .append("        ").append(entityName).append(" existingEntity = ").append(serviceFieldName).append(".findById(id);\n")
-                .append("        if (existingEntity == null) {\n")
-                .append("            return ResponseEntity.notFound().build();\n")
-                .append("        }\n")
-                .append("        // TODO: Update entity from DTO\n")
-                .append("        // ... map DTO fields to existingEntity\n")
-                .append("        return ResponseEntity.ok(").append(serviceFieldName).append(".update(existingEntity));\n")
-                .append("    }\n\n");
+            // Count imports
+            if (isCountedSearch()) {
+                code.append("import javax.persistence.criteria.CriteriaBuilder;\n")
+                    .append("import javax.persistence.criteria.CriteriaQuery;\n")
+                    .append("import javax.persistence.criteria.Predicate;\n")
+                    .append("import javax.persistence.criteria.Root;\n")
+                    .append("import org.springframework.data.jpa.domain.Specification;\n")
+                    .append("import org.springframework.data.jpa.repository.query.QueryUtils;\n");
+                if (config.isCacheSearchCounts()) {
+                    code.append("import com.github.benmanes.caffeine.cache.Cache;\n")
+                        .append("import com.github.benmanes.caffeine.cache.Caffeine;\n")
+                        .append("import java.time.Duration;\n");
+                }
+                if (isEstimatedCount()) {
+                    code.append("import java.util.Objects;\n")
+                        .append("import ").append(dtoPackage).append(".EstimatedPage;\n");
+                } else {
+                    code.append("import org.springframework.data.support.PageableExecutionUtils;\n");
+                }
+            }
             
-            // DELETE
-            code.append("    @DeleteMapping(\"/{id}\")\n")
-                .append("    public ResponseEntity<Void> delete(@PathVariable Long id) {\n")
-                .append("        ").append(serviceFieldName).append(".deleteById(id);\n")
-                .append("        return ResponseEntity.noContent().build();\n")
-                .append("    }\n");
+            // Cache imports
+            if (config.isUseSpringCache()) {
+                code.append("import org.springframework.cache.annotation.CacheConfig;\n")
+                    .append("import org.springframework.cache.annotation.CacheEvict;\n")
+                    .append("import org.springframework.cache.annotation.CachePut;\n")
+                    .append("import org.springframework.cache.annotation.Cacheable;\n")
+                    .append("import org.springframework.cache.annotation.Caching;\n");
+            }
+            code.append("\n");
+            
+            // Class definition
+            // readOnly mặc định: Hibernate chuyển session sang FlushMode.MANUAL, bỏ dirty checking/snapshot
+            // và có thể định tuyến sang replica qua TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+            code.append("@Service\n")
+                .append("@Transactional(readOnly = true)\n");
+            if (config.isUseSpringCache()) {
+                code.append("@CacheConfig(cacheNames = \"").append(cacheName()).append("\")\n");
+            }
+            code.append("public class ").append(serviceName);
+            boolean baseCrud = useBaseCrudService();
+            if (baseCrud) {
+                code.append(" extends BaseCrudService<").append(entityName).append(", ").append(resolveIdType()).append(">");
+            }
+            code.append(" {\n\n");
+            
+            if (config.isBoundedResults()) {
+                code.append("    private static final int MAX_PAGE_SIZE = ").append(config.getMaxPageSize()).append(";\n\n");
+            }
+            
+            if (config.isGenerateBatchOperations()) {
+                code.append("    private static final int BATCH_SIZE = ").append(config.getBatchSize()).append(";\n\n");
+            }
+            
+            if (config.isGenerateFetchByIds()) {
+                code.append("    private static final int IN_CLAUSE_CHUNK_SIZE = ").append(inClauseChunkSize()).append(";\n\n");
+            }
+            
+            if (isCountedSearch() && config.isCacheSearchCounts()) {
+                code.append("    private static final long COUNT_CACHE_TTL_SECONDS = ").append(config.getCountCacheTtlSeconds()).append(";\n\n");
+            }
+            
+            // Repository field
+            String repositoryFieldName = lcFirst(repositoryName);
+            code.append("    private final ").append(repositoryName).append(" ").append(repositoryFieldName).append(";\n");
+            if (useEntityManager) {
+                code.append("    private final EntityManager entityManager;\n");
+            }
+            if (config.isGenerateBatchOperations()) {
+                code.append("    private final TransactionTemplate transactionTemplate;\n");
+            }
+            if (patchEndpoint) {
+                code.append("    private final ").append(entityName).append("Patcher ").append(lcFirst(entityName)).append("Patcher;\n");
+            }
+            if (config.isGenerateMetrics()) {
+                code.append("    private final DistributionSummary pageSizeSummary;\n")
+                    .append("    private final DistributionSummary resultCountSummary;\n");
+            }
+            if (isCountedSearch() && config.isCacheSearchCounts()) {
+                // Tổng số theo bộ lọc (không gồm page/size), hết hạn sau TTL ngắn
+                code.append("    private final Cache<List<Object>, Long> countCache = Caffeine.newBuilder()\n")
+                    .append("        .maximumSize(1000)\n")
+                    .append("        .expireAfterWrite(Duration.ofSeconds(COUNT_CACHE_TTL_SECONDS))\n")
+                    .append("        .build();\n");
+            }
+            code.append("\n");
+            
+            // Constructor
+            code.append("    public ").append(serviceName).append("(").append(repositoryName).append(" ")
+                .append(repositoryFieldName);
+            if (useEntityManager) {
+                code.append(", EntityManager entityManager");
+            }
+            if (config.isGenerateBatchOperations()) {
+                code.append(", PlatformTransactionManager transactionManager");
+            }
+            if (patchEndpoint) {
+                code.append(", ").append(entityName).append("Patcher ").append(lcFirst(entityName)).append("Patcher");
+            }
+            if (config.isGenerateMetrics()) {
+                code.append(", MeterRegistry meterRegistry");
+            }
+            code.append(") {\n");
+            if (baseCrud) {
+                code.append("        super(").append(repositoryFieldName).append(");\n");
+            }
+            code.append("        this.").append(repositoryFieldName).append(" = ").append(repositoryFieldName).append(";\n");
+            if (useEntityManager) {
+                code.append("        this.entityManager = entityManager;\n");
+            }
+            if (patchEndpoint) {
+                code.append("        this.").append(lcFirst(entityName)).append("Patcher = ").append(lcFirst(entityName)).append("Patcher;\n");
+            }
+            if (config.isGenerateMetrics()) {
+                code.append("        this.pageSizeSummary = DistributionSummary.builder(\"").append(metricName("service.page.size")).append("\")\n")
+                    .append("            .tag(\"entity\", \"").append(lcFirst(entityName)).append("\")\n")
+                    .append("            .register(meterRegistry);\n")
+                    .append("        this.resultCountSummary = DistributionSummary.builder(\"").append(metricName("service.result.count")).append("\")\n")
+                    .append("            .tag(\"entity\", \"").append(lcFirst(entityName)).append("\")\n")
+                    .append("            .register(meterRegistry);\n");
+            }
+            if (config.isGenerateBatchOperations()) {
+                // Mỗi chunk chạy trong transaction riêng, kể cả khi được gọi từ một transaction khác
+                code.append("        this.transactionTemplate = new TransactionTemplate(transactionManager);\n")
+                    .append("        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);\n");
+            }
+            code.append("    }\n\n");
+            
+            // CRUD methods
+            // Với BaseCrudService findById/save/update được kế thừa, chỉ override (gọi super) khi cần
+            // annotation riêng của entity: cache name và @Timed không đặt được ở lớp cha dùng chung.
+            // findAll và delete phụ thuộc tùy chọn (boundedResults, DELETE trực tiếp) nên luôn nằm ở đây
+            boolean overrideBaseCrud = baseCrud && (config.isUseSpringCache() || config.isGenerateMetrics());
+            String idType = resolveIdType();
+            
+            // Find by ID - return entity
+            if (!baseCrud || overrideBaseCrud) {
+                if (config.isUseSpringCache()) {
+                    code.append("    @Cacheable(key = \"#id\", unless = \"#result == null\")\n");
+                }
+                if (baseCrud) {
+                    appendSuperOverride(code, entityName + " findById(" + idType + " id)", "return super.findById(id);");
+                } else {
+                    code.append("    public ").append(entityName).append(" findById(").append(idType).append(" id) {\n")
+                        .append("        return ").append(repositoryFieldName).append(".findById(id).orElse(null);\n")
+                        .append("    }\n\n");
+                }
+            }
+            
+            // Find by ID - return optional entity
+            if (!baseCrud || overrideBaseCrud) {
+                if (config.isUseSpringCache()) {
+                    code.append("    @Cacheable(key = \"#id\", unless = \"#result == null\")\n");
+                }
+                if (baseCrud) {
+                    appendSuperOverride(code, "Optional<" + entityName + "> findOptionalById(" + idType + " id)",
+                        "return super.findOptionalById(id);");
+                } else {
+                    code.append("    public Optional<").append(entityName).append("> findOptionalById(").append(idType).append(" id) {\n")
+                        .append("        return ").append(repositoryFieldName).append(".findById(id);\n")
+                        .append("    }\n\n");
+                }
+            }
+            
+            // Find all - return entity list
+            if (config.isBoundedResults()) {
+                // Không trả toàn bộ bảng, luôn phân trang với kích thước tối đa MAX_PAGE_SIZE
+                code.append("    public ").append(pageType()).append("<").append(entityName).append("> findAll(int page, int size) {\n")
+                    .append("        return ").append(recordedPage(repositoryFieldName + "." + findAllPagedMethod()
+                        + "(boundedPageRequest(page, size))")).append(";\n")
+                    .append("    }\n\n");
+            } else {
+                String findAll = repositoryFieldName + ".findAll()";
+                code.append("    public List<").append(entityName).append("> findAll() {\n")
+                    .append("        return ").append(config.isGenerateMetrics() ? "recordList(" + findAll + ")" : findAll).append(";\n")
+                    .append("    }\n\n");
+            }
+            
+            // Tìm kiếm với Param
+            if (isSearchCached()) {
+                code.append("    @Cacheable(cacheNames = \"").append(searchCacheName()).append("\", key = \"#param\")\n");
+            }
+            if (isCountedSearch()) {
+                appendCountedSearchMethods(code, repositoryFieldName, paramName);
+            } else {
+                code.append("    public ").append(pageType()).append("<").append(entityName).append("> search(").append(paramName).append(" param) {\n")
+                    .append("        Pageable pageable = ").append(pageRequestExpression()).append(";\n")
+                    .append("        // Sử dụng các trường có trong param để xây dựng câu truy vấn\n")
+                    .append("        // TODO: Thêm xử lý tìm kiếm dựa trên các trường trong param\n")
+                    .append("        // Ví dụ:\n")
+                    .append("        // if (param.").append(paramAccessor("name")).append(" != null && !param.").append(paramAccessor("name")).append(".isEmpty()) {\n")
+                    .append("        //     return ").append(repositoryFieldName).append(".findByNameContainingIgnoreCase(param.").append(paramAccessor("name")).append(", pageable);\n")
+                    .append("        // }\n")
+                    .append("        return ").append(recordedPage(repositoryFieldName + "." + findAllPagedMethod() + "(pageable)")).append(";\n")
+                    .append("    }\n\n");
+            }
+            
+            // Save - return entity
+            if (baseCrud) {
+                if (overrideBaseCrud) {
+                    appendCacheWriteAnnotations(code, "#result");
+                    code.append("    @Transactional\n");
+                    appendSuperOverride(code, entityName + " save(" + entityName + " entity)", "return super.save(entity);");
+                }
+            } else {
+                appendCacheWriteAnnotations(code, "#result");
+                code.append("    @Transactional\n")
+                    .append("    public ").append(entityName).append(" save(").append(entityName).append(" entity) {\n")
+                    .append("        return ").append(repositoryFieldName).append(".save(entity);\n")
+                    .append("    }\n\n");
+            }
+            
+            // Update - return entity
+            if (baseCrud) {
+                if (overrideBaseCrud) {
+                    appendCacheWriteAnnotations(code, "#result");
+                    code.append("    @Transactional\n");
+                    appendSuperOverride(code, entityName + " update(" + entityName + " entity)", "return super.update(entity);");
+                }
+            } else {
+                appendCacheWriteAnnotations(code, "#result");
+                code.append("    @Transactional\n")
+                    .append("    public ").append(entityName).append(" update(").append(entityName).append(" entity) {\n")
+                    .append("        return ").append(repositoryFieldName).append(".save(entity);\n")
+                    .append("    }\n\n");
+            }
+            
+            if (isDirectWrites() && !updatableFields.isEmpty()) {
+                // Update trực tiếp các trường của DTO bằng một câu UPDATE
+                appendCacheEvictAnnotations(code, "#id");
+                code.append("    @Transactional\n")
+                    .append("    public boolean updateFields(").append(idType).append(" id, ").append(entityName).append("Dto dto) {\n")
+                    .append("        return ").append(repositoryFieldName).append(".updateFields(id");
+                for (ClassField field : updatableFields) {
+                    code.append(", dto.").append(dtoAccessor(field));
+                }
+                code.append(") > 0;\n")
+                    .append("    }\n\n");
+            }
+            
+            if (patchEndpoint) {
+                // Chỉ ghi các trường có trong body; dirty checking bỏ qua UPDATE nếu không có gì thay đổi
+                appendCacheEvictAnnotations(code, "#id");
+                code.append("    @Transactional\n")
+                    .append("    public Optional<").append(entityName).append("> patch(").append(idType).append(" id, JsonNode patch) {\n")
+                    .append("        return ").append(repositoryFieldName).append(".findById(id)\n")
+                    .append("            .map(entity -> {\n")
+                    .append("                ").append(lcFirst(entityName)).append("Patcher.apply(patch, entity);\n")
+                    .append("                return entity;\n")
+                    .append("            });\n")
+                    .append("    }\n\n");
+            }
+            
+            // Delete by ID / delete entity
+            appendCacheEvictAnnotations(code, "#id");
+            if (isDirectDelete()) {
+                // Một câu DELETE, trả về false nếu không có bản ghi (thay cho findById/existsById)
+                code.append("    @Transactional\n")
+                    .append("    public boolean deleteById(").append(idType).append(" id) {\n")
+                    .append("        return ").append(repositoryFieldName).append(".deleteDirectlyById(id) > 0;\n")
+                    .append("    }\n\n");
+            } else {
+                code.append("    @Transactional\n")
+                    .append("    public void deleteById(").append(idType).append(" id) {\n")
+                    .append("        ").append(repositoryFieldName).append(".deleteById(id);\n")
+                    .append("    }\n\n");
+            }
+            
+            appendCacheEvictAnnotations(code, "#entity." + resolveIdFieldName());
+            code.append("    @Transactional\n")
+                .append("    public void delete(").append(entityName).append(" entity) {\n");
+            if (isDirectDelete()) {
+                code.append("        ").append(repositoryFieldName).append(".deleteDirectlyById(entity.get")
+                    .append(capitalizeFirstLetter(resolveIdFieldName())).append("());\n");
+            } else {
+                code.append("        ").append(repositoryFieldName).append(".delete(entity);\n");
+            }
+            code.append("    }\n");
+            
+            if (config.isBoundedResults()) {
+                appendBoundedPageRequestMethod(code);
+            }
+            
+            if (config.isGenerateFetchByIds()) {
+                appendFindAllByIdsMethod(code, repositoryFieldName);
+            }
+            
+            if (config.isGenerateBatchOperations()) {
+                appendBatchServiceMethods(code, repositoryFieldName);
+            }
+            
+            if (config.isGenerateStreamingExport()) {
+                appendExportServiceMethod(code, repositoryFieldName);
+            }
+            
+            if (config.isGenerateMetrics()) {
+                appendMetricsRecordMethods(code);
+            }
+            
+        } else {
+            // Simple service without repository
+            code.append("import org.springframework.stereotype.Service;\n\n")
+                .append("@Service\n")
+                .append("public class ").append(serviceName).append(" {\n");
+        }
+        
+        code.append("}");
+        
+        // Tạo file
+        PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
+        PsiJavaFile serviceFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText(serviceName + ".java", JavaFileType.INSTANCE, sourceText(code));
+        
+        if (hasRepository && config.isGenerateMetrics()) {
+            addTimedAnnotations(serviceFile.getClasses()[0], "service");
+        }
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(serviceFile);
+        
+        return serviceFile.getClasses()[0];
+    }
+    
+    /**
+     * Generates the module-wide BaseCrudService holding the CRUD methods whose body is the same for
+     * every entity. Entity services extend it and only add search, batch, export and the other
+     * entity-specific methods. The base does not depend on any option: findAll (bounded or not) and the
+     * deletes (direct or not) are declared by the entity services, so regenerating the base for another
+     * entity or with other options does not break the services generated before
+     */
+    public PsiClass generateBaseCrudService() {
+        String servicePackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getServicePackage());
+        
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(servicePackage).append(";\n\n")
+            .append("import org.springframework.data.jpa.repository.JpaRepository;\n")
+            .append("import org.springframework.transaction.annotation.Transactional;\n")
+            .append("import java.util.Optional;\n\n")
+            .append("/**\n")
+            .append(" * CRUD dùng chung cho các service được sinh ra, service của từng entity chỉ thêm phần riêng\n")
+            .append(" */\n")
+            .append("@Transactional(readOnly = true)\n")
+            .append("public abstract class BaseCrudService<T, ID> {\n\n")
+            .append("    protected final JpaRepository<T, ID> repository;\n\n")
+            .append("    protected BaseCrudService(JpaRepository<T, ID> repository) {\n")
+            .append("        this.repository = repository;\n")
+            .append("    }\n\n")
+            .append("    public T findById(ID id) {\n")
+            .append("        return repository.findById(id).orElse(null);\n")
+            .append("    }\n\n")
+            .append("    public Optional<T> findOptionalById(ID id) {\n")
+            .append("        return repository.findById(id);\n")
+            .append("    }\n\n")
+            .append("    @Transactional\n")
+            .append("    public T save(T entity) {\n")
+            .append("        return repository.save(entity);\n")
+            .append("    }\n\n")
+            .append("    @Transactional\n")
+            .append("    public T update(T entity) {\n")
+            .append("        return repository.save(entity);\n")
+            .append("    }\n")
+            .append("}");
+        
+        PsiJavaFile baseServiceFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText("BaseCrudService.java", JavaFileType.INSTANCE, sourceText(code));
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(baseServiceFile);
+        
+        return baseServiceFile.getClasses()[0];
+    }
+    
+    private boolean useBaseCrudService() {
+        return config.isUseBaseCrudClasses() && !config.isReactive();
+    }
+    
+    private boolean useBaseCrudController() {
+        return useBaseCrudService() && !config.isUseFunctionalRouter();
+    }
+    
+    /**
+     * Appends a public override that only delegates to the base class, so that the annotations
+     * written just before it (cache, @Transactional, and @Timed added afterwards) apply to the entity
+     */
+    private void appendSuperOverride(StringBuilder code, String signature, String statement) {
+        code.append("    @Override\n")
+            .append("    public ").append(signature).append(" {\n")
+            .append("        ").append(statement).append("\n")
+            .append("    }\n\n");
+    }
+    
+    /**
+     * Appends a Page search whose total comes from a short-lived count cache keyed by the filter
+     * (without page/size) and, on PostgreSQL, from the planner estimate when nothing is filtered.
+     * Content and count share the repository Specification built from the param
+     */
+    private void appendCountedSearchMethods(StringBuilder code, String repositoryFieldName, String paramName) {
+        String repositoryName = entityName + "Repository";
+        String exactTotal = config.isCacheSearchCounts()
+            ? "countCache.get(param.countKey(), key -> " + repositoryFieldName + ".count(spec))"
+            : repositoryFieldName + ".count(spec)";
+        
+        code.append("    public Page<").append(entityName).append("> search(").append(paramName).append(" param) {\n")
+            .append("        Pageable pageable = ").append(pageRequestExpression()).append(";\n")
+            .append("        Specification<").append(entityName).append("> spec = ").append(repositoryName).append(".matching(param);\n")
+            .append("        List<").append(entityName).append("> content = findContent(spec, pageable);\n");
+        if (isEstimatedCount()) {
+            code.append("        if (param.countKey().stream().allMatch(Objects::isNull)) {\n")
+                .append("            // Không có điều kiện lọc: dùng ước lượng của planner thay cho count(*)\n")
+                .append("            Long estimate = ").append(repositoryFieldName).append(".estimateCount();\n")
+                .append("            if (estimate != null && estimate >= 0) {\n")
+                .append("                return ").append(recordedPage("new EstimatedPage<>(content, pageable, estimate, true)")).append(";\n")
+                .append("            }\n")
+                .append("        }\n")
+                .append("        return ").append(recordedPage("new EstimatedPage<>(content, pageable, " + exactTotal + ", false)")).append(";\n");
+        } else {
+            code.append("        return ").append(recordedPage("PageableExecutionUtils.getPage(content, pageable,\n"
+                + "            () -> " + exactTotal + ")")).append(";\n");
+        }
+        code.append("    }\n\n");
+        
+        // findAll(spec, pageable) luôn chạy thêm câu count, nên nội dung trang được đọc riêng
+        code.append("    /**\n")
+            .append("     * Đọc nội dung một trang theo điều kiện lọc, không chạy câu count\n")
+            .append("     */\n")
+            .append("    private List<").append(entityName).append("> findContent(Specification<").append(entityName)
+            .append("> spec, Pageable pageable) {\n")
+            .append("        CriteriaBuilder cb = entityManager.getCriteriaBuilder();\n")
+            .append("        CriteriaQuery<").append(entityName).append("> query = cb.createQuery(").append(entityName).append(".class);\n")
+            .append("        Root<").append(entityName).append("> root = query.from(").append(entityName).append(".class);\n")
+            .append("        Predicate predicate = spec.toPredicate(root, query, cb);\n")
+            .append("        if (predicate != null) {\n")
+            .append("            query.where(predicate);\n")
+            .append("        }\n")
+            .append("        query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));\n")
+            .append("        return entityManager.createQuery(query)\n")
+            .append("            .setFirstResult((int) pageable.getOffset())\n")
+            .append("            .setMaxResults(pageable.getPageSize())\n")
+            .append("            .getResultList();\n")
+            .append("    }\n\n");
+    }
+    
+    /**
+     * Appends the helpers recording page sizes and result counts into the distribution summaries
+     */
+    private void appendMetricsRecordMethods(StringBuilder code) {
+        code.append("\n")
+            .append("    private <S extends Slice<?>> S recordPage(S page) {\n")
+            .append("        pageSizeSummary.record(page.getSize());\n")
+            .append("        resultCountSummary.record(page.getNumberOfElements());\n")
+            .append("        return page;\n")
+            .append("    }\n");
+        if (!config.isBoundedResults()) {
+            code.append("\n")
+                .append("    private <T> List<T> recordList(List<T> list) {\n")
+                .append("        resultCountSummary.record(list.size());\n")
+                .append("        return list;\n")
+                .append("    }\n");
+        }
+    }
+    
+    private String recordedPage(String expression) {
+        return config.isGenerateMetrics() ? "recordPage(" + expression + ")" : expression;
+    }
+    
+    private String metricName(String suffix) {
+        return config.getMetricsPrefix() + "." + suffix;
+    }
+    
+    /**
+     * Adds @Timed with the entity/operation tags to every public method of a generated
+     * service or controller. The operation tag is the method name
+     */
+    private void addTimedAnnotations(PsiClass psiClass, String layer) {
+        PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
+        for (PsiMethod method : psiClass.getMethods()) {
+            if (method.isConstructor() || !method.hasModifierProperty(PsiModifier.PUBLIC) || method.getModifierList() == null) {
+                continue;
+            }
+            PsiAnnotation timed = factory.createAnnotationFromText("@Timed(value = \"" + metricName(layer)
+                    + "\", extraTags = {\"entity\", \"" + lcFirst(entityName) + "\", \"operation\", \"" + method.getName() + "\"})", method);
+            method.getModifierList().addAfter(timed, null);
+        }
+    }
+    
+    /**
+     * Generates the module-wide metrics configuration: common tags for every meter and the
+     * TimedAspect that @Timed on services needs outside of Spring MVC
+     */
+    public PsiClass generateMetricsConfig() {
+        String configPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getConfigPackage());
+        
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(configPackage).append(";\n\n")
+            .append("import io.micrometer.core.aop.TimedAspect;\n")
+            .append("import java.util.function.Predicate;\n")
+            .append("import org.aspectj.lang.ProceedingJoinPoint;\n")
+            .append("import io.micrometer.core.instrument.MeterRegistry;\n")
+            .append("import io.micrometer.core.instrument.config.MeterFilter;\n")
+            .append("import org.springframework.beans.factory.annotation.Value;\n")
+            .append("import org.springframework.boot.actuate.autoconfigure.metrics.MeterRegistryCustomizer;\n")
+            .append("import org.springframework.context.annotation.Bean;\n")
+            .append("import org.springframework.context.annotation.Configuration;\n")
+            .append("import org.springframework.web.bind.annotation.RestController;\n\n")
+            .append("/**\n")
+            .append(" * Metrics chung cho các controller/service được sinh (").append(config.getMetricsPrefix()).append(".*)\n")
+            .append(" */\n")
+            .append("@Configuration\n")
+            .append("public class MetricsConfig {\n\n")
+            .append("    @Bean\n")
+            .append("    public MeterRegistryCustomizer<MeterRegistry> metricsCommonTags(\n")
+            .append("            @Value(\"${spring.application.name:application}\") String applicationName) {\n")
+            .append("        return registry -> registry.config()\n")
+            .append("            .commonTags(\"application\", applicationName)\n")
+            .append("            .meterFilter(MeterFilter.maxExpected(\"").append(metricName("service.page.size"))
+            .append("\", ").append(config.isBoundedResults() ? config.getMaxPageSize() : 1000).append("d));\n")
+            .append("    }\n\n")
+            .append("    /**\n")
+            .append("     * Controller đã được Spring MVC đo theo @Timed, aspect chỉ đo service để tránh trùng meter\n")
+            .append("     */\n")
+            .append("    @Bean\n")
+            .append("    public TimedAspect timedAspect(MeterRegistry registry) {\n")
+            .append("        Predicate<ProceedingJoinPoint> skipControllers =\n")
+            .append("            pjp -> pjp.getTarget().getClass().isAnnotationPresent(RestController.class);\n")
+            .append("        return new TimedAspect(registry, skipControllers);\n")
+            .append("    }\n")
+            .append("}");
+        
+        PsiJavaFile configFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText("MetricsConfig.java", JavaFileType.INSTANCE, sourceText(code));
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(configFile);
+        
+        return configFile.getClasses()[0];
+    }
+    
+    /**
+     * Generates the module-wide SQL statement monitoring for non-prod profiles: datasource-proxy
+     * counts statements per HTTP request and per service call, publishes them as metrics and the
+     * X-Sql-Statement-Count header, and logs slow queries with the endpoint that issued them
+     */
+    public PsiClass generateSqlStatementConfig() {
+        String configPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getConfigPackage());
+        String servicePackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getServicePackage());
+        
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(configPackage).append(";\n\n")
+            .append("import io.micrometer.core.instrument.DistributionSummary;\n")
+            .append("import io.micrometer.core.instrument.MeterRegistry;\n")
+            .append("import java.io.IOException;\n")
+            .append("import java.io.PrintWriter;\n")
+            .append("import java.io.Writer;\n")
+            .append("import java.util.List;\n")
+            .append("import java.util.Map;\n")
+            .append("import java.util.concurrent.ConcurrentHashMap;\n")
+            .append("import java.util.stream.Collectors;\n")
+            .append("import javax.servlet.FilterChain;\n")
+            .append("import javax.servlet.ServletException;\n")
+            .append("import javax.servlet.ServletOutputStream;\n")
+            .append("import javax.servlet.WriteListener;\n")
+            .append("import javax.servlet.http.HttpServletRequest;\n")
+            .append("import javax.servlet.http.HttpServletResponse;\n")
+            .append("import javax.servlet.http.HttpServletResponseWrapper;\n")
+            .append("import javax.sql.DataSource;\n")
+            .append("import net.ttddyy.dsproxy.ExecutionInfo;\n")
+            .append("import net.ttddyy.dsproxy.QueryCountHolder;\n")
+            .append("import net.ttddyy.dsproxy.QueryInfo;\n")
+            .append("import net.ttddyy.dsproxy.listener.QueryExecutionListener;\n")
+            .append("import net.ttddyy.dsproxy.support.ProxyDataSource;\n")
+            .append("import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;\n")
+            .append("import org.aspectj.lang.ProceedingJoinPoint;\n")
+            .append("import org.aspectj.lang.annotation.Around;\n")
+            .append("import org.aspectj.lang.annotation.Aspect;\n")
+            .append("import org.slf4j.Logger;\n")
+            .append("import org.slf4j.LoggerFactory;\n")
+            .append("import org.slf4j.MDC;\n")
+            .append("import org.springframework.beans.factory.config.BeanPostProcessor;\n")
+            .append("import org.springframework.context.annotation.Bean;\n")
+            .append("import org.springframework.context.annotation.Configuration;\n")
+            .append("import org.springframework.context.annotation.Profile;\n")
+            .append("import org.springframework.web.filter.OncePerRequestFilter;\n")
+            .append("import org.springframework.web.servlet.HandlerMapping;\n")
+            .append("\n")
+            .append("/**\n")
+            .append(" * Đếm số câu SQL theo từng HTTP request và từng lời gọi service (datasource-proxy),\n")
+            .append(" * ghi vào metrics, header X-Sql-Statement-Count và log các câu chậm hơn ngưỡng kèm endpoint gọi.\n")
+            .append(" * Header có trên mọi response đồng bộ (controller, functional routes, 204 không body, lỗi) và đếm tới\n")
+            .append(" * lúc response bắt đầu được ghi; export StreamingResponseBody ghi body trên thread khác nên không có header.\n")
+            .append(" * Chỉ bật ngoài profile prod.\n")
+            .append(" */\n")
+            .append("@Configuration\n")
+            .append("@Profile(\"!prod\")\n")
+            .append("public class SqlStatementConfig {\n")
+            .append("\n")
+            .append("    public static final String STATEMENT_COUNT_HEADER = \"X-Sql-Statement-Count\";\n")
+            .append("\n")
+            .append("    private static final Logger log = LoggerFactory.getLogger(SqlStatementConfig.class);\n")
+            .append("    private static final long SLOW_QUERY_THRESHOLD_MS = ").append(config.getSlowQueryThresholdMs()).append(";\n")
+            .append("    private static final String ENDPOINT_MDC_KEY = \"endpoint\";\n")
+            .append("\n")
+            .append("    @Bean\n")
+            .append("    public static BeanPostProcessor sqlStatementDataSourceProxy() {\n")
+            .append("        return new BeanPostProcessor() {\n")
+            .append("            @Override\n")
+            .append("            public Object postProcessAfterInitialization(Object bean, String beanName) {\n")
+            .append("                if (bean instanceof DataSource && !(bean instanceof ProxyDataSource)) {\n")
+            .append("                    return ProxyDataSourceBuilder.create((DataSource) bean)\n")
+            .append("                        .name(beanName)\n")
+            .append("                        .countQuery()\n")
+            .append("                        .listener(new SlowQueryListener())\n")
+            .append("                        .build();\n")
+            .append("                }\n")
+            .append("                return bean;\n")
+            .append("            }\n")
+            .append("        };\n")
+            .append("    }\n")
+            .append("\n")
+            .append("    @Bean\n")
+            .append("    public OncePerRequestFilter sqlStatementCountFilter(MeterRegistry meterRegistry) {\n")
+            .append("        StatementSummaries summaries = new StatementSummaries(meterRegistry, \"request\");\n")
+            .append("        return new OncePerRequestFilter() {\n")
+            .append("            @Override\n")
+            .append("            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,\n")
+            .append("                                            FilterChain filterChain) throws ServletException, IOException {\n")
+            .append("                QueryCountHolder.clear();\n")
+            .append("                MDC.put(ENDPOINT_MDC_KEY, request.getMethod() + \" \" + request.getRequestURI());\n")
+            .append("                StatementCountResponse countedResponse = new StatementCountResponse(response);\n")
+            .append("                try {\n")
+            .append("                    filterChain.doFilter(request, countedResponse);\n")
+            .append("                } finally {\n")
+            .append("                    // Response không có body (204, 304...) chưa commit tới đây\n")
+            .append("                    if (!request.isAsyncStarted()) {\n")
+            .append("                        countedResponse.writeHeader();\n")
+            .append("                    }\n")
+            .append("                    Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);\n")
+            .append("                    summaries.record(request.getMethod() + \" \" + (pattern != null ? pattern : \"UNKNOWN\"), statementCount());\n")
+            .append("                    MDC.remove(ENDPOINT_MDC_KEY);\n")
+            .append("                    QueryCountHolder.clear();\n")
+            .append("                }\n")
+            .append("            }\n")
+            .append("        };\n")
+            .append("    }\n")
+            .append("\n")
+
+            .append("    @Bean\n")
+            .append("    public ServiceStatementCountAspect serviceStatementCountAspect(MeterRegistry meterRegistry) {\n")
+            .append("        return new ServiceStatementCountAspect(meterRegistry);\n")
+            .append("    }\n")
+            .append("\n")
+            .append("    private static long statementCount() {\n")
+            .append("        return QueryCountHolder.getGrandTotal().getTotal();\n")
+            .append("    }\n")
+            .append("\n")
+            .append("    static class SlowQueryListener implements QueryExecutionListener {\n")
+            .append("\n")
+            .append("        @Override\n")
+            .append("        public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {\n")
+            .append("        }\n")
+            .append("\n")
+            .append("        @Override\n")
+            .append("        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {\n")
+            .append("            if (execInfo.getElapsedTime() >= SLOW_QUERY_THRESHOLD_MS) {\n")
+            .append("                String sql = queryInfoList.stream().map(QueryInfo::getQuery).collect(Collectors.joining(\"; \"));\n")
+            .append("                log.warn(\"Slow query ({} ms) from {}: {}\", execInfo.getElapsedTime(), MDC.get(ENDPOINT_MDC_KEY), sql);\n")
+            .append("            }\n")
+            .append("        }\n")
+            .append("    }\n")
+            .append("\n")
+            .append("    /**\n")
+            .append("     * Meter của từng operation được tạo một lần rồi dùng lại, không build/register ở mỗi request\n")
+            .append("     */\n")
+            .append("    static class StatementSummaries {\n")
+            .append("\n")
+            .append("        private final MeterRegistry meterRegistry;\n")
+            .append("        private final String scope;\n")
+            .append("        private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();\n")
+            .append("\n")
+            .append("        StatementSummaries(MeterRegistry meterRegistry, String scope) {\n")
+            .append("            this.meterRegistry = meterRegistry;\n")
+            .append("            this.scope = scope;\n")
+            .append("        }\n")
+            .append("\n")
+            .append("        void record(String operation, long statements) {\n")
+            .append("            summaries.computeIfAbsent(operation, key -> DistributionSummary.builder(\"")
+            .append(metricName("sql.statements")).append("\")\n")
+            .append("                    .tag(\"scope\", scope)\n")
+            .append("                    .tag(\"operation\", key)\n")
+            .append("                    .register(meterRegistry))\n")
+            .append("                .record(statements);\n")
+            .append("        }\n")
+            .append("    }\n")
+            .append("\n")
+            .append("    /**\n")
+            .append("     * Ghi header ngay trước khi response commit: lần ghi hoặc flush đầu tiên, sendError/sendRedirect,\n")
+            .append("     * hoặc cuối request với response không có body. Chỉ ghi trên thread của request, nơi QueryCountHolder đếm\n")
+            .append("     */\n")
+            .append("    static class StatementCountResponse extends HttpServletResponseWrapper {\n")
+            .append("\n")
+            .append("        private final Thread requestThread = Thread.currentThread();\n")
+            .append("        private boolean headerWritten;\n")
+            .append("        private ServletOutputStream outputStream;\n")
+            .append("        private PrintWriter writer;\n")
+            .append("\n")
+            .append("        StatementCountResponse(HttpServletResponse response) {\n")
+            .append("            super(response);\n")
+            .append("        }\n")
+            .append("\n")
+            .append("        void writeHeader() {\n")
+            .append("            if (!headerWritten && Thread.currentThread() == requestThread && !isCommitted()) {\n")
+            .append("                headerWritten = true;\n")
+            .append("                setHeader(STATEMENT_COUNT_HEADER, String.valueOf(statementCount()));\n")
+            .append("            }\n")
+            .append("        }\n")
+            .append("\n")
+            .append("        @Override\n")
+            .append("        public ServletOutputStream getOutputStream() throws IOException {\n")
+            .append("            if (outputStream == null) {\n")
+            .append("                ServletOutputStream delegate = super.getOutputStream();\n")
+            .append("                outputStream = new ServletOutputStream() {\n")
+            .append("                    @Override\n")
+            .append("                    public void write(int b) throws IOException {\n")
+            .append("                        writeHeader();\n")
+            .append("                        delegate.write(b);\n")
+            .append("                    }\n")
+            .append("\n")
+            .append("                    @Override\n")
+            .append("                    public void write(byte[] b, int off, int len) throws IOException {\n")
+            .append("                        writeHeader();\n")
+            .append("                        delegate.write(b, off, len);\n")
+            .append("                    }\n")
+            .append("\n")
+            .append("                    @Override\n")
+            .append("                    public void flush() throws IOException {\n")
+            .append("                        writeHeader();\n")
+            .append("                        delegate.flush();\n")
+            .append("                    }\n")
+            .append("\n")
+            .append("                    @Override\n")
+            .append("                    public void close() throws IOException {\n")
+            .append("                        writeHeader();\n")
+            .append("                        delegate.close();\n")
+            .append("                    }\n")
+            .append("\n")
+            .append("                    @Override\n")
+            .append("                    public boolean isReady() {\n")
+            .append("                        return delegate.isReady();\n")
+            .append("                    }\n")
+            .append("\n")
+            .append("                    @Override\n")
+            .append("                    public void setWriteListener(WriteListener writeListener) {\n")
+            .append("                        delegate.setWriteListener(writeListener);\n")
+            .append("                    }\n")
+            .append("                };\n")
+            .append("            }\n")
+            .append("            return outputStream;\n")
+            .append("        }\n")
+            .append("\n")
+            .append("        @Override\n")
+            .append("        public PrintWriter getWriter() throws IOException {\n")
+            .append("            if (writer == null) {\n")
+            .append("                PrintWriter delegate = super.getWriter();\n")
+            .append("                writer = new PrintWriter(new Writer() {\n")
+            .append("                    @Override\n")
+            .append("                    public void write(char[] cbuf, int off, int len) {\n")
+            .append("                        writeHeader();\n")
+            .append("                        delegate.write(cbuf, off, len);\n")
+            .append("                    }\n")
+            .append("\n")
+            .append("                    @Override\n")
+            .append("                    public void flush() {\n")
+            .append("                        writeHeader();\n")
+            .append("                        delegate.flush();\n")
+            .append("                    }\n")
+            .append("\n")
+            .append("                    @Override\n")
+            .append("                    public void close() {\n")
+            .append("                        writeHeader();\n")
+            .append("                        delegate.close();\n")
+            .append("                    }\n")
+            .append("                });\n")
+            .append("            }\n")
+            .append("            return writer;\n")
+            .append("        }\n")
+            .append("\n")
+            .append("        @Override\n")
+            .append("        public void flushBuffer() throws IOException {\n")
+            .append("            writeHeader();\n")
+            .append("            super.flushBuffer();\n")
+            .append("        }\n")
+            .append("\n")
+            .append("        @Override\n")
+            .append("        public void sendError(int sc) throws IOException {\n")
+            .append("            writeHeader();\n")
+            .append("            super.sendError(sc);\n")
+            .append("        }\n")
+            .append("\n")
+            .append("        @Override\n")
+            .append("        public void sendError(int sc, String msg) throws IOException {\n")
+            .append("            writeHeader();\n")
+            .append("            super.sendError(sc, msg);\n")
+            .append("        }\n")
+            .append("\n")
+            .append("        @Override\n")
+            .append("        public void sendRedirect(String location) throws IOException {\n")
+            .append("            writeHeader();\n")
+            .append("            super.sendRedirect(location);\n")
+            .append("        }\n")
+            .append("    }\n")
+            .append("\n")
+            .append("    @Aspect\n")
+            .append("    static class ServiceStatementCountAspect {\n")
+            .append("\n")
+            .append("        private final StatementSummaries summaries;\n")
+            .append("\n")
+            .append("        ServiceStatementCountAspect(MeterRegistry meterRegistry) {\n")
+            .append("            this.summaries = new StatementSummaries(meterRegistry, \"service\");\n")
+            .append("        }\n")
+            .append("\n")
+            .append("        @Around(\"within(").append(servicePackage).append("..*) && @within(org.springframework.stereotype.Service)\")\n")
+            .append("        public Object countStatements(ProceedingJoinPoint pjp) throws Throwable {\n")
+            .append("            long before = statementCount();\n")
+            .append("            try {\n")
+            .append("                return pjp.proceed();\n")
+            .append("            } finally {\n")
+            .append("                summaries.record(pjp.getSignature().getDeclaringType().getSimpleName() + \".\" + pjp.getSignature().getName(),\n")
+            .append("                    statementCount() - before);\n")
+            .append("            }\n")
+            .append("        }\n")
+            .append("    }\n")
+            .append("}");
+        
+        PsiJavaFile configFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText("SqlStatementConfig.java", JavaFileType.INSTANCE, sourceText(code));
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(configFile);
+        
+        return configFile.getClasses()[0];
+    }
+    
+    /**
+     * Generates a @DataJpaTest running the service on embedded H2 and asserting the number of
+     * prepared statements through Hibernate Statistics, so N+1 regressions in the entity mapping
+     * fail the build. The fixtures populate the associations of the entity and every test
+     * initializes them, the expected counts follow the batch fetch sizes of the mapping
+     */
+    public PsiClass generateQueryCountTest(Set<String> dtoFields) {
+        String repositoryPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getRepositoryPackage());
+        String servicePackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getServicePackage());
+        String dtoPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getDtoPackage());
+        String entityPackage = ((PsiJavaFile) entityClass.getContainingFile()).getPackageName();
+        String testName = entityName + "QueryCountTest";
+        String serviceName = entityName + "Service";
+        String serviceFieldName = lcFirst(serviceName);
+        String paramName = entityName + "Param";
+        String idType = resolveIdType();
+        boolean patchEndpoint = isPatchEndpoint(dtoFields);
+        boolean patcherUsesObjectMapper = patchEndpoint
+            && directUpdateFields(dtoFields).stream().anyMatch(field -> jsonNodeConversion(field) == null);
+        boolean needsTestBeans = config.isGenerateMetrics() || patchEndpoint;
+        boolean cachedCount = isCountedSearch() && config.isCacheSearchCounts();
+        int seedSize = 30;
+        int pageSize = 10;
+        // Page chạy thêm câu count khi trang đầu đầy, Slice đọc thêm một dòng thay cho câu count
+        int pageStatements = config.isUseSliceSearch() ? 1 : 2;
+        int pageRows = config.isUseSliceSearch() ? pageSize + 1 : pageSize;
+        
+        List<String> unseededAssociations = new ArrayList<>();
+        List<TestAssociation> associations = testAssociations(unseededAssociations);
+        boolean hasChildren = associations.stream().anyMatch(association -> association.backReference != null);
+        // Batch size mặc định được cố định trong test để số câu không phụ thuộc cấu hình của ứng dụng
+        int defaultBatchSize = config.isTuneFetching() ? config.getBatchFetchSize() : 1;
+        
+        Set<String> typeImports = new LinkedHashSet<>();
+        List<ClassField> seedFields = querySeedFields(allFields);
+        addSeedImports(typeImports, seedFields);
+        Map<String, PsiClass> relatedClasses = new LinkedHashMap<>();
+        for (TestAssociation association : associations) {
+            relatedClasses.putIfAbsent(association.target.getName(), association.target);
+            if (association.collectionType != null) {
+                typeImports.add("java.util." + association.collectionType);
+            }
+        }
+        for (PsiClass related : relatedClasses.values()) {
+            String qualifiedName = related.getQualifiedName();
+            typeImports.add(qualifiedName != null ? qualifiedName : entityPackage + "." + related.getName());
+            addSeedImports(typeImports, querySeedFields(JavaClassAnalyzer.getClassFields(related)));
+        }
+        
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(repositoryPackage).append(";\n\n")
+            .append("import static org.assertj.core.api.Assertions.assertThat;\n\n")
+            .append("import java.util.List;\n")
+            .append("import org.hibernate.SessionFactory;\n")
+            .append("import org.hibernate.stat.Statistics;\n")
+            .append("import org.junit.jupiter.api.BeforeEach;\n")
+            .append("import org.junit.jupiter.api.Test;\n")
+            .append("import org.springframework.beans.factory.annotation.Autowired;\n")
+            .append("import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;\n")
+            .append("import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;\n")
+            .append("import org.springframework.context.annotation.Import;\n")
+            .append("import ").append(entityPackage).append(".").append(entityName).append(";\n")
+            .append("import ").append(servicePackage).append(".").append(serviceName).append(";\n")
+            .append("import ").append(dtoPackage).append(".filter.").append(paramName).append(";\n");
+        if (patchEndpoint) {
+            code.append("import ").append(servicePackage).append(".").append(entityName).append("Patcher;\n");
+        }
+        if (isEstimatedCount() || !unseededAssociations.isEmpty()) {
+            code.append("import org.junit.jupiter.api.Disabled;\n");
+        }
+        if (!associations.isEmpty()) {
+            code.append("import org.hibernate.Hibernate;\n");
+        }
+        if (cachedCount) {
+            code.append("import org.springframework.test.annotation.DirtiesContext;\n");
+        }
+        if (needsTestBeans) {
+            code.append("import org.springframework.boot.test.context.TestConfiguration;\n")
+                .append("import org.springframework.context.annotation.Bean;\n");
+        }
+        if (config.isGenerateMetrics()) {
+            code.append("import io.micrometer.core.instrument.MeterRegistry;\n")
+                .append("import io.micrometer.core.instrument.simple.SimpleMeterRegistry;\n");
+        }
+        if (patcherUsesObjectMapper) {
+            code.append("import com.fasterxml.jackson.databind.ObjectMapper;\n");
+        }
+        if (patchEndpoint) {
+            code.append("import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;\n");
+        }
+        for (String typeImport : typeImports) {
+            code.append("import ").append(typeImport).append(";\n");
+        }
+        code.append("\n");
+        
+        List<String> imports = new ArrayList<>();
+        imports.add(serviceName + ".class");
+        if (patchEndpoint) {
+            imports.add(entityName + "Patcher.class");
+        }
+        if (needsTestBeans) {
+            imports.add(testName + ".TestBeans.class");
+        }
+        
+        code.append("/**\n")
+            .append(" * Kiểm tra số câu SQL của ").append(serviceName).append(" trên H2 qua Hibernate Statistics.\n")
+            .append(" * Số câu tăng lên thường là dấu hiệu N+1 trong mapping của ").append(entityName).append(".\n")
+            .append(" */\n");
+        if (associations.isEmpty()) {
+            code.append("@DataJpaTest(properties = \"spring.jpa.properties.hibernate.generate_statistics=true\")\n");
+        } else {
+            code.append("@DataJpaTest(properties = {\n")
+                .append("    \"spring.jpa.properties.hibernate.generate_statistics=true\",\n")
+                .append("    \"spring.jpa.properties.hibernate.default_batch_fetch_size=").append(defaultBatchSize).append("\"\n")
+                .append("})\n");
+        }
+        code.append("@Import(").append(imports.size() > 1 ? "{" + String.join(", ", imports) + "}" : imports.get(0)).append(")\n")
+            .append("class ").append(testName).append(" {\n\n")
+            .append("    private static final int SEED_SIZE = ").append(seedSize).append(";\n")
+            .append("    private static final int PAGE_SIZE = ").append(pageSize).append(";\n");
+        if (hasChildren) {
+            code.append("    private static final int CHILDREN_PER_PARENT = 2;\n");
+        }
+        code.append("\n")
+            .append("    @Autowired\n")
+            .append("    private TestEntityManager entityManager;\n\n")
+            .append("    @Autowired\n")
+            .append("    private ").append(serviceName).append(" ").append(serviceFieldName).append(";\n\n")
+            .append("    private Statistics statistics;\n")
+            .append("    private ").append(idType).append(" firstId;\n\n");
+        
+        // Seed data
+        code.append("    @BeforeEach\n")
+            .append("    void seed() {\n")
+            .append("        for (int i = 0; i < SEED_SIZE; i++) {\n")
+            .append("            ").append(entityName).append(" entity = entityManager.persist(new").append(entityName).append("(i));\n");
+        for (TestAssociation association : associations) {
+            if (association.backReference != null) {
+                code.append("            for (int j = 0; j < CHILDREN_PER_PARENT; j++) {\n")
+                    .append("                entityManager.persist(new").append(association.target.getName())
+                    .append("(i * CHILDREN_PER_PARENT + j, entity));\n")
+                    .append("            }\n");
+            }
+        }
+        code.append("            if (i == 0) {\n")
+            .append("                firstId = entityManager.getId(entity, ").append(idType).append(".class);\n")
+            .append("            }\n")
+            .append("        }\n")
+            .append("        entityManager.flush();\n")
+            .append("        entityManager.clear();\n")
+            .append("        statistics = entityManager.getEntityManager().getEntityManagerFactory()\n")
+            .append("            .unwrap(SessionFactory.class).getStatistics();\n")
+            .append("        statistics.clear();\n")
+            .append("    }\n\n");
+        
+        // Association không seed được nhưng vẫn được nạp: số câu kỳ vọng không tính được nên các test đếm bị tắt
+        String unseededDisabled = unseededAssociations.isEmpty()
+            ? ""
+            : "    @Disabled(\"" + String.join(", ", unseededAssociations)
+                + " không được seed nhưng vẫn được Hibernate nạp, số câu SQL kỳ vọng không tính các câu này\")\n";
+        
+        // findById
+        Map<String, Integer> findByIdStatements = new LinkedHashMap<>();
+        findByIdStatements.put(entityName, 1);
+        for (TestAssociation association : associations) {
+            // Association EAGER được join vào câu đọc theo id
+            if (!association.eager) {
+                findByIdStatements.put(association.name, 1);
+            }
+        }
+        code.append("    @Test\n")
+            .append(unseededDisabled)
+            .append("    void findByIdStatementCount() {\n");
+        if (associations.isEmpty()) {
+            code.append("        ").append(serviceFieldName).append(".findById(firstId);\n");
+        } else {
+            code.append("        initializeAssociations(").append(serviceFieldName).append(".findById(firstId));\n");
+        }
+        appendStatementCountAssertion(code, findByIdStatements);
+        code.append("    }\n\n");
+        
+        // findAll
+        if (config.isBoundedResults()) {
+            code.append("    @Test\n")
+                .append(unseededDisabled)
+                .append("    void findAllPageStatementCount() {\n")
+                .append("        List<").append(entityName).append("> content = ").append(serviceFieldName)
+                .append(".findAll(0, PAGE_SIZE).getContent();\n")
+                .append("        assertThat(content).hasSize(PAGE_SIZE);\n");
+            appendInitializeAssociations(code, associations);
+            appendStatementCountAssertion(code,
+                listStatements(pageStatements, pageStatements == 2, pageRows, pageSize, associations, defaultBatchSize));
+        } else {
+            code.append("    @Test\n")
+                .append(unseededDisabled)
+                .append("    void findAllStatementCount() {\n")
+                .append("        List<").append(entityName).append("> content = ").append(serviceFieldName).append(".findAll();\n")
+                .append("        assertThat(content).hasSize(SEED_SIZE);\n");
+            appendInitializeAssociations(code, associations);
+            appendStatementCountAssertion(code, listStatements(1, false, seedSize, seedSize, associations, defaultBatchSize));
+        }
+        code.append("    }\n\n");
+        
+        // search
+        String disabled = isEstimatedCount()
+            ? "    @Disabled(\"estimateCount đọc pg_class, chỉ chạy được trên PostgreSQL\")\n"
+            : unseededDisabled;
+        // Cache tổng số nằm trong bean service nên mỗi test dùng context mới, không phụ thuộc thứ tự chạy
+        String freshContext = cachedCount
+            ? "    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)\n"
+            : "";
+        code.append("    @Test\n")
+            .append(disabled)
+            .append(freshContext)
+            .append("    void searchStatementCount() {\n")
+            .append("        List<").append(entityName).append("> content = ").append(serviceFieldName)
+            .append(".search(pageParam()).getContent();\n")
+            .append("        assertThat(content).hasSize(PAGE_SIZE);\n");
+        appendInitializeAssociations(code, associations);
+        appendStatementCountAssertion(code,
+            listStatements(pageStatements, pageStatements == 2, pageRows, pageSize, associations, defaultBatchSize));
+        code.append("    }\n\n");
+        
+        if (cachedCount) {
+            code.append("    @Test\n")
+                .append(unseededDisabled)
+                .append(freshContext)
+                .append("    void searchReusesCachedCount() {\n")
+                .append("        ").append(serviceFieldName).append(".search(pageParam());\n")
+                .append("        entityManager.clear();\n")
+                .append("        statistics.clear();\n")
+                .append("        List<").append(entityName).append("> content = ").append(serviceFieldName)
+                .append(".search(pageParam()).getContent();\n");
+            appendInitializeAssociations(code, associations);
+            appendStatementCountAssertion(code, listStatements(1, false, pageRows, pageSize, associations, defaultBatchSize));
+            code.append("    }\n\n");
+        }
+        
+        code.append("    private ").append(paramName).append(" pageParam() {\n");
+        if (config.isUseRecords()) {
+            code.append("        return ").append(paramName).append(".of(0, PAGE_SIZE);\n");
+        } else {
+            code.append("        ").append(paramName).append(" param = new ").append(paramName).append("();\n")
+                .append("        param.setPage(0);\n")
+                .append("        param.setSize(PAGE_SIZE);\n")
+                .append("        return param;\n");
+        }
+        code.append("    }\n\n");
+        
+        if (!associations.isEmpty()) {
+            // Nạp mọi association có dữ liệu để số câu đo được gồm cả các lần nạp LAZY
+            code.append("    private void initializeAssociations(").append(entityName).append(" entity) {\n");
+            for (TestAssociation association : associations) {
+                code.append("        Hibernate.initialize(entity.get").append(capitalizeFirstLetter(association.name)).append("());\n");
+            }
+            code.append("    }\n\n");
+        }
+        
+        // Entity factory
+        code.append("    private ").append(entityName).append(" new").append(entityName).append("(int i) {\n")
+            .append("        ").append(entityName).append(" entity = new ").append(entityName).append("();\n");
+        for (ClassField field : seedFields) {
+            code.append("        entity.set").append(capitalizeFirstLetter(field.getName())).append("(")
+                .append(seedValue(field)).append(");\n");
+        }
+        for (TestAssociation association : associations) {
+            if (association.backReference != null) {
+                continue;
+            }
+            // Mỗi bản ghi trỏ tới đối tượng riêng để số câu nạp không phụ thuộc các dòng được trả về
+            String related = "entityManager.persist(new" + association.target.getName() + "(i))";
+            code.append("        entity.set").append(capitalizeFirstLetter(association.name)).append("(")
+                .append(association.collectionType == null
+                    ? related
+                    : "new " + association.collectionType + "<>(List.of(" + related + "))")
+                .append(");\n");
+        }
+        code.append("        return entity;\n")
+            .append("    }\n");
+        
+        for (PsiClass related : relatedClasses.values()) {
+            TestAssociation child = associations.stream()
+                .filter(association -> association.target == related && association.backReference != null)
+                .findFirst()
+                .orElse(null);
+            String relatedName = related.getName();
+            code.append("\n")
+                .append("    private ").append(relatedName).append(" new").append(relatedName).append("(int i")
+                .append(child != null ? ", " + entityName + " parent" : "").append(") {\n")
+                .append("        ").append(relatedName).append(" entity = new ").append(relatedName).append("();\n");
+            for (ClassField field : querySeedFields(JavaClassAnalyzer.getClassFields(related))) {
+                code.append("        entity.set").append(capitalizeFirstLetter(field.getName())).append("(")
+                    .append(seedValue(field)).append(");\n");
+            }
+            if (child != null) {
+                code.append("        entity.set").append(capitalizeFirstLetter(child.backReference)).append("(parent);\n");
+            }
+            code.append("        return entity;\n")
+                .append("    }\n");
+        }
+        
+        if (needsTestBeans) {
+            code.append("\n")
+                .append("    @TestConfiguration\n")
+                .append("    static class TestBeans {\n");
+            if (config.isGenerateMetrics()) {
+                code.append("\n")
+                    .append("        @Bean\n")
+                    .append("        MeterRegistry meterRegistry() {\n")
+                    .append("            return new SimpleMeterRegistry();\n")
+                    .append("        }\n");
+            }
+            if (patchEndpoint) {
+                // @DataJpaTest không cấu hình Validator mà Patcher cần
+                code.append("\n")
+                    .append("        @Bean\n")
+                    .append("        LocalValidatorFactoryBean validator() {\n")
+                    .append("            return new LocalValidatorFactoryBean();\n")
+                    .append("        }\n");
+            }
+            if (patcherUsesObjectMapper) {
+                code.append("\n")
+                    .append("        @Bean\n")
+                    .append("        ObjectMapper objectMapper() {\n")
+                    .append("            return new ObjectMapper().findAndRegisterModules();\n")
+                    .append("        }\n");
+            }
+            code.append("    }\n");
+        }
+        code.append("}");
+        
+        PsiJavaFile testFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText(testName + ".java", JavaFileType.INSTANCE, sourceText(code));
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(testFile);
+        
+        return testFile.getClasses()[0];
+    }
+    
+    /**
+     * An association the generated query-count test populates: a to-one reference, an inverse
+     * one-to-many filled through the back reference of its children or an owning many-to-many
+     */
+    private static class TestAssociation {
+        private final String name;
+        private final PsiClass target;
+        private final boolean eager;
+        private final int batchSize;
+        private final String backReference;
+        private final String collectionType;
+        
+        private TestAssociation(String name, PsiClass target, boolean eager, int batchSize,
+                                String backReference, String collectionType) {
+            this.name = name;
+            this.target = target;
+            this.eager = eager;
+            this.batchSize = batchSize;
+            this.backReference = backReference;
+            this.collectionType = collectionType;
+        }
+    }
+    
+    /**
+     * Resolves the associations of the entity the query-count test can populate. The ones it cannot
+     * (element collections, inverse one-to-one, unidirectional one-to-many, maps) stay empty and
+     * are not initialized, so they only change the counts when Hibernate loads them anyway: their
+     * names are added to unseeded when they are EAGER or an inverse one-to-one, which Hibernate
+     * cannot proxy
+     */
+    private List<TestAssociation> testAssociations(List<String> unseeded) {
+        List<TestAssociation> associations = new ArrayList<>();
+        for (PsiField psiField : entityClass.getAllFields()) {
+            if (psiField.hasModifierProperty(PsiModifier.STATIC)) {
+                continue;
+            }
+            PsiAnnotation association = JavaClassAnalyzer.findPersistenceAnnotation(psiField,
+                    "ManyToOne", "OneToOne", "OneToMany", "ManyToMany", "ElementCollection");
+            if (association == null) {
+                continue;
+            }
+            String name = psiField.getName();
+            String kind = association.getQualifiedName().substring(association.getQualifiedName().lastIndexOf('.') + 1);
+            String mappedBy = annotationStringValue(psiField, kind, "mappedBy");
+            PsiClass target = null;
+            String collectionType = null;
+            if (kind.equals("ManyToOne") || kind.equals("OneToOne")) {
+                if (mappedBy == null && psiField.getType() instanceof PsiClassType) {
+                    target = ((PsiClassType) psiField.getType()).resolve();
+                }
+            } else if (!kind.equals("ElementCollection") && psiField.getType() instanceof PsiClassType) {
+                PsiClassType collection = (PsiClassType) psiField.getType();
+                PsiClass rawType = collection.resolve();
+                PsiType[] parameters = collection.getParameters();
+                String rawName = rawType == null ? null : rawType.getQualifiedName();
+                if (parameters.length == 1 && parameters[0] instanceof PsiClassType) {
+                    if (kind.equals("OneToMany") && mappedBy != null) {
+                        target = ((PsiClassType) parameters[0]).resolve();
+                    } else if (kind.equals("ManyToMany") && mappedBy == null) {
+                        if ("java.util.Set".equals(rawName)) {
+                            collectionType = "HashSet";
+                        } else if ("java.util.List".equals(rawName) || "java.util.Collection".equals(rawName)) {
+                            collectionType = "ArrayList";
+                        }
+                        if (collectionType != null) {
+                            target = ((PsiClassType) parameters[0]).resolve();
+                        }
+                    }
+                }
+            }
+            boolean toOne = kind.equals("ManyToOne") || kind.equals("OneToOne");
+            if (target == null || target.getName() == null) {
+                if (JavaClassAnalyzer.isEagerFetch(association, toOne) || kind.equals("OneToOne") && mappedBy != null) {
+                    unseeded.add(name);
+                }
+                continue;
+            }
+            // Proxy to-one được nạp theo @BatchSize của entity đích, collection theo @BatchSize của field,
+            // 0 nghĩa là dùng hibernate.default_batch_fetch_size
+            PsiAnnotation batchSize = toOne
+                ? target.getAnnotation("org.hibernate.annotations.BatchSize")
+                : psiField.getAnnotation("org.hibernate.annotations.BatchSize");
+            associations.add(new TestAssociation(name, target, JavaClassAnalyzer.isEagerFetch(association, toOne),
+                    batchSizeValue(batchSize), toOne ? null : mappedBy, collectionType));
+        }
+        return associations;
+    }
+    
+    /**
+     * The size of a @BatchSize annotation, 0 when it is absent or not a literal
+     */
+    private int batchSizeValue(PsiAnnotation batchSize) {
+        if (batchSize == null) {
+            return 0;
+        }
+        PsiAnnotationMemberValue size = batchSize.findAttributeValue("size");
+        try {
+            return size == null ? 0 : Integer.parseInt(size.getText().trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    /**
+     * Statements of a list read: the query itself, the count when it runs and the batched loads of
+     * every populated association of the returned rows; a Slice reads one row more than it returns
+     */
+    private Map<String, Integer> listStatements(int queryStatements, boolean countStatement, int rows, int returned,
+                                                List<TestAssociation> associations, int defaultBatchSize) {
+        Map<String, Integer> statements = new LinkedHashMap<>();
+        statements.put(entityName, countStatement ? queryStatements - 1 : queryStatements);
+        if (countStatement) {
+            statements.put("count", 1);
+        }
+        for (TestAssociation association : associations) {
+            // Mỗi dòng có đối tượng liên kết riêng nên số khóa chờ nạp bằng số dòng đã đọc
+            int batchSize = association.batchSize > 0 ? association.batchSize : defaultBatchSize;
+            statements.put(association.name, batchLoads(rows, returned, batchSize));
+        }
+        return statements;
+    }
+    
+    /**
+     * Statements Hibernate's LEGACY batch fetching runs to initialize the associations of the first
+     * returned rows when all read rows left a pending proxy or collection: every load takes, in row
+     * order, the largest pre-built batch size not above the pending count, the sizes being
+     * maxBatchSize, then halving down to 10, then 9 to 1
+     */
+    private static int batchLoads(int rows, int returned, int maxBatchSize) {
+        List<Integer> batchSizes = new ArrayList<>();
+        for (int size = Math.max(maxBatchSize, 1); size >= 1; ) {
+            batchSizes.add(size);
+            if (size <= 10) {
+                size--;
+            } else {
+                size = size / 2 < 10 ? 10 : size / 2;
+            }
+        }
+        int loaded = 0;
+        int statements = 0;
+        while (loaded < returned) {
+            int pending = rows - loaded;
+            loaded += batchSizes.stream().filter(size -> size <= pending).findFirst().orElse(1);
+            statements++;
+        }
+        return statements;
+    }
+    
+    private void appendInitializeAssociations(StringBuilder code, List<TestAssociation> associations) {
+        if (!associations.isEmpty()) {
+            code.append("        content.forEach(this::initializeAssociations);\n");
+        }
+    }
+    
+    private void appendStatementCountAssertion(StringBuilder code, Map<String, Integer> statements) {
+        List<String> parts = new ArrayList<>();
+        statements.forEach((label, count) -> parts.add(label + ": " + count));
+        code.append("        // ").append(String.join(", ", parts)).append("\n")
+            .append("        assertThat(statistics.getPrepareStatementCount()).isEqualTo(")
+            .append(statements.values().stream().mapToInt(Integer::intValue).sum()).append(");\n");
+    }
+    
+    private void addSeedImports(Set<String> imports, List<ClassField> seedFields) {
+        for (ClassField field : seedFields) {
+            String qualifiedType = field.getQualifiedType();
+            if (qualifiedType != null && qualifiedType.contains(".") && !qualifiedType.startsWith("java.lang.")) {
+                imports.add(qualifiedType);
+            }
+        }
+    }
+    
+    /**
+     * Fields the generated test fills when seeding: generated ids, @Version, transient,
+     * collection and association fields are left to JPA or to the fixture wiring
+     */
+    private List<ClassField> querySeedFields(List<ClassField> fields) {
+        return fields.stream()
+            .filter(field -> !field.isCollection() && seedValue(field) != null)
+            .filter(field -> field.getAnnotations().stream().noneMatch(a -> a.endsWith("GeneratedValue")
+                || a.endsWith("Version") || a.endsWith("Transient")))
+            .toList();
+    }
+    
+    /**
+     * Distinct value of the i-th seeded row for simple field types, null for anything else
+     */
+    private String seedValue(ClassField field) {
+        switch (field.getType()) {
+            case "String":
+                return "\"" + field.getName() + "-\" + i";
+            case "Long":
+            case "long":
+                return "(long) i + 1";
+            case "Integer":
+            case "int":
+                return "i + 1";
+            case "Short":
+            case "short":
+                return "(short) (i + 1)";
+            case "Double":
+            case "double":
+                return "(double) i";
+            case "Float":
+            case "float":
+                return "(float) i";
+            case "Boolean":
+            case "boolean":
+                return "i % 2 == 0";
+            case "BigDecimal":
+                return "BigDecimal.valueOf(i)";
+            case "BigInteger":
+                return "BigInteger.valueOf(i)";
+            case "LocalDate":
+                return "LocalDate.now().minusDays(i)";
+            case "LocalDateTime":
+                return "LocalDateTime.now().minusHours(i)";
+            case "Instant":
+                return "Instant.now().minusSeconds(i)";
+            case "UUID":
+                return "UUID.randomUUID()";
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Test source directory (relative to the project root) of the generated query-count test
+     */
+    public String getTestSourceDirectory() {
+        String repositoryPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getRepositoryPackage());
+        return "src/test/java/" + repositoryPackage.replace('.', '/');
+    }
+    
+    /**
+     * Generates the shared EstimatedPage returned by searches whose total may come from the
+     * PostgreSQL planner estimate instead of count(*)
+     */
+    public PsiClass generateEstimatedPage() {
+        String dtoPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getDtoPackage());
+        
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(dtoPackage).append(";\n\n")
+            .append("import java.util.List;\n")
+            .append("import org.springframework.data.domain.PageImpl;\n")
+            .append("import org.springframework.data.domain.Pageable;\n\n")
+            .append("/**\n")
+            .append(" * Page có cờ estimated cho biết totalElements là giá trị ước lượng\n")
+            .append(" */\n")
+            .append("public class EstimatedPage<T> extends PageImpl<T> {\n\n")
+            .append("    private final boolean estimated;\n\n")
+            .append("    public EstimatedPage(List<T> content, Pageable pageable, long total, boolean estimated) {\n")
+            .append("        super(content, pageable, total);\n")
+            .append("        this.estimated = estimated;\n")
+            .append("    }\n\n")
+            .append("    public boolean isEstimated() {\n")
+            .append("        return estimated;\n")
+            .append("    }\n")
+            .append("}");
+        
+        PsiJavaFile pageFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText("EstimatedPage.java", JavaFileType.INSTANCE, sourceText(code));
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(pageFile);
+        
+        return pageFile.getClasses()[0];
+    }
+    
+    /**
+     * Appends findAllByIds: one SELECT ... IN per chunk of IN_CLAUSE_CHUNK_SIZE ids instead of one
+     * findById per id, returned in the order of the requested ids
+     */
+    private void appendFindAllByIdsMethod(StringBuilder code, String repositoryFieldName) {
+        String idType = resolveIdType();
+        ClassField idField = allFields.stream()
+            .filter(field -> field.getName().equals(resolveIdFieldName()))
+            .findFirst()
+            .orElse(null);
+        String idGetter = idField != null ? getterName(idField) : "getId";
+        
+        code.append("\n")
+            .append("    /**\n")
+            .append("     * Tìm nhiều ").append(entityName).append(" theo id, kết quả theo thứ tự id của request (bỏ id trùng và id không tồn tại).\n")
+            .append("     * Mỗi câu SELECT ... IN có tối đa IN_CLAUSE_CHUNK_SIZE tham số (lũy thừa của 2): khi bật\n")
+            .append("     * hibernate.query.in_clause_parameter_padding, số tham số được làm tròn lên lũy thừa của 2 nên\n")
+            .append("     * mọi request chỉ dùng vài câu SQL trong query plan cache.\n")
+            .append("     */\n")
+            .append("    public List<").append(entityName).append("> findAllByIds(List<").append(idType).append("> ids) {\n")
+            .append("        List<").append(idType).append("> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));\n")
+            .append("        distinctIds.remove(null);\n")
+            .append("        Map<").append(idType).append(", ").append(entityName).append("> entitiesById = new HashMap<>();\n")
+            .append("        for (int from = 0; from < distinctIds.size(); from += IN_CLAUSE_CHUNK_SIZE) {\n")
+            .append("            List<").append(idType).append("> chunk = distinctIds.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, distinctIds.size()));\n")
+            .append("            for (").append(entityName).append(" entity : ").append(repositoryFieldName).append(".findAllById(chunk)) {\n")
+            .append("                entitiesById.put(entity.").append(idGetter).append("(), entity);\n")
+            .append("            }\n")
+            .append("        }\n")
+            .append("        List<").append(entityName).append("> result = new ArrayList<>(entitiesById.size());\n")
+            .append("        for (").append(idType).append(" id : distinctIds) {\n")
+            .append("            ").append(entityName).append(" entity = entitiesById.get(id);\n")
+            .append("            if (entity != null) {\n")
+            .append("                result.add(entity);\n")
+            .append("            }\n")
+            .append("        }\n")
+            .append("        return result;\n")
+            .append("    }\n");
+    }
+    
+    /**
+     * Chunk size of findAllByIds, rounded down to a power of two so that full chunks match a padded
+     * IN-list exactly
+     */
+    private int inClauseChunkSize() {
+        return Integer.highestOneBit(Math.max(1, config.getInClauseChunkSize()));
+    }
+    
+    /**
+     * Generates the module-wide configuration turning on hibernate.query.in_clause_parameter_padding,
+     * so that IN-lists of different sizes share the SQL of the next power of two
+     */
+    public PsiClass generateInClauseConfig() {
+        String configPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getConfigPackage());
+        
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(configPackage).append(";\n\n")
+            .append("import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;\n")
+            .append("import org.springframework.context.annotation.Bean;\n")
+            .append("import org.springframework.context.annotation.Configuration;\n\n")
+            .append("/**\n")
+            .append(" * Làm tròn số tham số của IN lên lũy thừa của 2 (IN (?, ?, ?) thành IN (?, ?, ?, ?)) để query plan cache\n")
+            .append(" * và statement cache của driver chỉ giữ vài câu SQL cho mọi độ dài danh sách id\n")
+            .append(" */\n")
+            .append("@Configuration\n")
+            .append("public class HibernateInClauseConfig {\n\n")
+            .append("    @Bean\n")
+            .append("    public HibernatePropertiesCustomizer inClauseParameterPaddingCustomizer() {\n")
+            .append("        // Giá trị trong spring.jpa.properties được ưu tiên\n")
+            .append("        return properties -> properties.putIfAbsent(\"hibernate.query.in_clause_parameter_padding\", \"true\");\n")
+            .append("    }\n")
+            .append("}");
+        
+        // Tạo file
+        PsiJavaFile configFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText("HibernateInClauseConfig.java", JavaFileType.INSTANCE, sourceText(code));
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(configFile);
+        
+        return configFile.getClasses()[0];
+    }
+    
+    /**
+     * Appends chunked batch write methods to the service. Each chunk is written in its own
+     * transaction and the persistence context is flushed and cleared between chunks.
+     */
+    private void appendBatchServiceMethods(StringBuilder code, String repositoryFieldName) {
+        String idType = resolveIdType();
+        
+        // Save all theo từng chunk
+        code.append("\n")
+            .append("    /**\n")
+            .append("     * Lưu danh sách theo từng chunk BATCH_SIZE, mỗi chunk một transaction.\n")
+            .append("     * Cấu hình spring.jpa.properties.hibernate.jdbc.batch_size để gộp các câu INSERT/UPDATE.\n")
+            .append("     * Không chạy trong transaction read-only của lớp, transaction do từng chunk tự mở.\n")
+            .append("     */\n");
+        appendCacheEvictAllAnnotation(code);
+        code.append("    @Transactional(propagation = Propagation.NOT_SUPPORTED)\n")
+            .append("    public List<").append(entityName).append("> saveAll(List<").append(entityName).append("> entities) {\n")
+            .append("        List<").append(entityName).append("> result = new ArrayList<>(entities.size());\n")
+            .append("        for (int from = 0; from < entities.size(); from += BATCH_SIZE) {\n")
+            .append("            List<").append(entityName).append("> chunk = entities.subList(from, Math.min(from + BATCH_SIZE, entities.size()));\n")
+            .append("            result.addAll(transactionTemplate.execute(status -> {\n")
+            .append("                List<").append(entityName).append("> saved = ").append(repositoryFieldName).append(".saveAll(chunk);\n")
+            .append("                entityManager.flush();\n")
+            .append("                entityManager.clear();\n")
+            .append("                return saved;\n")
+            .append("            }));\n")
+            .append("        }\n")
+            .append("        return result;\n")
+            .append("    }\n\n");
+        
+        // Update all theo từng chunk
+        ClassField idField = allFields.stream()
+            .filter(field -> field.getName().equals(resolveIdFieldName()))
+            .findFirst()
+            .orElse(null);
+        String idGetter = idField != null ? getterName(idField) : "getId";
+        code.append("    /**\n")
+            .append("     * Cập nhật theo từng chunk BATCH_SIZE, mỗi chunk một transaction: entity của chunk được nạp bằng\n")
+            .append("     * một câu SELECT ... IN, updater ghi các trường thay đổi và dirty checking tạo câu UPDATE khi flush.\n")
+            .append("     * Id không tồn tại bị bỏ qua.\n")
+            .append("     */\n");
+        appendCacheEvictAllAnnotation(code);
+        code.append("    @Transactional(propagation = Propagation.NOT_SUPPORTED)\n")
+            .append("    public <D> List<").append(entityName).append("> updateAll(Map<").append(idType).append(", D> changes, BiConsumer<D, ")
+            .append(entityName).append("> updater) {\n")
+            .append("        List<").append(idType).append("> ids = new ArrayList<>(changes.keySet());\n")
+            .append("        List<").append(entityName).append("> result = new ArrayList<>(ids.size());\n")
+            .append("        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {\n")
+            .append("            List<").append(idType).append("> chunk = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));\n")
+            .append("            result.addAll(transactionTemplate.execute(status -> {\n")
+            .append("                List<").append(entityName).append("> entities = ").append(repositoryFieldName).append(".findAllById(chunk);\n")
+            .append("                for (").append(entityName).append(" entity : entities) {\n")
+            .append("                    updater.accept(changes.get(entity.").append(idGetter).append("()), entity);\n")
+            .append("                }\n")
+            .append("                entityManager.flush();\n")
+            .append("                entityManager.clear();\n")
+            .append("                return entities;\n")
+            .append("            }));\n")
+            .append("        }\n")
+            .append("        return result;\n")
+            .append("    }\n\n");
+        
+        // Delete all theo từng chunk
+        code.append("    /**\n");
+        if (isBulkDeleteSafe()) {
+            code.append("     * Xóa theo từng chunk BATCH_SIZE, mỗi chunk một câu DELETE ... WHERE id IN (...) trong transaction riêng.\n");
+        } else {
+            // DELETE bằng JPQL bỏ qua cascade, orphanRemoval và bảng của collection
+            code.append("     * Xóa theo từng chunk BATCH_SIZE, mỗi chunk một transaction: entity được nạp bằng một câu SELECT ... IN\n")
+                .append("     * rồi xóa qua EntityManager.remove để áp dụng cascade, orphanRemoval và xóa dòng của các bảng collection.\n");
+        }
+        code.append("     */\n");
+        appendCacheEvictAllAnnotation(code);
+        code.append("    @Transactional(propagation = Propagation.NOT_SUPPORTED)\n")
+            .append("    public void deleteAllById(List<").append(idType).append("> ids) {\n")
+            .append("        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {\n")
+            .append("            List<").append(idType).append("> chunk = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));\n")
+            .append("            transactionTemplate.executeWithoutResult(status -> {\n");
+        if (isBulkDeleteSafe()) {
+            code.append("                ").append(repositoryFieldName).append(".deleteAllByIdInBatch(chunk);\n");
+        } else {
+            code.append("                ").append(repositoryFieldName).append(".deleteAll(").append(repositoryFieldName)
+                .append(".findAllById(chunk));\n");
+        }
+        code.append("                entityManager.flush();\n")
+            .append("                entityManager.clear();\n")
+            .append("            });\n")
+            .append("        }\n")
+            .append("    }\n");
+    }
+    
+    /**
+     * Appends @CachePut for the written entity and evicts cached search pages
+     */
+    private void appendCacheWriteAnnotations(StringBuilder code, String entityExpression) {
+        if (!config.isUseSpringCache()) {
+            return;
+        }
+        if (!isSearchCached()) {
+            code.append("    @CachePut(key = \"").append(entityExpression).append(".").append(resolveIdFieldName()).append("\")\n");
+            return;
+        }
+        code.append("    @Caching(\n")
+            .append("        put = @CachePut(key = \"").append(entityExpression).append(".").append(resolveIdFieldName()).append("\"),\n")
+            .append("        evict = @CacheEvict(cacheNames = \"").append(searchCacheName()).append("\", allEntries = true)\n")
+            .append("    )\n");
+    }
+    
+    private void appendCacheEvictAnnotations(StringBuilder code, String keyExpression) {
+        if (!config.isUseSpringCache()) {
+            return;
+        }
+        if (!isSearchCached()) {
+            code.append("    @CacheEvict(key = \"").append(keyExpression).append("\")\n");
+            return;
+        }
+        code.append("    @Caching(evict = {\n")
+            .append("        @CacheEvict(key = \"").append(keyExpression).append("\"),\n")
+            .append("        @CacheEvict(cacheNames = \"").append(searchCacheName()).append("\", allEntries = true)\n")
+            .append("    })\n");
+    }
+    
+    private void appendCacheEvictAllAnnotation(StringBuilder code) {
+        if (!config.isUseSpringCache()) {
+            return;
+        }
+        if (!isSearchCached()) {
+            code.append("    @CacheEvict(cacheNames = \"").append(cacheName()).append("\", allEntries = true)\n");
+            return;
+        }
+        code.append("    @CacheEvict(cacheNames = {\"").append(cacheName()).append("\", \"")
+            .append(searchCacheName()).append("\"}, allEntries = true)\n");
+    }
+    
+    /**
+     * Search pages are only cached for entities without lazy associations: a cached page holds
+     * detached entities, whose lazy associations throw LazyInitializationException on a cache hit
+     */
+    private boolean isSearchCached() {
+        return config.isUseSpringCache() && !hasLazyAssociations();
+    }
+    
+    private boolean hasLazyAssociations() {
+        for (PsiField psiField : entityClass.getAllFields()) {
+            if (psiField.hasModifierProperty(PsiModifier.STATIC)) {
+                continue;
+            }
+            PsiAnnotation association = JavaClassAnalyzer.findPersistenceAnnotation(psiField,
+                    "ManyToOne", "OneToOne", "OneToMany", "ManyToMany", "ElementCollection");
+            if (association == null) {
+                continue;
+            }
+            String kind = association.getQualifiedName().substring(association.getQualifiedName().lastIndexOf('.') + 1);
+            if (!JavaClassAnalyzer.isEagerFetch(association, kind.equals("ManyToOne") || kind.equals("OneToOne"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Generates a per-entity Caffeine cache configuration that registers the entity caches
+     * with size- and TTL-based eviction on the shared CaffeineCacheManager
+     */
+    public PsiClass generateCacheConfig() {
+        String configPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getConfigPackage());
+        String configName = entityName + "CacheConfig";
+        
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(configPackage).append(";\n\n")
+            .append("import com.github.benmanes.caffeine.cache.Caffeine;\n")
+            .append("import java.time.Duration;\n")
+            .append("import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;\n")
+            .append("import org.springframework.cache.annotation.EnableCaching;\n")
+            .append("import org.springframework.cache.caffeine.CaffeineCacheManager;\n")
+            .append("import org.springframework.context.annotation.Bean;\n")
+            .append("import org.springframework.context.annotation.Configuration;\n\n")
+            .append("/**\n")
+            .append(" * Caffeine caches for ").append(entityName).append(isSearchCached() ? " (findById và search)\n" : " (findById)\n");
+        if (!isSearchCached()) {
+            code.append(" * Trang search không được cache: entity có association LAZY, trang lấy từ cache chứa entity đã detach\n")
+                .append(" * và ném LazyInitializationException khi đọc association đó\n");
+        }
+        code.append(" */\n")
+            .append("@Configuration\n")
+            .append("@EnableCaching\n")
+            .append("public class ").append(configName).append(" {\n\n")
+            .append("    public static final String CACHE_NAME = \"").append(cacheName()).append("\";\n");
+        if (isSearchCached()) {
+            code.append("    public static final String SEARCH_CACHE_NAME = \"").append(searchCacheName()).append("\";\n");
+        }
+        code.append("\n")
+            .append("    private static final long MAXIMUM_SIZE = ").append(config.getCacheMaxSize()).append("L;\n")
+            .append("    private static final Duration TIME_TO_LIVE = Duration.ofMinutes(").append(config.getCacheTtlMinutes()).append(");\n\n")
+            .append("    @Bean\n")
+            .append("    public CacheManagerCustomizer<CaffeineCacheManager> ").append(lcFirst(entityName)).append("CacheCustomizer() {\n")
+            .append("        return cacheManager -> {\n")
+            .append("            cacheManager.registerCustomCache(CACHE_NAME, newCache().build());\n");
+        if (isSearchCached()) {
+            code.append("            cacheManager.registerCustomCache(SEARCH_CACHE_NAME, newCache().build());\n");
+        }
+        code.append("        };\n")
+            .append("    }\n\n")
+            .append("    private static Caffeine<Object, Object> newCache() {\n")
+            .append("        return Caffeine.newBuilder()\n")
+            .append("            .maximumSize(MAXIMUM_SIZE)\n")
+            .append("            .expireAfterWrite(TIME_TO_LIVE)\n")
+            .append("            .recordStats();\n")
+            .append("    }\n")
+            .append("}");
+        
+        // Tạo file
+        PsiJavaFile configFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText(configName + ".java", JavaFileType.INSTANCE, sourceText(code));
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(configFile);
+        
+        return configFile.getClasses()[0];
+    }
+    
+    /**
+     * Appends a read-only export method that walks the repository stream of export rows. The rows
+     * are projections, so the persistence context stays empty whatever the table size
+     */
+    private void appendExportServiceMethod(StringBuilder code, String repositoryFieldName) {
+        String exportRowName = exportRowName();
+        code.append("\n")
+            .append("    @Transactional(readOnly = true)\n")
+            .append("    public void exportAll(Consumer<").append(exportRowName).append("> consumer) {\n")
+            .append("        try (Stream<").append(exportRowName).append("> stream = ").append(repositoryFieldName).append(".streamAll()) {\n")
+            .append("            stream.forEach(consumer);\n")
+            .append("        }\n")
+            .append("    }\n");
+    }
+    
+    /**
+     * Generates the export row: the basic columns of the entity and the id of its to-one
+     * associations, filled by the JPQL constructor expression of streamAll
+     */
+    public PsiClass generateExportRow() {
+        String dtoPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getDtoPackage());
+        String exportRowName = exportRowName();
+        List<ClassField> exportFields = exportFields();
+        
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(dtoPackage).append(";\n\n");
+        Set<String> imports = new TreeSet<>();
+        for (ClassField field : exportFields) {
+            String qualifiedType = exportColumnQualifiedType(field);
+            if (qualifiedType != null && qualifiedType.contains(".") && !qualifiedType.startsWith("java.lang.")) {
+                imports.add(qualifiedType);
+            }
+        }
+        for (String qualifiedType : imports) {
+            code.append("import ").append(qualifiedType).append(";\n");
+        }
+        code.append(imports.isEmpty() ? "" : "\n")
+            .append("/**\n")
+            .append(" * Một dòng export của ").append(entityName).append(": cột cơ bản và id của khóa ngoại, không phải entity managed\n")
+            .append(" */\n");
+        
+        if (config.isUseRecords()) {
+            code.append("public record ").append(exportRowName).append("(\n");
+            for (int i = 0; i < exportFields.size(); i++) {
+                ClassField field = exportFields.get(i);
+                code.append("        ").append(exportColumnType(field)).append(" ").append(exportColumnName(field))
+                    .append(i < exportFields.size() - 1 ? ",\n" : "\n");
+            }
+            code.append(") {\n")
+                .append("}");
+        } else {
+            code.append("public class ").append(exportRowName).append(" {\n\n");
+            for (ClassField field : exportFields) {
+                code.append("    private final ").append(exportColumnType(field)).append(" ").append(exportColumnName(field)).append(";\n");
+            }
+            code.append("\n")
+                .append("    public ").append(exportRowName).append("(");
+            for (int i = 0; i < exportFields.size(); i++) {
+                ClassField field = exportFields.get(i);
+                code.append(i > 0 ? ", " : "").append(exportColumnType(field)).append(" ").append(exportColumnName(field));
+            }
+            code.append(") {\n");
+            for (ClassField field : exportFields) {
+                String columnName = exportColumnName(field);
+                code.append("        this.").append(columnName).append(" = ").append(columnName).append(";\n");
+            }
+            code.append("    }\n");
+            for (ClassField field : exportFields) {
+                String columnName = exportColumnName(field);
+                code.append("\n")
+                    .append("    public ").append(exportColumnType(field)).append(" ").append(exportColumnGetter(field)).append("() {\n")
+                    .append("        return ").append(columnName).append(";\n")
+                    .append("    }\n");
+            }
+            code.append("}");
+        }
+        
+        PsiJavaFile rowFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText(exportRowName + ".java", JavaFileType.INSTANCE, sourceText(code));
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(rowFile);
+        
+        return rowFile.getClasses()[0];
+    }
+    
+    public PsiClass generateController(boolean hasService) {
+        return generateController(hasService, Collections.emptySet());
+    }
+    
+    public PsiClass generateController(boolean hasService, Set<String> dtoFields) {
+        if (config.isReactive() && hasService) {
+            return generateReactiveController(dtoFields);
+        }
+        if (config.isUseFunctionalRouter() && hasService) {
+            return generateRouter(dtoFields);
+        }
+        
+        String controllerPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getControllerPackage());
+        String controllerName = entityName + "Controller";
+        
+        // Tạo toàn bộ mã nguồn với tất cả các import cần thiết
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(controllerPackage).append(";\n\n");
+        
+        // Thêm import cần thiết
+        if (hasService) {
+            code.append("import java.util.List;\n")
+                .append("import java.util.ArrayList;\n")
+                .append("import org.springframework.data.domain.Page;\n")
+                .append("import org.springframework.http.HttpStatus;\n")
+                .append("import org.springframework.http.ResponseEntity;\n")
+                .append("import org.springframework.web.bind.annotation.*;\n");
+            
+            // Add validation imports
+            code.append("import javax.validation.Valid;\n")
+                .append("import org.springframework.validation.BindingResult;\n")
+                .append("import org.springframework.validation.FieldError;\n")
+                .append("import java.util.HashMap;\n")
+                .append("import java.util.Map;\n");
+            
+            // Import entity
+            String entityFQN = ((PsiJavaFile) entityClass.getContainingFile()).getPackageName() + "." + entityName;
+            code.append("import ").append(entityFQN).append(";\n");
+            
+            // Import DTO
+            String dtoPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getDtoPackage());
+            String dtoName = entityName + "Dto";
+            code.append("import ").append(dtoPackage).append(".").append(dtoName).append(";\n");
+            
+            // Import service
+            String servicePackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getServicePackage());
+            String serviceName = entityName + "Service";
+            code.append("import ").append(servicePackage).append(".").append(serviceName).append(";\n");
+            
+            // Import param
+            String paramPackage = dtoPackage + ".filter";
+            String paramName = entityName + "Param";
+            code.append("import ").append(paramPackage).append(".").append(paramName).append(";\n");
+            
+            if (config.isUseSliceSearch()) {
+                code.append("import ").append(dtoPackage).append(".SliceResponse;\n");
+            }
+            
+            if (isPatchEndpoint(dtoFields)) {
+                code.append("import com.fasterxml.jackson.databind.JsonNode;\n")
+                    .append("import ").append(servicePackage).append(".").append(entityName).append("Patcher;\n");
+            }
+            
+            if (config.isGenerateMetrics()) {
+                code.append("import io.micrometer.core.annotation.Timed;\n");
+            }
+            
+            // Batch imports
+            if (config.isGenerateBatchOperations()) {
+                code.append("import javax.validation.ConstraintViolation;\n")
+                    .append("import javax.validation.ConstraintViolationException;\n")
+                    .append("import javax.validation.ElementKind;\n")
+                    .append("import javax.validation.Path;\n")
+                    .append("import org.springframework.validation.annotation.Validated;\n");
+            }
+            
+            // GET search imports
+            if (isGetSearch()) {
+                code.append("import org.springframework.web.context.request.WebRequest;\n");
+                if (findVersionField() != null) {
+                    code.append("import java.nio.charset.StandardCharsets;\n")
+                        .append("import org.springframework.data.domain.").append(pageType()).append(";\n")
+                        .append("import org.springframework.http.CacheControl;\n")
+                        .append("import org.springframework.util.DigestUtils;\n");
+                }
+            }
+            
+            // Export imports
+            if (config.isGenerateStreamingExport()) {
+                code.append("import java.io.BufferedWriter;\n")
+                    .append("import java.io.IOException;\n")
+                    .append("import java.io.OutputStreamWriter;\n")
+                    .append("import java.io.UncheckedIOException;\n")
+                    .append("import java.io.Writer;\n")
+                    .append("import java.nio.charset.StandardCharsets;\n")
+                    .append("import com.fasterxml.jackson.databind.ObjectMapper;\n")
+                    .append("import org.springframework.http.MediaType;\n")
+                    .append("import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;\n")
+                    .append("import ").append(dtoPackage).append(".").append(exportRowName()).append(";\n");
+            }
+            code.append("\n");
+            
+            // Tạo class với annotation
+            boolean baseCrud = useBaseCrudController();
+            String idType = resolveIdType();
+            code.append("@RestController\n")
+                .append("@RequestMapping(\"/").append(lcFirst(entityName)).append("s\")\n");
+            if (config.isGenerateBatchOperations()) {
+                // Bật method validation để @Valid trên List/Map của batch kiểm tra từng phần tử
+                code.append("@Validated\n");
+            }
+            if (baseCrud && config.isGenerateMetrics()) {
+                // Endpoint kế thừa từ BaseCrudController dùng @Timed của class (WebMvcMetricsFilter đọc theo bean type)
+                code.append("@Timed(value = \"").append(metricName("controller")).append("\", extraTags = {\"entity\", \"")
+                    .append(lcFirst(entityName)).append("\"})\n");
+            }
+            code.append("public class ").append(controllerName);
+            if (baseCrud) {
+                code.append(" extends BaseCrudController<").append(entityName).append(", ").append(dtoName)
+                    .append(", ").append(idType).append(">");
+            }
+            code.append(" {\n\n");
+            
+            // Service field
+            String serviceFieldName = lcFirst(serviceName);
+            code.append("    private final ").append(serviceName).append(" ").append(serviceFieldName).append(";\n");
+            if (config.isGenerateStreamingExport()) {
+                code.append("    private final ObjectMapper objectMapper;\n");
+            }
+            code.append("\n");
+            
+            // Constructor
+            code.append("    public ").append(controllerName).append("(").append(serviceName).append(" ")
+                .append(serviceFieldName);
+            if (config.isGenerateStreamingExport()) {
+                code.append(", ObjectMapper objectMapper");
+            }
+            code.append(") {\n");
+            if (baseCrud) {
+                code.append("        super(").append(serviceFieldName).append(");\n");
+            }
+            code.append("        this.").append(serviceFieldName).append(" = ").append(serviceFieldName).append(";\n");
+            if (config.isGenerateStreamingExport()) {
+                code.append("        this.objectMapper = objectMapper;\n");
+            }
+            code.append("    }\n\n");
+            
+            // Add validation error handler method
+            if (!baseCrud) {
+                appendValidationErrorHandler(code, "private");
+            }
+            
+            // Endpoints
+            // GET all entities
+            if (config.isBoundedResults()) {
+                String resultType = pagedResultType();
+                code.append("    @GetMapping\n")
+                    .append("    public ").append(resultType).append(" getAll(@RequestParam(defaultValue = \"0\") int page,\n")
+                    .append("                   ").append(" ".repeat(resultType.length()))
+                    .append("@RequestParam(defaultValue = \"20\") int size) {\n")
+                    .append("        return ").append(pagedResult(serviceFieldName + ".findAll(page, size)")).append(";\n")
+                    .append("    }\n\n");
+            } else {
+                code.append("    @GetMapping\n")
+                    .append("    public List<").append(entityName).append("> getAll() {\n")
+                    .append("        return ").append(serviceFieldName).append(".findAll();\n")
+                    .append("    }\n\n");
+            }
+            
+            // Search with Param
+            code.append("    @PostMapping(\"/search\")\n")
+                .append("    public ").append(pagedResultType()).append(" search(")
+                .append(config.isBoundedResults() ? "@Valid " : "").append("@RequestBody ")
+                .append(paramName).append(" param) {\n")
+                .append("        return ").append(pagedResult(serviceFieldName + ".search(param)")).append(";\n")
+                .append("    }\n\n");
+            
+            // GET search - cache được bởi browser/CDN
+            if (isGetSearch()) {
+                appendGetSearchEndpoint(code, serviceFieldName, paramName);
+            }
+            
+            // GET by ID - Entity
+            if (!baseCrud) {
+                code.append("    @GetMapping(\"/{id}\")\n")
+                    .append("    public ResponseEntity<").append(entityName).append("> getById(@PathVariable ").append(idType).append(" id) {\n")
+                    .append("        ").append(entityName).append(" entity = ").append(serviceFieldName).append(".findById(id);\n")
+                    .append("        return entity != null ? ResponseEntity.ok(entity) : ResponseEntity.notFound().build();\n")
+                    .append("    }\n\n");
+            }
+            
+            // POST Entity - with validation
+            if (!baseCrud) {
+                code.append("    @PostMapping\n")
+                    .append("    public ResponseEntity<?> create(@Valid @RequestBody ")
+                    .append(dtoName).append(" dto, BindingResult result) {\n")
+                    .append("        if (result.hasErrors()) {\n")
+                    .append("            return handleValidationErrors(result);\n")
+                    .append("        }\n")
+                    .append("        return ResponseEntity.status(HttpStatus.CREATED).body(")
+                    .append(serviceFieldName).append(".save(toEntity(dto)));\n")
+                    .append("    }\n\n");
+            }
+            
+            // PUT Entity - with validation (không nằm trong BaseCrudController vì bản UPDATE trực tiếp khác thân)
+            code.append("    @PutMapping(\"/{id}\")\n")
+                .append("    public ResponseEntity<?> update(@PathVariable ").append(idType).append(" id, @Valid @RequestBody ")
+                .append(dtoName).append(" dto, BindingResult result) {\n")
+                .append("        if (result.hasErrors()) {\n")
+                .append("            return handleValidationErrors(result);\n")
+                .append("        }\n");
+            if (isDirectWrites() && !directUpdateFields(dtoFields).isEmpty()) {
+                // Một câu UPDATE, số dòng bị ảnh hưởng thay cho việc findById trước
+                code.append("        if (!").append(serviceFieldName).append(".updateFields(id, dto)) {\n")
+                    .append("            return ResponseEntity.notFound().build();\n")
+                    .append("        }\n")
+                    .append("        return ResponseEntity.noContent().build();\n")
+                    .append("    }\n\n");
+            } else {
+                code.append("        ").append(entityName).append(" existingEntity = ").append(serviceFieldName).append(".findById(id);\n")
+                    .append("        if (existingEntity == null) {\n")
+                    .append("            return ResponseEntity.notFound().build();\n")
+                    .append("        }\n")
+                    .append("        updateEntity(dto, existingEntity);\n")
+                    .append("        return ResponseEntity.ok(").append(serviceFieldName).append(".update(existingEntity));\n")
+                    .append("    }\n\n");
+            }
+            
+            // PATCH - chỉ các trường có trong body
+            if (isPatchEndpoint(dtoFields)) {
+                code.append("    @PatchMapping(\"/{id}\")\n")
+                    .append("    public ResponseEntity<").append(entityName).append("> patch(@PathVariable ").append(idType).append(" id, @RequestBody JsonNode patch) {\n")
+                    .append("        return ").append(serviceFieldName).append(".patch(id, patch)\n")
+                    .append("            .map(ResponseEntity::ok)\n")
+                    .append("            .orElseGet(() -> ResponseEntity.notFound().build());\n")
+                    .append("    }\n\n")
+                    .append("    @ExceptionHandler(").append(entityName).append("Patcher.InvalidPatchException.class)\n")
+                    .append("    public ResponseEntity<Map<String, String>> handleInvalidPatch(").append(entityName)
+                    .append("Patcher.InvalidPatchException e) {\n")
+                    .append("        return ResponseEntity.badRequest().body(e.getErrors());\n")
+                    .append("    }\n\n");
+            }
+            
+            // DELETE (không nằm trong BaseCrudController vì bản DELETE trực tiếp trả về 404 khi không có bản ghi)
+            code.append("    @DeleteMapping(\"/{id}\")\n")
+                .append("    public ResponseEntity<Void> delete(@PathVariable ").append(idType).append(" id) {\n");
+            if (isDirectDelete()) {
+                code.append("        return ").append(serviceFieldName).append(".deleteById(id)\n")
+                    .append("            ? ResponseEntity.noContent().build()\n")
+                    .append("            : ResponseEntity.notFound().build();\n")
+                    .append("    }\n\n");
+            } else {
+                code.append("        ").append(serviceFieldName).append(".deleteById(id);\n")
+                    .append("        return ResponseEntity.noContent().build();\n")
+                    .append("    }\n\n");
+            }
+            
+            // Với BaseCrudController đây là hai hook mà create của lớp cha gọi
+            appendDtoMappingMethods(code, dtoName, dtoFields, baseCrud ? "protected" : "private", baseCrud);
+            // Bỏ dòng trống cuối, các phần phía sau tự thêm dòng trống ở đầu
+            code.setLength(code.length() - 1);
+            
+            if (config.isGenerateFetchByIds()) {
+                appendFetchByIdsControllerEndpoint(code, serviceFieldName);
+            }
+            
+            if (config.isGenerateBatchOperations()) {
+                appendBatchControllerEndpoints(code, serviceFieldName, dtoName);
+            }
+            
+            if (config.isGenerateStreamingExport()) {
+                appendExportControllerEndpoint(code, serviceFieldName);
+            }
+            
+        } else {
+            // Simple controller if service is not available
+            code.append("import org.springframework.web.bind.annotation.*;\n\n")
+                .append("@RestController\n")
+                .append("@RequestMapping(\"/").append(lcFirst(entityName)).append("s\")\n")
+                .append("public class ").append(controllerName).append(" {\n");
+        }
+        
+        code.append("}");
+        
+        // Tạo file
+        PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
+        PsiJavaFile controllerFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText(controllerName + ".java", JavaFileType.INSTANCE, sourceText(code));
+        
+        if (hasService && config.isGenerateMetrics()) {
+            addTimedAnnotations(controllerFile.getClasses()[0], "controller");
+        }
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(controllerFile);
+        
+        return controllerFile.getClasses()[0];
+    }
+    
+    /**
+     * Generates the module-wide BaseCrudController exposing GET /{id} and POST through
+     * BaseCrudService. Like the service base it does not depend on any option: entity controllers
+     * declare the @RequestMapping, the DTO to entity mapping and the endpoints whose shape follows
+     * the options (GET all, PUT, DELETE, search, patch, batch, export)
+     */
+    public PsiClass generateBaseCrudController() {
+        String controllerPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getControllerPackage());
+        String servicePackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getServicePackage());
+        
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(controllerPackage).append(";\n\n")
+            .append("import java.util.HashMap;\n")
+            .append("import java.util.Map;\n")
+            .append("import javax.validation.Valid;\n")
+            .append("import org.springframework.http.HttpStatus;\n")
+            .append("import org.springframework.http.ResponseEntity;\n")
+            .append("import org.springframework.validation.BindingResult;\n")
+            .append("import org.springframework.validation.FieldError;\n")
+            .append("import org.springframework.web.bind.annotation.*;\n")
+            .append("import ").append(servicePackage).append(".BaseCrudService;\n\n")
+            .append("/**\n")
+            .append(" * Endpoint CRUD dùng chung, controller của từng entity khai báo @RequestMapping, cách chuyển DTO\n")
+            .append(" * sang entity và các endpoint riêng. Kiểu T, D, ID được Spring MVC phân giải theo lớp con\n")
+            .append(" */\n")
+            .append("public abstract class BaseCrudController<T, D, ID> {\n\n")
+            .append("    protected final BaseCrudService<T, ID> service;\n\n")
+            .append("    protected BaseCrudController(BaseCrudService<T, ID> service) {\n")
+            .append("        this.service = service;\n")
+            .append("    }\n\n");
+        
+        code.append("    @GetMapping(\"/{id}\")\n")
+            .append("    public ResponseEntity<T> getById(@PathVariable ID id) {\n")
+            .append("        T entity = service.findById(id);\n")
+            .append("        return entity != null ? ResponseEntity.ok(entity) : ResponseEntity.notFound().build();\n")
+            .append("    }\n\n")
+            .append("    @PostMapping\n")
+            .append("    public ResponseEntity<?> create(@Valid @RequestBody D dto, BindingResult result) {\n")
+            .append("        if (result.hasErrors()) {\n")
+            .append("            return handleValidationErrors(result);\n")
+            .append("        }\n")
+            .append("        return ResponseEntity.status(HttpStatus.CREATED).body(service.save(toEntity(dto)));\n")
+            .append("    }\n\n")
+            .append("    /**\n")
+            .append("     * Tạo entity mới từ DTO của request\n")
+            .append("     */\n")
+            .append("    protected abstract T toEntity(D dto);\n\n")
+            .append("    /**\n")
+            .append("     * Ghi các trường của DTO vào entity đã có\n")
+            .append("     */\n")
+            .append("    protected abstract void updateEntity(D dto, T entity);\n\n");
+        appendValidationErrorHandler(code, "protected");
+        code.setLength(code.length() - 1);
+        code.append("}");
+        
+        PsiJavaFile baseControllerFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText("BaseCrudController.java", JavaFileType.INSTANCE, sourceText(code));
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(baseControllerFile);
+        
+        return baseControllerFile.getClasses()[0];
+    }
+    
+    private void appendValidationErrorHandler(StringBuilder code, String visibility) {
+        code.append("    ").append(visibility).append(" ResponseEntity<Map<String, String>> handleValidationErrors(BindingResult result) {\n")
+            .append("        Map<String, String> errors = new HashMap<>();\n")
+            .append("        result.getAllErrors().forEach((error) -> {\n")
+            .append("            String fieldName = ((FieldError) error).getField();\n")
+            .append("            String errorMessage = error.getDefaultMessage();\n")
+            .append("            errors.put(fieldName, errorMessage);\n")
+            .append("        });\n")
+            .append("        return ResponseEntity.badRequest().body(errors);\n")
+            .append("    }\n\n");
+    }
+    
+    /**
+     * Appends GET /search binding EntityParam from the query string. With a @Version field the
+     * response carries a weak ETag computed from the page and the id/version of every row, and a
+     * matching If-None-Match gets 304 without a body
+     */
+    private void appendGetSearchEndpoint(StringBuilder code, String serviceFieldName, String paramName) {
+        ClassField versionField = findVersionField();
+        code.append("    /**\n")
+            .append("     * Tìm kiếm qua query string (GET /search?page=0&size=20&...) để browser và CDN cache được.\n");
+        if (versionField != null) {
+            code.append("     * ETag yếu tính từ id và @Version của kết quả: request có If-None-Match khớp nhận 304 không có body.\n");
+        }
+        code.append("     */\n")
+            .append("    @GetMapping(\"/search\")\n");
+        if (versionField == null) {
+            // Không có @Version thì không biết bản ghi đã thay đổi hay chưa, không tạo ETag
+            code.append("    public ").append(pagedResultType()).append(" searchByQuery(")
+                .append(config.isBoundedResults() ? "@Valid " : "").append(paramName).append(" param) {\n")
+                .append("        return ").append(pagedResult(serviceFieldName + ".search(param)")).append(";\n")
+                .append("    }\n\n");
+            return;
+        }
+        
+        String pageType = pageType() + "<" + entityName + ">";
+        code.append("    public ResponseEntity<").append(pagedResultType()).append("> searchByQuery(")
+            .append(config.isBoundedResults() ? "@Valid " : "").append(paramName).append(" param, WebRequest request) {\n")
+            .append("        ").append(pageType).append(" page = ").append(serviceFieldName).append(".search(param);\n")
+            .append("        String etag = searchETag(page);\n")
+            .append("        if (request.checkNotModified(etag)) {\n")
+            .append("            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();\n")
+            .append("        }\n")
+            .append("        // no-cache: được lưu nhưng luôn hỏi lại server bằng If-None-Match\n")
+            .append("        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(")
+            .append(pagedResult("page")).append(");\n")
+            .append("    }\n\n");
+        
+        String idFieldName = resolveIdFieldName();
+        ClassField idField = allFields.stream()
+            .filter(field -> field.getName().equals(idFieldName))
+            .findFirst()
+            .orElse(null);
+        code.append("    private static String searchETag(").append(pageType).append(" page) {\n")
+            .append("        StringBuilder key = new StringBuilder()\n")
+            .append("            .append(page.getNumber()).append('/').append(page.getSize()).append('/')\n")
+            .append(config.isUseSliceSearch()
+                ? "            .append(page.hasNext());\n"
+                : "            .append(page.getTotalElements());\n")
+            .append("        for (").append(entityName).append(" entity : page.getContent()) {\n")
+            .append("            key.append(';').append(entity.").append(idField != null ? getterName(idField) : "getId")
+            .append("()).append(':').append(entity.").append(getterName(versionField)).append("());\n")
+            .append("        }\n")
+            .append("        return \"W/\\\"\" + DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8)) + \"\\\"\";\n")
+            .append("    }\n\n");
+    }
+    
+    private boolean isGetSearch() {
+        return config.isGenerateGetSearch() && !config.isReactive() && !config.isUseFunctionalRouter();
+    }
+    
+    /**
+     * ISO @DateTimeFormat of a from/to filter, so dates bind from the query string of GET /search
+     * (JSON bodies are read by Jackson and ignore it)
+     */
+    private String dateTimeFormatAnnotation(String fieldType) {
+        if (!isGetSearch()) {
+            return "";
+        }
+        return fieldType.equals("LocalDate")
+            ? "@DateTimeFormat(iso = DateTimeFormat.ISO.DATE) "
+            : "@DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) ";
+    }
+    
+    /**
+     * Appends POST /by-ids returning the entities of the given ids in request order, one request
+     * instead of a GET /{id} per id
+     */
+    private void appendFetchByIdsControllerEndpoint(StringBuilder code, String serviceFieldName) {
+        String idType = resolveIdType();
+        code.append("\n")
+            .append("    @PostMapping(\"/by-ids\")\n")
+            .append("    public ResponseEntity<List<").append(entityName).append(">> getByIds(@RequestBody List<").append(idType).append("> ids) {\n");
+        if (config.isBoundedResults()) {
+            code.append("        if (ids.size() > ").append(config.getMaxPageSize()).append(") {\n")
+                .append("            return ResponseEntity.badRequest().build();\n")
+                .append("        }\n");
+        }
+        code.append("        return ResponseEntity.ok(").append(serviceFieldName).append(".findAllByIds(ids));\n")
+            .append("    }\n");
+    }
+    
+    /**
+     * Appends batch create/update/delete endpoints backed by the chunked service methods. The
+     * bodies are validated element by element and mapped through toEntity/updateEntity like the
+     * single-entity endpoints
+     */
+    private void appendBatchControllerEndpoints(StringBuilder code, String serviceFieldName, String dtoName) {
+        String idType = resolveIdType();
+        
+        // POST batch
+        code.append("\n")
+            .append("    @PostMapping(\"/batch\")\n")
+            .append("    public ResponseEntity<List<").append(entityName).append(">> createBatch(@Valid @RequestBody List<")
+            .append(dtoName).append("> dtos) {\n")
+            .append("        List<").append(entityName).append("> entities = new ArrayList<>(dtos.size());\n")
+            .append("        for (").append(dtoName).append(" dto : dtos) {\n")
+            .append("            entities.add(toEntity(dto));\n")
+            .append("        }\n")
+            .append("        return ResponseEntity.status(HttpStatus.CREATED).body(")
+            .append(serviceFieldName).append(".saveAll(entities));\n")
+            .append("    }\n\n");
+        
+        // PUT batch
+        code.append("    /**\n")
+            .append("     * Body là map id -> DTO: entity được nạp theo chunk và chỉ nhận các trường của DTO,\n")
+            .append("     * không merge entity từ request (không có SELECT riêng cho từng dòng)\n")
+            .append("     */\n")
+            .append("    @PutMapping(\"/batch\")\n")
+            .append("    public ResponseEntity<List<").append(entityName).append(">> updateBatch(@Valid @RequestBody Map<")
+            .append(idType).append(", ").append(dtoName).append("> dtos) {\n")
+            .append("        return ResponseEntity.ok(").append(serviceFieldName).append(".updateAll(dtos, this::updateEntity));\n")
+            .append("    }\n\n");
+        
+        // DELETE batch
+        code.append("    @DeleteMapping(\"/batch\")\n")
+            .append("    public ResponseEntity<Void> deleteBatch(@RequestBody List<").append(idType).append("> ids) {\n")
+            .append("        ").append(serviceFieldName).append(".deleteAllById(ids);\n")
+            .append("        return ResponseEntity.noContent().build();\n")
+            .append("    }\n\n");
+        
+        // Lỗi của method validation: tên trường dạng [0].name như BindingResult
+        code.append("    @ExceptionHandler(ConstraintViolationException.class)\n")
+            .append("    public ResponseEntity<Map<String, String>> handleConstraintViolations(ConstraintViolationException ex) {\n")
+            .append("        Map<String, String> errors = new HashMap<>();\n")
+            .append("        for (ConstraintViolation<?> violation : ex.getConstraintViolations()) {\n")
+            .append("            StringBuilder field = new StringBuilder();\n")
+            .append("            for (Path.Node node : violation.getPropertyPath()) {\n")
+            .append("                if (node.getKind() == ElementKind.METHOD || node.getKind() == ElementKind.PARAMETER) {\n")
+            .append("                    continue;\n")
+            .append("                }\n")
+            .append("                if (node.isInIterable()) {\n")
+            .append("                    field.append('[').append(node.getIndex() != null ? node.getIndex() : node.getKey()).append(']');\n")
+            .append("                }\n")
+            .append("                if (node.getName() != null) {\n")
+            .append("                    field.append(field.length() > 0 ? \".\" : \"\").append(node.getName());\n")
+            .append("                }\n")
+            .append("            }\n")
+            .append("            errors.put(field.toString(), violation.getMessage());\n")
+            .append("        }\n")
+            .append("        return ResponseEntity.badRequest().body(errors);\n")
+            .append("    }\n");
+    }
+    
+    /**
+     * Appends toEntity/updateEntity copying the DTO fields to the entity through its setters.
+     * The id, @Version, transient and collection fields are never written from a request
+     */
+    private void appendDtoMappingMethods(StringBuilder code, String dtoName, Set<String> dtoFields, String visibility) {
+        appendDtoMappingMethods(code, dtoName, dtoFields, visibility, false);
+    }
+    
+    private void appendDtoMappingMethods(StringBuilder code, String dtoName, Set<String> dtoFields, String visibility,
+                                         boolean override) {
+        String annotation = override ? "    @Override\n" : "";
+        code.append(annotation).append("    ").append(visibility).append(" ").append(entityName).append(" toEntity(").append(dtoName).append(" dto) {\n")
+            .append("        ").append(entityName).append(" entity = new ").append(entityName).append("();\n")
+            .append("        updateEntity(dto, entity);\n")
+            .append("        return entity;\n")
+            .append("    }\n\n")
+            .append(annotation).append("    ").append(visibility).append(" void updateEntity(").append(dtoName).append(" dto, ").append(entityName).append(" entity) {\n");
+        for (ClassField field : directUpdateFields(dtoFields)) {
+            code.append("        entity.set").append(capitalizeFirstLetter(field.getName())).append("(dto.")
+                .append(dtoAccessor(field)).append(");\n");
+        }
+        code.append("    }\n\n");
+    }
+    
+    /**
+     * Appends a GET /export endpoint streaming rows as NDJSON or CSV through StreamingResponseBody
+     */
+    private void appendExportControllerEndpoint(StringBuilder code, String serviceFieldName) {
+        code.append("\n")
+            .append("    @GetMapping(value = \"/export\", produces = {\"application/x-ndjson\", \"text/csv\"})\n")
+            .append("    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = \"ndjson\") String format) {\n")
+            .append("        boolean csv = \"csv\".equalsIgnoreCase(format);\n")
+            .append("        StreamingResponseBody body = outputStream -> {\n")
+            .append("            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));\n");
+        appendExportRows(code, serviceFieldName, "            ");
+        code.append("        };\n")
+            .append("        MediaType contentType = csv ? MediaType.parseMediaType(\"text/csv\") : MediaType.parseMediaType(\"application/x-ndjson\");\n")
+            .append("        return ResponseEntity.ok().contentType(contentType).body(body);\n")
+            .append("    }\n\n");
+        
+        appendCsvHelpers(code);
+    }
+    
+    /**
+     * Appends the export loop writing every row to a local {@code writer}, as CSV when {@code csv} is set
+     * and as NDJSON through {@code objectMapper} otherwise
+     */
+    private void appendExportRows(StringBuilder code, String serviceFieldName, String indent) {
+        code.append(indent).append("if (csv) {\n")
+            .append(indent).append("    writer.write(\"");
+        List<ClassField> exportFields = exportFields();
+        for (int i = 0; i < exportFields.size(); i++) {
+            if (i > 0) {
+                code.append(",");
+            }
+            code.append(exportColumnName(exportFields.get(i)));
+        }
+        code.append("\\n\");\n")
+            .append(indent).append("}\n")
+            .append(indent).append(serviceFieldName).append(".exportAll(row -> {\n")
+            .append(indent).append("    try {\n")
+            .append(indent).append("        writer.write(csv ? toCsvRow(row) : objectMapper.writeValueAsString(row));\n")
+            .append(indent).append("        writer.write('\\n');\n")
+            .append(indent).append("    } catch (IOException e) {\n")
+            .append(indent).append("        throw new UncheckedIOException(e);\n")
+            .append(indent).append("    }\n")
+            .append(indent).append("});\n")
+            .append(indent).append("writer.flush();\n");
+    }
+    
+    private void appendCsvHelpers(StringBuilder code) {
+        List<ClassField> exportFields = exportFields();
+        code.append("    private static String toCsvRow(").append(exportRowName()).append(" row) {\n")
+            .append("        return ");
+        for (int i = 0; i < exportFields.size(); i++) {
+            if (i > 0) {
+                code.append("\n            + \",\" + ");
+            }
+            ClassField field = exportFields.get(i);
+            code.append("csvValue(row.").append(config.isUseRecords() ? exportColumnName(field) : exportColumnGetter(field)).append("())");
+        }
+        code.append(";\n")
+            .append("    }\n\n")
+            .append("    private static String csvValue(Object value) {\n")
+            .append("        if (value == null) {\n")
+            .append("            return \"\";\n")
+            .append("        }\n")
+            .append("        String text = value.toString();\n")
+            .append("        if (text.contains(\",\") || text.contains(\"\\\"\") || text.contains(\"\\n\")) {\n")
+            .append("            return \"\\\"\" + text.replace(\"\\\"\", \"\\\"\\\"\") + \"\\\"\";\n")
+            .append("        }\n")
+            .append("        return text;\n")
+            .append("    }\n");
+    }
+    
+    /**
+     * Columns of the export row: basic fields and to-one associations (exported as their id).
+     * Collections, embedded values and transient fields are left out
+     */
+    private List<ClassField> exportFields() {
+        return allFields.stream()
+            .filter(field -> !field.isCollection())
+            .filter(field -> field.getAnnotations().stream().noneMatch(a -> a.endsWith("Transient")
+                || a.endsWith(".Embedded") || a.endsWith(".EmbeddedId") || a.endsWith(".ElementCollection")))
+            .toList();
+    }
+    
+    private String exportRowName() {
+        return entityName + "ExportRow";
+    }
+    
+    private boolean isToOneAssociation(ClassField field) {
+        return field.getAnnotations().stream()
+            .anyMatch(a -> a.endsWith(".ManyToOne") || a.endsWith(".OneToOne"));
+    }
+    
+    /**
+     * The @Id field of the entity a to-one association points to, or null when it cannot be resolved
+     */
+    private PsiField associationIdField(ClassField field) {
+        PsiField psiField = entityClass.findFieldByName(field.getName(), true);
+        if (psiField == null || !(psiField.getType() instanceof PsiClassType)) {
+            return null;
+        }
+        PsiClass target = ((PsiClassType) psiField.getType()).resolve();
+        if (target == null) {
+            return null;
+        }
+        for (PsiField targetField : target.getAllFields()) {
+            if (JavaClassAnalyzer.findPersistenceAnnotation(targetField, "Id", "EmbeddedId") != null) {
+                return targetField;
+            }
+        }
+        return null;
+    }
+    
+    private String exportColumnName(ClassField field) {
+        return isToOneAssociation(field) ? field.getName() + "Id" : field.getName();
+    }
+    
+    private String exportColumnType(ClassField field) {
+        if (!isToOneAssociation(field)) {
+            return field.getType();
+        }
+        PsiField idField = associationIdField(field);
+        return idField != null ? idField.getType().getPresentableText() : "Long";
+    }
+    
+    private String exportColumnQualifiedType(ClassField field) {
+        if (!isToOneAssociation(field)) {
+            return field.getQualifiedType();
+        }
+        PsiField idField = associationIdField(field);
+        return idField != null ? idField.getType().getCanonicalText() : "java.lang.Long";
+    }
+    
+    private String exportColumnGetter(ClassField field) {
+        String prefix = exportColumnType(field).equals("boolean") ? "is" : "get";
+        return prefix + capitalizeFirstLetter(exportColumnName(field));
+    }
+    
+    /**
+     * JPQL path of an export column. The id of a to-one association is read from the foreign key
+     * column without joining the target table
+     */
+    private String exportColumnPath(ClassField field) {
+        if (!isToOneAssociation(field)) {
+            return "e." + field.getName();
+        }
+        PsiField idField = associationIdField(field);
+        return "e." + field.getName() + "." + (idField != null ? idField.getName() : "id");
+    }
+    
+    /**
+     * Generates the functional (WebMvc.fn) routes of the entity: a configuration exposing one
+     * RouterFunction bean that registers the same endpoints as the annotated controller and delegates
+     * to the handler from {@link #generateRouterHandler(Set)}. No @RequestMapping is introspected at startup.
+     * Malformed numeric path variables and paging parameters answer 400 like the controller's type conversion
+     */
+    private PsiClass generateRouter(Set<String> dtoFields) {
+        String controllerPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getControllerPackage());
+        String routerName = entityName + "Router";
+        String handlerName = entityName + "Handler";
+        String serviceName = entityName + "Service";
+        String servicePackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getServicePackage());
+        String serviceFieldName = lcFirst(serviceName);
+        String basePath = "/" + lcFirst(entityName) + "s";
+        
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(controllerPackage).append(";\n\n")
+            .append("import javax.validation.Validator;\n")
+            .append("import org.springframework.context.annotation.Bean;\n")
+            .append("import org.springframework.context.annotation.Configuration;\n")
+            .append("import org.springframework.web.servlet.function.RouterFunction;\n")
+            .append("import org.springframework.web.servlet.function.RouterFunctions;\n")
+            .append("import org.springframework.web.servlet.function.ServerResponse;\n")
+            .append("import ").append(servicePackage).append(".").append(serviceName).append(";\n");
+        if (config.isGenerateStreamingExport()) {
+            code.append("import com.fasterxml.jackson.databind.ObjectMapper;\n");
+        }
+        code.append("\n")
+            .append("/**\n")
+            .append(" * Đăng ký các route của ").append(entityName).append(" theo kiểu functional thay cho @RestController\n")
+            .append(" */\n")
+            .append("@Configuration(proxyBeanMethods = false)\n")
+            .append("public class ").append(routerName).append(" {\n\n")
+            .append("    @Bean\n")
+            .append("    public RouterFunction<ServerResponse> ").append(lcFirst(entityName)).append("Routes(")
+            .append(serviceName).append(" ").append(serviceFieldName).append(", Validator validator");
+        if (config.isGenerateStreamingExport()) {
+            code.append(", ObjectMapper objectMapper");
+        }
+        code.append(") {\n")
+            .append("        ").append(handlerName).append(" handler = new ").append(handlerName).append("(")
+            .append(serviceFieldName).append(", validator");
+        if (config.isGenerateStreamingExport()) {
+            code.append(", objectMapper");
+        }
+        code.append(");\n")
+            // Các route cố định đăng ký trước /{id} vì route được xét theo thứ tự
+            .append("        return RouterFunctions.route()\n")
+            .append("            .GET(\"").append(basePath).append("\", handler::getAll)\n")
+            .append("            .POST(\"").append(basePath).append("/search\", handler::search)\n");
+        if (config.isGenerateFetchByIds()) {
+            code.append("            .POST(\"").append(basePath).append("/by-ids\", handler::getByIds)\n");
+        }
+        if (config.isGenerateBatchOperations()) {
+            code.append("            .POST(\"").append(basePath).append("/batch\", handler::createBatch)\n")
+                .append("            .PUT(\"").append(basePath).append("/batch\", handler::updateBatch)\n")
+                .append("            .DELETE(\"").append(basePath).append("/batch\", handler::deleteBatch)\n");
+        }
+        if (config.isGenerateStreamingExport()) {
+            code.append("            .GET(\"").append(basePath).append("/export\", handler::export)\n");
+        }
+        code.append("            .GET(\"").append(basePath).append("/{id}\", handler::getById)\n")
+            .append("            .POST(\"").append(basePath).append("\", handler::create)\n")
+            .append("            .PUT(\"").append(basePath).append("/{id}\", handler::update)\n");
+        if (isPatchEndpoint(dtoFields)) {
+            code.append("            .PATCH(\"").append(basePath).append("/{id}\", handler::patch)\n");
+        }
+        code.append("            .DELETE(\"").append(basePath).append("/{id}\", handler::delete)\n")
+            // id, page hoặc size sai định dạng (UUID.fromString ném IllegalArgumentException)
+            .append("            .onError(").append(resolveIdType().equals("UUID") ? "IllegalArgumentException" : "NumberFormatException")
+            .append(".class, (e, request) -> ServerResponse.badRequest().build())\n")
+            .append("            .build();\n")
+            .append("    }\n")
+            .append("}");
+        
+        PsiJavaFile routerFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText(routerName + ".java", JavaFileType.INSTANCE, sourceText(code));
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(routerFile);
+        
+        return routerFile.getClasses()[0];
+    }
+    
+    /**
+     * Generates the handler behind the functional routes. It is a plain class created by the router bean,
+     * validates request bodies (every element of the batch bodies) with the Bean Validation Validator,
+     * maps them through toEntity/updateEntity and calls the same service methods as the annotated controller
+     */
+    public PsiClass generateRouterHandler(Set<String> dtoFields) {
+        String controllerPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getControllerPackage());
+        String handlerName = entityName + "Handler";
+        String dtoPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getDtoPackage());
+        String dtoName = entityName + "Dto";
+        String paramName = entityName + "Param";
+        String serviceName = entityName + "Service";
+        String servicePackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getServicePackage());
+        String serviceFieldName = lcFirst(serviceName);
+        String entityFQN = ((PsiJavaFile) entityClass.getContainingFile()).getPackageName() + "." + entityName;
+        boolean export = config.isGenerateStreamingExport();
+        
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(controllerPackage).append(";\n\n")
+            .append("import java.io.IOException;\n")
+            .append("import java.util.ArrayList;\n")
+            .append("import java.util.HashMap;\n")
+            .append("import java.util.List;\n")
+            .append("import java.util.Map;\n")
+            .append("import javax.servlet.ServletException;\n")
+            .append("import javax.validation.ConstraintViolation;\n")
+            .append("import javax.validation.Validator;\n")
+            .append("import org.springframework.core.ParameterizedTypeReference;\n")
+            .append("import org.springframework.http.HttpStatus;\n")
+            .append("import org.springframework.web.servlet.function.ServerRequest;\n")
+            .append("import org.springframework.web.servlet.function.ServerResponse;\n")
+            .append("import ").append(entityFQN).append(";\n")
+            .append("import ").append(dtoPackage).append(".").append(dtoName).append(";\n")
+            .append("import ").append(dtoPackage).append(".filter.").append(paramName).append(";\n")
+            .append("import ").append(servicePackage).append(".").append(serviceName).append(";\n");
+        if (config.isUseSliceSearch()) {
+            code.append("import ").append(dtoPackage).append(".SliceResponse;\n");
+        }
+        if (isPatchEndpoint(dtoFields)) {
+            code.append("import com.fasterxml.jackson.databind.JsonNode;\n")
+                .append("import ").append(servicePackage).append(".").append(entityName).append("Patcher;\n");
+        }
+        if (export) {
+            code.append("import java.io.BufferedWriter;\n")
+                .append("import java.io.OutputStreamWriter;\n")
+                .append("import java.io.UncheckedIOException;\n")
+                .append("import java.io.Writer;\n")
+                .append("import java.nio.charset.StandardCharsets;\n")
+                .append("import com.fasterxml.jackson.databind.ObjectMapper;\n")
+                .append("import org.springframework.http.MediaType;\n")
+                .append("import ").append(dtoPackage).append(".").append(exportRowName()).append(";\n");
+        }
+        code.append("\n")
+            .append("/**\n")
+            .append(" * Handler của các route functional cho ").append(entityName).append(", được tạo bởi ")
+            .append(entityName).append("Router\n")
+            .append(" */\n")
+            .append("public class ").append(handlerName).append(" {\n\n")
+            .append("    private final ").append(serviceName).append(" ").append(serviceFieldName).append(";\n")
+            .append("    private final Validator validator;\n");
+        if (export) {
+            code.append("    private final ObjectMapper objectMapper;\n");
+        }
+        code.append("\n")
+            .append("    public ").append(handlerName).append("(").append(serviceName).append(" ").append(serviceFieldName)
+            .append(", Validator validator");
+        if (export) {
+            code.append(", ObjectMapper objectMapper");
+        }
+        code.append(") {\n")
+            .append("        this.").append(serviceFieldName).append(" = ").append(serviceFieldName).append(";\n")
+            .append("        this.validator = validator;\n");
+        if (export) {
+            code.append("        this.objectMapper = objectMapper;\n");
+        }
+        code.append("    }\n\n");
+        
+        // GET all
+        if (config.isBoundedResults()) {
+            code.append("    public ServerResponse getAll(ServerRequest request) {\n")
+                .append("        int page = request.param(\"page\").map(Integer::parseInt).orElse(0);\n")
+                .append("        int size = request.param(\"size\").map(Integer::parseInt).orElse(20);\n")
+                .append("        return ServerResponse.ok().body(").append(pagedResult(serviceFieldName + ".findAll(page, size)")).append(");\n")
+                .append("    }\n\n");
+        } else {
+            code.append("    public ServerResponse getAll(ServerRequest request) {\n")
+                .append("        return ServerResponse.ok().body(").append(serviceFieldName).append(".findAll());\n")
+                .append("    }\n\n");
+        }
+        
+        // Search
+        code.append("    public ServerResponse search(ServerRequest request) throws ServletException, IOException {\n")
+            .append("        ").append(paramName).append(" param = request.body(").append(paramName).append(".class);\n");
+        if (config.isBoundedResults()) {
+            code.append("        Map<String, String> errors = validate(param);\n")
+                .append("        if (!errors.isEmpty()) {\n")
+                .append("            return ServerResponse.badRequest().body(errors);\n")
+                .append("        }\n");
+        }
+        code.append("        return ServerResponse.ok().body(").append(pagedResult(serviceFieldName + ".search(param)")).append(");\n")
+            .append("    }\n\n");
+        
+        // GET by ID
+        code.append("    public ServerResponse getById(ServerRequest request) {\n")
+            .append("        ").append(entityName).append(" entity = ").append(serviceFieldName).append(".findById(id(request));\n")
+            .append("        return entity != null ? ServerResponse.ok().body(entity) : ServerResponse.notFound().build();\n")
+            .append("    }\n\n");
+        
+        // POST
+        code.append("    public ServerResponse create(ServerRequest request) throws ServletException, IOException {\n")
+            .append("        ").append(dtoName).append(" dto = request.body(").append(dtoName).append(".class);\n")
+            .append("        Map<String, String> errors = validate(dto);\n")
+            .append("        if (!errors.isEmpty()) {\n")
+            .append("            return ServerResponse.badRequest().body(errors);\n")
+            .append("        }\n")
+            .append("        return ServerResponse.status(HttpStatus.CREATED).body(").append(serviceFieldName).append(".save(toEntity(dto)));\n")
+            .append("    }\n\n");
+        
+        // PUT
+        code.append("    public ServerResponse update(ServerRequest request) throws ServletException, IOException {\n")
+            .append("        ").append(dtoName).append(" dto = request.body(").append(dtoName).append(".class);\n")
+            .append("        Map<String, String> errors = validate(dto);\n")
+            .append("        if (!errors.isEmpty()) {\n")
+            .append("            return ServerResponse.badRequest().body(errors);\n")
+            .append("        }\n");
+        if (isDirectWrites() && !directUpdateFields(dtoFields).isEmpty()) {
+            // Một câu UPDATE, số dòng bị ảnh hưởng thay cho việc findById trước
+            code.append("        if (!").append(serviceFieldName).append(".updateFields(id(request), dto)) {\n")
+                .append("            return ServerResponse.notFound().build();\n")
+                .append("        }\n")
+                .append("        return ServerResponse.noContent().build();\n")
+                .append("    }\n\n");
+        } else {
+            code.append("        ").append(entityName).append(" existingEntity = ").append(serviceFieldName).append(".findById(id(request));\n")
+                .append("        if (existingEntity == null) {\n")
+                .append("            return ServerResponse.notFound().build();\n")
+                .append("        }\n")
+                .append("        updateEntity(dto, existingEntity);\n")
+                .append("        return ServerResponse.ok().body(").append(serviceFieldName).append(".update(existingEntity));\n")
+                .append("    }\n\n");
+        }
+        
+        // PATCH
+        if (isPatchEndpoint(dtoFields)) {
+            code.append("    public ServerResponse patch(ServerRequest request) throws ServletException, IOException {\n")
+                .append("        JsonNode patch = request.body(JsonNode.class);\n")
+                .append("        try {\n")
+                .append("            return ").append(serviceFieldName).append(".patch(id(request), patch)\n")
+                .append("                .map(entity -> ServerResponse.ok().body(entity))\n")
+                .append("                .orElseGet(() -> ServerResponse.notFound().build());\n")
+                .append("        } catch (").append(entityName).append("Patcher.InvalidPatchException e) {\n")
+                .append("            return ServerResponse.badRequest().body(e.getErrors());\n")
+                .append("        }\n")
+                .append("    }\n\n");
+        }
+        
+        // DELETE
+        code.append("    public ServerResponse delete(ServerRequest request) {\n");
+        if (isDirectDelete()) {
+            code.append("        return ").append(serviceFieldName).append(".deleteById(id(request))\n")
+                .append("            ? ServerResponse.noContent().build()\n")
+                .append("            : ServerResponse.notFound().build();\n")
+                .append("    }\n\n");
+        } else {
+            code.append("        ").append(serviceFieldName).append(".deleteById(id(request));\n")
+                .append("        return ServerResponse.noContent().build();\n")
+                .append("    }\n\n");
+        }
+        
+        if (config.isGenerateFetchByIds()) {
+            String idType = resolveIdType();
+            code.append("    public ServerResponse getByIds(ServerRequest request) throws ServletException, IOException {\n")
+                .append("        List<").append(idType).append("> ids = request.body(new ParameterizedTypeReference<List<")
+                .append(idType).append(">>() {});\n");
+            if (config.isBoundedResults()) {
+                code.append("        if (ids.size() > ").append(config.getMaxPageSize()).append(") {\n")
+                    .append("            return ServerResponse.badRequest().build();\n")
+                    .append("        }\n");
+            }
+            code.append("        return ServerResponse.ok().body(").append(serviceFieldName).append(".findAllByIds(ids));\n")
+                .append("    }\n\n");
+        }
+        
+        if (config.isGenerateBatchOperations()) {
+            String idType = resolveIdType();
+            code.append("    public ServerResponse createBatch(ServerRequest request) throws ServletException, IOException {\n")
+                .append("        List<").append(dtoName).append("> dtos = request.body(new ParameterizedTypeReference<List<")
+                .append(dtoName).append(">>() {});\n")
+                // Tên trường lỗi dạng [0].name như method validation của controller
+                .append("        Map<String, String> errors = new HashMap<>();\n")
+                .append("        for (int i = 0; i < dtos.size(); i++) {\n")
+                .append("            addViolations(errors, \"[\" + i + \"]\", dtos.get(i));\n")
+                .append("        }\n")
+                .append("        if (!errors.isEmpty()) {\n")
+                .append("            return ServerResponse.badRequest().body(errors);\n")
+                .append("        }\n")
+                .append("        List<").append(entityName).append("> entities = new ArrayList<>(dtos.size());\n")
+                .append("        for (").append(dtoName).append(" dto : dtos) {\n")
+                .append("            entities.add(toEntity(dto));\n")
+                .append("        }\n")
+                .append("        return ServerResponse.status(HttpStatus.CREATED).body(").append(serviceFieldName).append(".saveAll(entities));\n")
+                .append("    }\n\n")
+                .append("    public ServerResponse updateBatch(ServerRequest request) throws ServletException, IOException {\n")
+                .append("        Map<").append(idType).append(", ").append(dtoName).append("> dtos = request.body(new ParameterizedTypeReference<Map<")
+                .append(idType).append(", ").append(dtoName).append(">>() {});\n")
+                .append("        Map<String, String> errors = new HashMap<>();\n")
+                .append("        dtos.forEach((id, dto) -> addViolations(errors, \"[\" + id + \"]\", dto));\n")
+                .append("        if (!errors.isEmpty()) {\n")
+                .append("            return ServerResponse.badRequest().body(errors);\n")
+                .append("        }\n")
+                .append("        return ServerResponse.ok().body(").append(serviceFieldName).append(".updateAll(dtos, this::updateEntity));\n")
+                .append("    }\n\n")
+                .append("    public ServerResponse deleteBatch(ServerRequest request) throws ServletException, IOException {\n")
+                .append("        List<").append(idType).append("> ids = request.body(new ParameterizedTypeReference<List<")
+                .append(idType).append(">>() {});\n")
+                .append("        ").append(serviceFieldName).append(".deleteAllById(ids);\n")
+                .append("        return ServerResponse.noContent().build();\n")
+                .append("    }\n\n");
+        }
+        
+        if (export) {
+            // Ghi thẳng vào response của servlet, bộ nhớ không phụ thuộc số dòng
+            code.append("    public ServerResponse export(ServerRequest request) {\n")
+                .append("        boolean csv = request.param(\"format\").map(\"csv\"::equalsIgnoreCase).orElse(false);\n")
+                .append("        MediaType contentType = csv ? MediaType.parseMediaType(\"text/csv\") : MediaType.parseMediaType(\"application/x-ndjson\");\n")
+                .append("        return ServerResponse.ok().contentType(contentType).build((servletRequest, servletResponse) -> {\n")
+                .append("            try {\n")
+                .append("                Writer writer = new BufferedWriter(new OutputStreamWriter(servletResponse.getOutputStream(), StandardCharsets.UTF_8));\n");
+            appendExportRows(code, serviceFieldName, "                ");
+            code.append("            } catch (IOException e) {\n")
+                .append("                throw new UncheckedIOException(e);\n")
+                .append("            }\n")
+                .append("            return null;\n")
+                .append("        });\n")
+                .append("    }\n\n");
+            appendCsvHelpers(code);
+            code.append("\n");
+        }
+        
+        // Helpers
+        appendDtoMappingMethods(code, dtoName, dtoFields, "private");
+        code.append("    private Map<String, String> validate(Object body) {\n")
+            .append("        Map<String, String> errors = new HashMap<>();\n")
+            .append("        addViolations(errors, \"\", body);\n")
+            .append("        return errors;\n")
+            .append("    }\n\n")
+            .append("    private void addViolations(Map<String, String> errors, String path, Object body) {\n")
+            .append("        if (body == null) {\n")
+            .append("            errors.put(path, \"must not be null\");\n")
+            .append("            return;\n")
+            .append("        }\n")
+            .append("        String prefix = path.isEmpty() ? \"\" : path + \".\";\n")
+            .append("        for (ConstraintViolation<Object> violation : validator.validate(body)) {\n")
+            .append("            errors.put(prefix + violation.getPropertyPath(), violation.getMessage());\n")
+            .append("        }\n")
+            .append("    }\n\n")
+            .append("    private static ").append(resolveIdType()).append(" id(ServerRequest request) {\n")
+            .append("        return ").append(idFromString("request.pathVariable(\"id\")")).append(";\n")
+            .append("    }\n")
+            .append("}");
+        
+        PsiJavaFile handlerFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText(handlerName + ".java", JavaFileType.INSTANCE, sourceText(code));
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(handlerFile);
+        
+        return handlerFile.getClasses()[0];
+    }
+    
+    /**
+     * Generates an R2DBC repository with Flux finders taking a Pageable (limit/offset),
+     * count queries, keyset finders ordered by the id and the Criteria of the search
+     */
+    private PsiClass generateReactiveRepository(Set<String> selectedFilterFields) {
+        String repositoryPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getRepositoryPackage());
+        String repositoryName = entityName + "Repository";
+        String idType = resolveIdType();
+        String idName = capitalizeFirstLetter(resolveIdFieldName());
+        
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(repositoryPackage).append(";\n\n")
+            .append("import org.springframework.data.domain.Pageable;\n")
+            .append("import org.springframework.data.r2dbc.repository.R2dbcRepository;\n")
+            .append("import org.springframework.data.relational.core.query.Criteria;\n")
+            .append("import reactor.core.publisher.Flux;\n")
+            .append("import reactor.core.publisher.Mono;\n")
+            .append("import ").append(((PsiJavaFile) entityClass.getContainingFile()).getPackageName()).append(".")
+            .append(entityName).append(";\n")
+            .append("import ").append(JavaClassAnalyzer.derivePackageName(basePackage, config.getDtoPackage()))
+            .append(".filter.").append(entityName).append("Param;\n\n")
+            .append("/**\n")
+            .append(" * Reactive repository for ").append(entityName).append(".\n")
+            .append(" * Entity cần được map bằng Spring Data Relational (@Table/@Id của org.springframework.data).\n")
+            .append(" */\n")
+            .append("public interface ").append(repositoryName).append(" extends R2dbcRepository<")
+            .append(entityName).append(", ").append(idType).append("> {\n\n");
+        
+        // Phân trang keyset theo ID
+        code.append("    Flux<").append(entityName).append("> findAllByOrderBy").append(idName).append("Asc(Pageable pageable);\n\n")
+            .append("    Flux<").append(entityName).append("> findBy").append(idName).append("GreaterThanOrderBy")
+            .append(idName).append("Asc(").append(idType).append(" ").append(resolveIdFieldName())
+            .append(", Pageable pageable);\n\n");
+        
+        List<ClassField> selectedFields = allFields.stream()
+            .filter(field -> selectedFilterFields.contains(field.getName()))
+            .toList();
+        
+        for (ClassField field : selectedFields) {
+            String fieldName = field.getName();
+            String fieldType = field.getType();
+            String capitalized = capitalizeFirstLetter(fieldName);
+            
+            code.append("    Flux<").append(entityName).append("> findBy").append(capitalized)
+                .append("(").append(fieldType).append(" ").append(fieldName).append(", Pageable pageable);\n\n");
+            
+            code.append("    Mono<Long> countBy").append(capitalized)
+                .append("(").append(fieldType).append(" ").append(fieldName).append(");\n\n");
+            
+            if (fieldType.equals("String")) {
+                // Chỉ PREFIX được hỗ trợ ở chế độ reactive, các chiến lược native dùng ContainingIgnoreCase
+                String operator = config.getTextSearchStrategy(fieldName) == TextSearchStrategy.PREFIX
+                    ? "StartingWithIgnoreCase" : "ContainingIgnoreCase";
+                code.append("    Flux<").append(entityName).append("> findBy").append(capitalized)
+                    .append(operator).append("(String ").append(fieldName).append(", Pageable pageable);\n\n");
+            }
+            else if (isNumericType(fieldType) || fieldType.contains("Date") || fieldType.contains("LocalDate")) {
+                code.append("    Flux<").append(entityName).append("> findBy").append(capitalized)
+                    .append("Between(").append(fieldType).append(" min").append(capitalized).append(", ")
+                    .append(fieldType).append(" max").append(capitalized).append(", Pageable pageable);\n\n");
+            }
+        }
+        
+        // Tìm kiếm kết hợp
+        if (selectedFields.size() > 1) {
+            StringBuilder methodName = new StringBuilder("findBy");
+            StringBuilder parameters = new StringBuilder();
+            for (int i = 0; i < selectedFields.size(); i++) {
+                ClassField field = selectedFields.get(i);
+                if (i > 0) {
+                    methodName.append("And");
+                    parameters.append(", ");
+                }
+                methodName.append(capitalizeFirstLetter(field.getName()));
+                parameters.append(field.getType()).append(" ").append(field.getName());
+            }
+            code.append("    Flux<").append(entityName).append("> ").append(methodName)
+                .append("(").append(parameters).append(", Pageable pageable);\n\n");
+        }
+        
+        appendSearchCriteria(code, selectedFilterFields);
+        // Bỏ dòng trống cuối
+        code.setLength(code.length() - 1);
+        code.append("}");
+        
+        PsiJavaFile repositoryFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText(repositoryName + ".java", JavaFileType.INSTANCE, sourceText(code));
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(repositoryFile);
+        
+        return repositoryFile.getClasses()[0];
+    }
+    
+    /**
+     * Generates a reactive service returning Mono/Flux on top of the R2DBC repository
+     */
+    private PsiClass generateReactiveService() {
+        String servicePackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getServicePackage());
+        String serviceName = entityName + "Service";
+        String repositoryPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getRepositoryPackage());
+        String repositoryName = entityName + "Repository";
+        String repositoryFieldName = lcFirst(repositoryName);
+        String paramPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getDtoPackage()) + ".filter";
+        String paramName = entityName + "Param";
+        String idType = resolveIdType();
+        String idName = capitalizeFirstLetter(resolveIdFieldName());
+        
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(servicePackage).append(";\n\n")
+            .append("import org.springframework.data.domain.PageRequest;\n")
+            .append("import org.springframework.data.domain.Pageable;\n")
+            .append("import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;\n")
+            .append("import org.springframework.data.relational.core.query.Query;\n")
+            .append("import org.springframework.stereotype.Service;\n")
+            .append("import reactor.core.publisher.Flux;\n")
+            .append("import reactor.core.publisher.Mono;\n")
+            .append("import ").append(((PsiJavaFile) entityClass.getContainingFile()).getPackageName()).append(".")
+            .append(entityName).append(";\n")
+            .append("import ").append(repositoryPackage).append(".").append(repositoryName).append(";\n")
+            .append("import ").append(paramPackage).append(".").append(paramName).append(";\n\n")
+            .append("@Service\n")
+            .append("public class ").append(serviceName).append(" {\n\n");
+        if (config.isBoundedResults()) {
+            code.append("    private static final int MAX_PAGE_SIZE = ").append(config.getMaxPageSize()).append(";\n\n");
+        }
+        code.append("    private final ").append(repositoryName).append(" ").append(repositoryFieldName).append(";\n")
+            .append("    private final R2dbcEntityTemplate entityTemplate;\n\n")
+            .append("    public ").append(serviceName).append("(").append(repositoryName).append(" ")
+            .append(repositoryFieldName).append(", R2dbcEntityTemplate entityTemplate) {\n")
+            .append("        this.").append(repositoryFieldName).append(" = ").append(repositoryFieldName).append(";\n")
+            .append("        this.entityTemplate = entityTemplate;\n")
+            .append("    }\n\n");
+        
+        code.append("    public Mono<").append(entityName).append("> findById(").append(idType).append(" id) {\n")
+            .append("        return ").append(repositoryFieldName).append(".findById(id);\n")
+            .append("    }\n\n");
+        
+        code.append("    public Flux<").append(entityName).append("> findAll() {\n")
+            .append("        return ").append(repositoryFieldName).append(".findAll();\n")
+            .append("    }\n\n");
+        
+        // Tìm kiếm limit/offset
+        code.append("    public Flux<").append(entityName).append("> search(").append(paramName).append(" param) {\n")
+            .append("        Pageable pageable = ").append(pageRequestExpression()).append(";\n")
+            .append("        // Một câu SELECT ... WHERE ... LIMIT/OFFSET với các điều kiện lọc có trong param\n")
+            .append("        Query query = Query.query(").append(repositoryName).append(".matching(param)).with(pageable);\n")
+            .append("        return entityTemplate.select(query, ").append(entityName).append(".class);\n")
+            .append("    }\n\n");
+        
+        // Tìm kiếm keyset
+        code.append("    /**\n")
+            .append("     * Keyset pagination: trả về tối đa size bản ghi có ID lớn hơn lastId, không dùng OFFSET.\n")
+            .append("     */\n")
+            .append("    public Flux<").append(entityName).append("> searchAfter(").append(idType).append(" lastId, int size) {\n")
+            .append("        Pageable limit = ").append(config.isBoundedResults() ? "boundedPageRequest(0, size)" : "PageRequest.of(0, size)").append(";\n")
+            .append("        return lastId == null\n")
+            .append("            ? ").append(repositoryFieldName).append(".findAllByOrderBy").append(idName).append("Asc(limit)\n")
+            .append("            : ").append(repositoryFieldName).append(".findBy").append(idName).append("GreaterThanOrderBy")
+            .append(idName).append("Asc(lastId, limit);\n")
+            .append("    }\n\n");
+        
+        code.append("    public Mono<Long> count() {\n")
+            .append("        return ").append(repositoryFieldName).append(".count();\n")
+            .append("    }\n\n");
+        
+        code.append("    public Mono<").append(entityName).append("> save(").append(entityName).append(" entity) {\n")
+            .append("        return ").append(repositoryFieldName).append(".save(entity);\n")
+            .append("    }\n\n");
+        
+        code.append("    public Mono<").append(entityName).append("> update(").append(entityName).append(" entity) {\n")
+            .append("        return ").append(repositoryFieldName).append(".save(entity);\n")
+            .append("    }\n\n");
+        
+        code.append("    public Mono<Void> deleteById(").append(idType).append(" id) {\n")
+            .append("        return ").append(repositoryFieldName).append(".deleteById(id);\n")
+            .append("    }\n\n");
+        
+        code.append("    public Mono<Void> delete(").append(entityName).append(" entity) {\n")
+            .append("        return ").append(repositoryFieldName).append(".delete(entity);\n")
+            .append("    }\n");
+        
+        if (config.isBoundedResults()) {
+            appendBoundedPageRequestMethod(code);
+        }
+        code.append("}");
+        
+        PsiJavaFile serviceFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText(serviceName + ".java", JavaFileType.INSTANCE, sourceText(code));
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(serviceFile);
+        
+        return serviceFile.getClasses()[0];
+    }
+    
+    /**
+     * Generates a WebFlux controller exposing the reactive service
+     */
+    private PsiClass generateReactiveController(Set<String> dtoFields) {
+        String controllerPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getControllerPackage());
+        String controllerName = entityName + "Controller";
+        String dtoPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getDtoPackage());
+        String dtoName = entityName + "Dto";
+        String servicePackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getServicePackage());
+        String serviceName = entityName + "Service";
+        String serviceFieldName = lcFirst(serviceName);
+        String paramName = entityName + "Param";
+        String idType = resolveIdType();
+        
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(controllerPackage).append(";\n\n")
+            .append("import javax.validation.Valid;\n")
+            .append("import org.springframework.http.HttpStatus;\n")
+            .append("import org.springframework.http.ResponseEntity;\n")
+            .append("import org.springframework.web.bind.annotation.*;\n")
+            .append("import reactor.core.publisher.Flux;\n")
+            .append("import reactor.core.publisher.Mono;\n")
+            .append("import ").append(((PsiJavaFile) entityClass.getContainingFile()).getPackageName()).append(".")
+            .append(entityName).append(";\n")
+            .append("import ").append(dtoPackage).append(".").append(dtoName).append(";\n")
+            .append("import ").append(servicePackage).append(".").append(serviceName).append(";\n")
+            .append("import ").append(dtoPackage).append(".filter.").append(paramName).append(";\n\n")
+            .append("@RestController\n")
+            .append("@RequestMapping(\"/").append(lcFirst(entityName)).append("s\")\n")
+            .append("public class ").append(controllerName).append(" {\n\n")
+            .append("    private final ").append(serviceName).append(" ").append(serviceFieldName).append(";\n\n")
+            .append("    public ").append(controllerName).append("(").append(serviceName).append(" ")
+            .append(serviceFieldName).append(") {\n")
+            .append("        this.").append(serviceFieldName).append(" = ").append(serviceFieldName).append(";\n")
+            .append("    }\n\n");
+        
+        code.append("    @GetMapping\n")
+            .append("    public Flux<").append(entityName).append("> getAll() {\n")
+            .append("        return ").append(serviceFieldName).append(".findAll();\n")
+            .append("    }\n\n");
+        
+        code.append("    @PostMapping(\"/search\")\n")
+            .append("    public Flux<").append(entityName).append("> search(@RequestBody ").append(paramName).append(" param) {\n")
+            .append("        return ").append(serviceFieldName).append(".search(param);\n")
+            .append("    }\n\n");
+        
+        code.append("    @GetMapping(\"/search-after\")\n")
+            .append("    public Flux<").append(entityName).append("> searchAfter(@RequestParam(required = false) ")
+            .append(idType).append(" lastId, @RequestParam(defaultValue = \"20\") int size) {\n")
+            .append("        return ").append(serviceFieldName).append(".searchAfter(lastId, size);\n")
+            .append("    }\n\n");
+        
+        code.append("    @GetMapping(\"/{id}\")\n")
+            .append("    public Mono<ResponseEntity<").append(entityName).append(">> getById(@PathVariable ").append(idType).append(" id) {\n")
+            .append("        return ").append(serviceFieldName).append(".findById(id)\n")
+            .append("            .map(ResponseEntity::ok)\n")
+            .append("            .defaultIfEmpty(ResponseEntity.notFound().build());\n")
+            .append("    }\n\n");
+        
+        // Lỗi validation được WebFlux trả về 400 qua WebExchangeBindException
+        code.append("    @PostMapping\n")
+            .append("    @ResponseStatus(HttpStatus.CREATED)\n")
+            .append("    public Mono<").append(entityName).append("> create(@Valid @RequestBody ").append(dtoName).append(" dto) {\n")
+            .append("        return ").append(serviceFieldName).append(".save(toEntity(dto));\n")
+            .append("    }\n\n");
+        
+        code.append("    @PutMapping(\"/{id}\")\n")
+            .append("    public Mono<ResponseEntity<").append(entityName).append(">> update(@PathVariable ").append(idType)
+            .append(" id, @Valid @RequestBody ").append(dtoName).append(" dto) {\n")
+            .append("        return ").append(serviceFieldName).append(".findById(id)\n")
+            .append("            .flatMap(existingEntity -> {\n")
+            .append("                updateEntity(dto, existingEntity);\n")
+            .append("                return ").append(serviceFieldName).append(".update(existingEntity);\n")
+            .append("            })\n")
+            .append("            .map(ResponseEntity::ok)\n")
+            .append("            .defaultIfEmpty(ResponseEntity.notFound().build());\n")
+            .append("    }\n\n");
+        
+        code.append("    @DeleteMapping(\"/{id}\")\n")
+            .append("    public Mono<ResponseEntity<Void>> delete(@PathVariable ").append(idType).append(" id) {\n")
+            .append("        return ").append(serviceFieldName).append(".deleteById(id)\n")
+            .append("            .then(Mono.just(ResponseEntity.noContent().<Void>build()));\n")
+            .append("    }\n\n");
+        
+        appendDtoMappingMethods(code, dtoName, dtoFields, "private");
+        code.setLength(code.length() - 1);
+        code.append("}");
+        
+        PsiJavaFile controllerFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText(controllerName + ".java", JavaFileType.INSTANCE, sourceText(code));
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(controllerFile);
+        
+        return controllerFile.getClasses()[0];
+    }
+    
+    /**
+     * Generates a Flyway (or Liquibase) migration with one index per filter field and a composite
+     * index matching the combined findByXAndY finder, using the mapped table and column names.
+     * String fields searched with PREFIX, TRIGRAM or FULL_TEXT get their index from
+     * generateTextSearchIndexMigration instead; returns null when no field is left
+     */
+    public PsiFile generateIndexMigration(Set<String> selectedFilterFields) {
+        String tableName = resolveTableName();
+        
+        List<ClassField> selectedFields = allFields.stream()
+            .filter(field -> selectedFilterFields.contains(field.getName()))
+            .filter(field -> !hasTextSearchIndex(field))
+            .toList();
+        if (selectedFields.isEmpty()) {
+            return null;
+        }
+        
+        // Tên index -> danh sách cột
+        Map<String, List<String>> indexes = new LinkedHashMap<>();
+        for (ClassField field : selectedFields) {
+            String columnName = resolveColumnName(field);
+            indexes.put("idx_" + tableName + "_" + columnName, List.of(columnName));
+        }
+        
+        // Index kết hợp theo đúng thứ tự tham số của finder kết hợp
+        if (selectedFields.size() > 1) {
+            List<String> columns = selectedFields.stream()
+                .map(this::resolveColumnName)
+                .toList();
+            indexes.put("idx_" + tableName + "_" + String.join("_", columns), columns);
+        }
+        
+        String timestamp = nextMigrationVersion();
+        String fileName;
+        String content;
+        if (isLiquibase()) {
+            fileName = timestamp + "-" + tableName + "-filter-indexes.xml";
+            content = buildLiquibaseIndexChangelog(tableName, timestamp, indexes);
+        } else {
+            fileName = "V" + timestamp + "__create_" + tableName + "_filter_indexes.sql";
+            content = buildFlywayIndexScript(tableName, indexes);
+        }
+        
+        return PsiFileFactory.getInstance(project).createFileFromText(fileName, content);
+    }
+    
+    /**
+     * Generates a PostgreSQL-only migration with the indexes backing the PREFIX, TRIGRAM and FULL_TEXT
+     * text search finders, or null when every String filter field uses CONTAINS. Flyway scripts go to
+     * db/vendor/postgresql, which only the PostgreSQL profile adds to spring.flyway.locations
+     * (see {@link #generatePostgresqlProfileProperties()}); Liquibase changeSets are restricted with
+     * dbms="postgresql". Either way H2 tests skip them.
+     */
+    public PsiFile generateTextSearchIndexMigration(Set<String> selectedFilterFields) {
+        String tableName = resolveTableName();
+        
+        List<String> statements = new ArrayList<>();
+        boolean trigram = false;
+        for (ClassField field : allFields) {
+            if (!selectedFilterFields.contains(field.getName()) || !field.getType().equals("String")) {
+                continue;
+            }
+            String columnName = resolveColumnName(field);
+            String indexPrefix = "idx_" + tableName + "_" + columnName;
+            switch (config.getTextSearchStrategy(field.getName())) {
+                case PREFIX:
+                    // Spring Data dùng upper() cho IgnoreCase
+                    statements.add("CREATE INDEX " + indexPrefix + "_prefix ON " + tableName
+                        + " (upper(" + columnName + ") text_pattern_ops);");
+                    break;
+                case TRIGRAM:
+                    trigram = true;
+                    statements.add("CREATE INDEX " + indexPrefix + "_trgm ON " + tableName
+                        + " USING gin (lower(" + columnName + ") gin_trgm_ops);");
+                    break;
+                case FULL_TEXT:
+                    statements.add("CREATE INDEX " + indexPrefix + "_fts ON " + tableName
+                        + " USING gin (to_tsvector('simple', " + columnName + "));");
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (statements.isEmpty()) {
+            return null;
+        }
+        if (trigram) {
+            statements.add(0, "CREATE EXTENSION IF NOT EXISTS pg_trgm;");
+        }
+        
+        String timestamp = nextMigrationVersion();
+        String fileName;
+        StringBuilder content = new StringBuilder();
+        if (isLiquibase()) {
+            fileName = timestamp + "-" + tableName + "-text-search-indexes.xml";
+            content.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<!-- Index tìm kiếm văn bản của ").append(entityName)
+                .append(", cần include file này trong master changelog -->\n")
+                .append("<databaseChangeLog\n")
+                .append("        xmlns=\"http://www.liquibase.org/xml/ns/dbchangelog\"\n")
+                .append("        xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n")
+                .append("        xsi:schemaLocation=\"http://www.liquibase.org/xml/ns/dbchangelog\n")
+                .append("        http://www.liquibase.org/xml/ns/dbchangelog/dbchangelog-4.9.xsd\">\n\n")
+                .append("    <changeSet id=\"").append(timestamp).append("-").append(tableName)
+                .append("-text-search-indexes\" author=\"entity-generator\" dbms=\"postgresql\">\n");
+            for (String statement : statements) {
+                content.append("        <sql>").append(statement).append("</sql>\n");
+            }
+            content.append("    </changeSet>\n")
+                .append("</databaseChangeLog>\n");
+        } else {
+            fileName = "V" + timestamp + "__create_" + tableName + "_text_search_indexes.sql";
+            content.append("-- Index tìm kiếm văn bản của ").append(entityName).append(" (PostgreSQL)\n\n");
+            for (String statement : statements) {
+                content.append(statement).append("\n");
+            }
+        }
+        
+        return PsiFileFactory.getInstance(project).createFileFromText(fileName, content.toString());
+    }
+    
+    private String buildFlywayIndexScript(String tableName, Map<String, List<String>> indexes) {
+        StringBuilder sql = new StringBuilder();
+        sql.append("-- Index cho các trường filter của ").append(entityName).append(" (bảng ").append(tableName).append(")\n\n");
+        for (Map.Entry<String, List<String>> index : indexes.entrySet()) {
+            sql.append("CREATE INDEX ").append(index.getKey())
+                .append(" ON ").append(tableName)
+                .append(" (").append(String.join(", ", index.getValue())).append(");\n");
+        }
+        return sql.toString();
+    }
+    
+    private String buildLiquibaseIndexChangelog(String tableName, String timestamp, Map<String, List<String>> indexes) {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+            .append("<!-- Index cho các trường filter của ").append(entityName)
+            .append(", cần include file này trong master changelog -->\n")
+            .append("<databaseChangeLog\n")
+            .append("        xmlns=\"http://www.liquibase.org/xml/ns/dbchangelog\"\n")
+            .append("        xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n")
+            .append("        xsi:schemaLocation=\"http://www.liquibase.org/xml/ns/dbchangelog\n")
+            .append("        http://www.liquibase.org/xml/ns/dbchangelog/dbchangelog-4.9.xsd\">\n\n")
+            .append("    <changeSet id=\"").append(timestamp).append("-").append(tableName)
+            .append("-filter-indexes\" author=\"entity-generator\">\n");
+        for (Map.Entry<String, List<String>> index : indexes.entrySet()) {
+            xml.append("        <createIndex tableName=\"").append(tableName)
+                .append("\" indexName=\"").append(index.getKey()).append("\">\n");
+            for (String column : index.getValue()) {
+                xml.append("            <column name=\"").append(column).append("\"/>\n");
+            }
+            xml.append("        </createIndex>\n");
+        }
+        xml.append("    </changeSet>\n")
+            .append("</databaseChangeLog>\n");
+        return xml.toString();
+    }
+    
+    /**
+     * Resource directory (relative to the project root) where generated migrations are saved
+     */
+    public String getMigrationDirectory() {
+        return isLiquibase() ? "src/main/resources/db/changelog" : "src/main/resources/db/migration";
+    }
+    
+    /**
+     * Resource directory (relative to the project root) where the PostgreSQL text search migration is saved.
+     * Flyway scripts stay out of db/migration so the default location never runs them on another database
+     */
+    public String getTextSearchMigrationDirectory() {
+        return isLiquibase() ? getMigrationDirectory() : "src/main/resources/" + POSTGRESQL_MIGRATION_LOCATION;
+    }
+    
+    /**
+     * Resource directory (relative to the project root) of the Spring profile properties
+     */
+    public String getResourceDirectory() {
+        return "src/main/resources";
+    }
+    
+    /**
+     * Adds the PostgreSQL migration location to spring.flyway.locations of the postgresql profile,
+     * keeping the rest of application-postgresql.properties. Returns null with Liquibase, when the
+     * location is already listed, or when the profile is configured in YAML (edit it by hand)
+     */
+    public PsiFile generatePostgresqlProfileProperties() {
+        if (isLiquibase()) {
+            return null;
+        }
+        String location = "classpath:" + POSTGRESQL_MIGRATION_LOCATION;
+        VirtualFile baseDir = project.getBaseDir();
+        VirtualFile resourceDir = baseDir != null ? baseDir.findFileByRelativePath(getResourceDirectory()) : null;
+        if (resourceDir != null && (resourceDir.findChild("application-postgresql.yml") != null
+                || resourceDir.findChild("application-postgresql.yaml") != null)) {
+            return null;
+        }
+        VirtualFile existing = resourceDir != null ? resourceDir.findChild("application-postgresql.properties") : null;
+        String content = "";
+        if (existing != null) {
+            try {
+                content = new String(existing.contentsToByteArray(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                // Không đọc được thì không ghi đè file của người dùng
+                return null;
+            }
+        }
+        
+        StringBuilder properties = new StringBuilder();
+        boolean found = false;
+        for (String line : content.split("\n", -1)) {
+            if (line.trim().startsWith("spring.flyway.locations")) {
+                found = true;
+                if (line.contains(location)) {
+                    return null;
+                }
+                line = line.replaceAll("\\s+$", "") + "," + location;
+            }
+            properties.append(line).append("\n");
+        }
+        // split giữ phần tử rỗng sau dòng cuối, bỏ dòng trống thừa
+        properties.setLength(properties.length() - 1);
+        if (!found) {
+            if (properties.length() > 0 && properties.charAt(properties.length() - 1) != '\n') {
+                properties.append("\n");
+            }
+            properties.append("# Migration chỉ chạy trên PostgreSQL (index tìm kiếm văn bản)\n")
+                .append("spring.flyway.locations=classpath:db/migration,").append(location).append("\n");
+        }
+        return PsiFileFactory.getInstance(project).createFileFromText("application-postgresql.properties", properties.toString());
+    }
+    
+    /**
+     * Next migration version: the current yyyyMMddHHmmss timestamp, moved past the last version handed
+     * out so migrations generated in the same second (filter and text search indexes) never share one
+     */
+    private static String nextMigrationVersion() {
+        long now = Long.parseLong(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss")));
+        return String.valueOf(LAST_MIGRATION_VERSION.updateAndGet(last -> Math.max(last + 1, now)));
+    }
+    
+    /**
+     * Whether a String filter field is indexed by the text search migration rather than a B-tree index
+     */
+    private boolean hasTextSearchIndex(ClassField field) {
+        return field.getType().equals("String")
+            && config.getTextSearchStrategy(field.getName()) != TextSearchStrategy.CONTAINS;
+    }
+    
+    private boolean isLiquibase() {
+        return "liquibase".equalsIgnoreCase(config.getMigrationTool());
+    }
+    
+    /**
+     * Leading columns of the indexes known for the entity table: @Table(indexes), unique columns,
+     * the primary key and the CREATE INDEX / createIndex statements under the migration directory.
+     * Returns null when neither @Table(indexes) nor a migration describes the table (DDL unknown)
+     */
+    public Set<String> knownIndexLeadingColumns() {
+        String tableName = resolveTableName();
+        Set<String> columns = new HashSet<>();
+        boolean known = false;
+        
+        PsiAnnotation table = JavaClassAnalyzer.findPersistenceAnnotation(entityClass, "Table");
+        PsiAnnotationMemberValue indexes = table != null ? table.findDeclaredAttributeValue("indexes") : null;
+        if (indexes != null) {
+            known = true;
+            PsiAnnotationMemberValue[] values = indexes instanceof PsiArrayInitializerMemberValue
+                ? ((PsiArrayInitializerMemberValue) indexes).getInitializers()
+                : new PsiAnnotationMemberValue[] {indexes};
+            for (PsiAnnotationMemberValue value : values) {
+                if (value instanceof PsiAnnotation) {
+                    PsiAnnotationMemberValue columnList = ((PsiAnnotation) value).findDeclaredAttributeValue("columnList");
+                    if (columnList instanceof PsiLiteralExpression
+                            && ((PsiLiteralExpression) columnList).getValue() instanceof String) {
+                        String firstColumn = ((String) ((PsiLiteralExpression) columnList).getValue()).split(",")[0];
+                        columns.add(firstColumn.trim().split("\\s+")[0].toLowerCase());
+                    }
+                }
+            }
+        }
+        
+        // Migration của Flyway (CREATE INDEX) hoặc Liquibase (createIndex), kể cả index theo hàm như upper(x)
+        Pattern tablePattern = Pattern.compile("(?i)(?:CREATE\\s+TABLE\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?\"?|tableName=\")"
+            + Pattern.quote(tableName) + "\\b");
+        Pattern sqlIndexPattern = Pattern.compile("(?i)CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+(?:CONCURRENTLY\\s+)?(?:IF\\s+NOT\\s+EXISTS\\s+)?\\w+\\s+ON\\s+\"?"
+            + Pattern.quote(tableName) + "\"?\\s*(?:USING\\s+\\w+\\s*)?\\((?:\\s*\\w+\\s*\\()*\\s*\"?(\\w+)");
+        Pattern liquibaseIndexPattern = Pattern.compile("<createIndex[^>]*tableName=\""
+            + Pattern.quote(tableName) + "\"[^>]*>\\s*<column\\s+name=\"(\\w+)\"");
+        VirtualFile baseDir = project.getBaseDir();
+        List<String> migrations = new ArrayList<>();
+        for (String directory : new LinkedHashSet<>(List.of(getMigrationDirectory(), getTextSearchMigrationDirectory()))) {
+            migrations.addAll(readMigrations(baseDir != null ? baseDir.findFileByRelativePath(directory) : null));
+        }
+        for (String migration : migrations) {
+            if (tablePattern.matcher(migration).find()) {
+                known = true;
+            }
+            for (Pattern indexPattern : List.of(sqlIndexPattern, liquibaseIndexPattern)) {
+                Matcher matcher = indexPattern.matcher(migration);
+                while (matcher.find()) {
+                    known = true;
+                    columns.add(matcher.group(1).toLowerCase());
+                }
+            }
+        }
+        if (!known) {
+            return null;
+        }
+        
+        // Khóa chính và cột unique luôn có index
+        columns.add(columnName(resolveIdFieldName()).toLowerCase());
+        for (PsiField psiField : entityClass.getFields()) {
+            PsiAnnotation column = JavaClassAnalyzer.findPersistenceAnnotation(psiField, "Column");
+            PsiAnnotationMemberValue unique = column != null ? column.findDeclaredAttributeValue("unique") : null;
+            if (unique != null && unique.getText().equals("true")) {
+                columns.add(columnName(psiField.getName()).toLowerCase());
+            }
+        }
+        return columns;
+    }
+    
+    private List<String> readMigrations(VirtualFile directory) {
+        List<String> migrations = new ArrayList<>();
+        if (directory == null || !directory.isDirectory()) {
+            return migrations;
+        }
+        for (VirtualFile child : directory.getChildren()) {
+            if (child.isDirectory()) {
+                migrations.addAll(readMigrations(child));
+            } else if ("sql".equals(child.getExtension()) || "xml".equals(child.getExtension())) {
+                try {
+                    migrations.add(new String(child.contentsToByteArray(), StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    // Bỏ qua file không đọc được
+                }
+            }
+        }
+        return migrations;
+    }
+    
+    /**
+     * Column name of an entity field as used in the generated migrations
+     */
+    public String columnName(String fieldName) {
+        ClassField field = findField(fieldName);
+        return field != null ? resolveColumnName(field) : toSnakeCase(fieldName);
+    }
+    
+    private ClassField findField(String fieldName) {
+        return allFields.stream()
+            .filter(field -> field.getName().equals(fieldName))
+            .findFirst()
+            .orElse(null);
+    }
+    
+    /**
+     * Entity fields referenced by the criteria of a derived query method, e.g.
+     * findTop100ByNameContainingIgnoreCaseAndPriceBetween -> [name, price]
+     */
+    public List<String> finderFields(String methodName) {
+        List<String> fields = new ArrayList<>();
+        Matcher matcher = Pattern.compile("^(?:find|read|get|query|search|stream|count|exists)\\w*?By(\\w+)$").matcher(methodName);
+        if (!matcher.matches()) {
+            return fields;
+        }
+        String criteria = matcher.group(1);
+        int orderBy = criteria.indexOf("OrderBy");
+        if (orderBy >= 0) {
+            criteria = criteria.substring(0, orderBy);
+        }
+        for (String part : criteria.split("(?<=[a-z0-9])(?:And|Or)(?=[A-Z])")) {
+            // Tên trường dài nhất khớp với đầu điều kiện (name và nameVi)
+            allFields.stream()
+                .map(ClassField::getName)
+                .filter(name -> part.startsWith(capitalizeFirstLetter(name)))
+                .max(Comparator.comparingInt(String::length))
+                .ifPresent(fields::add);
+        }
+        return fields;
+    }
+    
+    /**
+     * Name of the bounded variant of a List finder, as generated with boundedResults (findTopNBy...)
+     */
+    public String boundedFinderName(String finderName) {
+        return finderName.replaceFirst("^(find|read|get|query|stream)(All)?By", "$1Top" + config.getMaxPageSize() + "By");
+    }
+    
+    /**
+     * Adds the transaction boundaries of generateService to an existing service: class-level
+     * @Transactional(readOnly = true) and @Transactional on the methods that write
+     */
+    public void addReadOnlyTransactions(PsiClass serviceClass) {
+        PsiModifierList modifierList = serviceClass.getModifierList();
+        if (modifierList == null || modifierList.findAnnotation(TRANSACTIONAL) != null) {
+            return;
+        }
+        PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
+        modifierList.addAfter(factory.createAnnotationFromText("@" + TRANSACTIONAL + "(readOnly = true)", serviceClass), null);
+        
+        for (PsiMethod method : serviceClass.getMethods()) {
+            PsiModifierList methodModifiers = method.getModifierList();
+            if (!method.hasModifierProperty(PsiModifier.PUBLIC) || methodModifiers.findAnnotation(TRANSACTIONAL) != null
+                    || !isWriteMethod(method)) {
+                continue;
+            }
+            methodModifiers.addAfter(factory.createAnnotationFromText("@" + TRANSACTIONAL, method), null);
+        }
+        JavaCodeStyleManager.getInstance(project).shortenClassReferences(serviceClass);
+    }
+    
+    /**
+     * A method writes when its name says so or when it calls a write method of a repository or EntityManager;
+     * read-only would otherwise switch its session to FlushMode.MANUAL and drop the changes
+     */
+    private boolean isWriteMethod(PsiMethod method) {
+        if (WRITE_METHOD_PATTERN.matcher(method.getName()).lookingAt()) {
+            return true;
+        }
+        for (PsiMethodCallExpression call : PsiTreeUtil.findChildrenOfType(method, PsiMethodCallExpression.class)) {
+            String calledName = call.getMethodExpression().getReferenceName();
+            if (calledName != null && (WRITE_METHOD_PATTERN.matcher(calledName).lookingAt()
+                    || calledName.equals("persist") || calledName.equals("merge") || calledName.equals("flush"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Whether the module of the entity has Spring Framework 6 (RuntimeHintsRegistrar) on its classpath.
+     * The generated sources then use the jakarta.* namespace of Spring Boot 3 (see {@link #sourceText})
+     */
+    public boolean isNativeHintsSupported() {
+        return JavaPsiFacade.getInstance(project)
+                .findClass("org.springframework.aot.hint.RuntimeHintsRegistrar", entityClass.getResolveScope()) != null;
+    }
+    
+    /**
+     * Generated sources are written against Spring Boot 2 (javax.*). On Spring Framework 6 the
+     * persistence, validation and servlet imports are moved to jakarta.*; javax.sql and the JCache
+     * API (javax.cache) keep their package in Boot 3
+     */
+    private String sourceText(StringBuilder code) {
+        String source = code.toString();
+        if (!isNativeHintsSupported()) {
+            return source;
+        }
+        return JAKARTA_IMPORT_PATTERN.matcher(source).replaceAll("import jakarta.$1.");
+    }
+    
+    private String persistenceAnnotation(String annotationName) {
+        return (isNativeHintsSupported() ? "jakarta" : "javax") + ".persistence." + annotationName;
+    }
+    
+    /**
+     * Generates the module-wide NativeHintsConfig: a Spring 6 RuntimeHintsRegistrar registering every
+     * DTO, param and entity for Jackson binding and every repository for the Spring Data JDK proxies.
+     * Types are discovered from the DTO, filter and repository packages (JavaPsiFacade.findPackage) and
+     * merged with those of the existing registrar, so each generation keeps the other entities registered.
+     * Returns null when the module is not on Spring Framework 6 (see {@link #isNativeHintsSupported()})
+     */
+    public PsiClass generateNativeHints() {
+        if (!isNativeHintsSupported()) {
+            return null;
+        }
+        String configPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getConfigPackage());
+        String configName = "NativeHintsConfig";
+        String dtoPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getDtoPackage());
+        String repositoryPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getRepositoryPackage());
+        JavaPsiFacade psiFacade = JavaPsiFacade.getInstance(project);
+        GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+        
+        // Giữ các class đã đăng ký ở lần sinh trước nếu chúng vẫn tồn tại
+        PsiClass existing = psiFacade.findClass(configPackage + "." + configName, scope);
+        Set<String> bindingTypes = new TreeSet<>();
+        Set<String> repositories = new TreeSet<>();
+        for (String type : registeredHintTypes(existing, "BINDING_TYPES")) {
+            if (psiFacade.findClass(type, scope) != null) {
+                bindingTypes.add(type);
+            }
+        }
+        for (String type : registeredHintTypes(existing, "REPOSITORIES")) {
+            if (psiFacade.findClass(type, scope) != null) {
+                repositories.add(type);
+            }
+        }
+        
+        bindingTypes.add(entityClass.getQualifiedName());
+        for (String packageName : List.of(dtoPackage, dtoPackage + ".filter")) {
+            PsiPackage psiPackage = psiFacade.findPackage(packageName);
+            if (psiPackage == null) {
+                continue;
+            }
+            for (PsiClass psiClass : psiPackage.getClasses()) {
+                if (!psiClass.isInterface() && psiClass.getQualifiedName() != null) {
+                    bindingTypes.add(psiClass.getQualifiedName());
+                }
+            }
+        }
+        PsiPackage repositoryPsiPackage = psiFacade.findPackage(repositoryPackage);
+        if (repositoryPsiPackage != null) {
+            for (PsiClass repository : repositoryPsiPackage.getClasses()) {
+                if (!repository.isInterface() || repository.getQualifiedName() == null) {
+                    continue;
+                }
+                repositories.add(repository.getQualifiedName());
+                // Entity của repository (tham số kiểu đầu tiên của JpaRepository<Entity, ID>) cũng được trả về dạng JSON
+                for (PsiClassType superType : repository.getExtendsListTypes()) {
+                    PsiType[] parameters = superType.getParameters();
+                    PsiClass entity = parameters.length > 0 && parameters[0] instanceof PsiClassType
+                        ? ((PsiClassType) parameters[0]).resolve()
+                        : null;
+                    if (entity != null && entity.getQualifiedName() != null) {
+                        bindingTypes.add(entity.getQualifiedName());
+                    }
+                }
+            }
+        }
+        
+        // Import theo tên ngắn, trùng tên ngắn thì dùng tên đầy đủ
+        Set<String> imported = new TreeSet<>();
+        Set<String> simpleNames = new HashSet<>();
+        Map<String, String> references = new LinkedHashMap<>();
+        List<String> allTypes = new ArrayList<>(bindingTypes);
+        allTypes.addAll(repositories);
+        for (String type : allTypes) {
+            String simpleName = type.substring(type.lastIndexOf('.') + 1);
+            boolean samePackage = type.equals(configPackage + "." + simpleName);
+            if (samePackage || simpleNames.add(simpleName)) {
+                references.put(type, simpleName);
+                if (!samePackage) {
+                    imported.add(type);
+                }
+            } else {
+                references.put(type, type);
+            }
+        }
+        
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(configPackage).append(";\n\n")
+            .append("import org.springframework.aop.framework.AopProxyUtils;\n")
+            .append("import org.springframework.aot.hint.BindingReflectionHintsRegistrar;\n")
+            .append("import org.springframework.aot.hint.MemberCategory;\n")
+            .append("import org.springframework.aot.hint.RuntimeHints;\n")
+            .append("import org.springframework.aot.hint.RuntimeHintsRegistrar;\n")
+            .append("import org.springframework.context.annotation.Configuration;\n")
+            .append("import org.springframework.context.annotation.ImportRuntimeHints;\n")
+            .append("import org.springframework.data.repository.Repository;\n")
+            .append("import org.springframework.transaction.interceptor.TransactionalProxy;\n");
+        for (String type : imported) {
+            code.append("import ").append(type).append(";\n");
+        }
+        code.append("\n")
+            .append("/**\n")
+            .append(" * Hint cho native image (Spring Framework 6 / Spring Boot 3) của các class được sinh trong module.\n")
+            .append(" * File được sinh lại mỗi lần sinh code và giữ các class đã đăng ký trước đó\n")
+            .append(" */\n")
+            .append("@Configuration(proxyBeanMethods = false)\n")
+            .append("@ImportRuntimeHints(").append(configName).append(".GeneratedTypesHints.class)\n")
+            .append("public class ").append(configName).append(" {\n\n")
+            .append("    // DTO, Param và entity được Jackson đọc/ghi\n")
+            .append("    static final Class<?>[] BINDING_TYPES = {\n");
+        appendClassLiterals(code, bindingTypes, references);
+        code.append("    };\n\n")
+            .append("    // Repository được Spring Data tạo bằng JDK proxy\n")
+            .append("    static final Class<?>[] REPOSITORIES = {\n");
+        appendClassLiterals(code, repositories, references);
+        code.append("    };\n\n")
+            .append("    public static class GeneratedTypesHints implements RuntimeHintsRegistrar {\n\n")
+            .append("        @Override\n")
+            .append("        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {\n")
+            // Đăng ký cả constructor, getter/setter và kiểu của các property lồng nhau
+            .append("            new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), BINDING_TYPES);\n")
+            .append("            for (Class<?> repository : REPOSITORIES) {\n")
+            .append("                hints.reflection().registerType(repository, MemberCategory.INVOKE_PUBLIC_METHODS);\n")
+            .append("                hints.proxies().registerJdkProxy(AopProxyUtils.completeJdkProxyInterfaces(\n")
+            .append("                    repository, Repository.class, TransactionalProxy.class));\n")
+            .append("            }\n")
+            .append("        }\n")
+            .append("    }\n")
+            .append("}");
+        
+        PsiJavaFile hintsFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText(configName + ".java", JavaFileType.INSTANCE, sourceText(code));
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(hintsFile);
+        
+        return hintsFile.getClasses()[0];
+    }
+    
+    /**
+     * Qualified names of the class literals in the initializer of a field of the existing registrar
+     */
+    private Set<String> registeredHintTypes(PsiClass existing, String fieldName) {
+        Set<String> types = new TreeSet<>();
+        PsiField field = existing != null ? existing.findFieldByName(fieldName, false) : null;
+        if (field == null || field.getInitializer() == null) {
+            return types;
+        }
+        for (PsiClassObjectAccessExpression literal
+                : PsiTreeUtil.findChildrenOfType(field.getInitializer(), PsiClassObjectAccessExpression.class)) {
+            types.add(literal.getOperand().getType().getCanonicalText());
+        }
+        return types;
+    }
+    
+    private void appendClassLiterals(StringBuilder code, Set<String> types, Map<String, String> references) {
+        for (String type : types) {
+            code.append("        ").append(references.get(type)).append(".class,\n");
+        }
+    }
+    
+    /**
+     * Generates the OpenAPI fragment of the entity: the paths of the generated controller and the entity,
+     * DTO and param schemas, with the ValidationOption constraints of the DTO fields. Fragments are saved
+     * under {@link #getOpenApiFragmentDirectory()} and merged into one spec by {@link #generateOpenApiSpec(PsiFile)}
+     */
+    public PsiFile generateOpenApiFragment(Set<String> dtoFields, Set<String> filterFields,
+                                           Map<String, ValidationOption> validationOptions) {
+        Map<String, Object> components = new LinkedHashMap<>();
+        components.put("schemas", buildOpenApiSchemas(dtoFields, filterFields, validationOptions));
+        
+        Map<String, Object> fragment = new LinkedHashMap<>();
+        fragment.put("paths", config.isReactive() ? buildReactiveOpenApiPaths() : buildOpenApiPaths(dtoFields, filterFields));
+        fragment.put("components", components);
+        
+        return PsiFileFactory.getInstance(project).createFileFromText(lcFirst(entityName) + ".yaml", toYaml(fragment));
+    }
+    
+    /**
+     * Merges every fragment under {@link #getOpenApiFragmentDirectory()} (with the fragment just generated
+     * taking precedence over its saved copy) into a single openapi.yaml served as a static resource,
+     * so springdoc does not have to scan the controllers at startup
+     */
+    @SuppressWarnings("unchecked")
+    public PsiFile generateOpenApiSpec(PsiFile currentFragment) {
+        // Sắp xếp theo tên file để spec ổn định giữa các lần sinh
+        Map<String, String> fragments = new TreeMap<>();
+        VirtualFile baseDir = project.getBaseDir();
+        VirtualFile fragmentDir = baseDir != null ? baseDir.findFileByRelativePath(getOpenApiFragmentDirectory()) : null;
+        if (fragmentDir != null && fragmentDir.isDirectory()) {
+            for (VirtualFile child : fragmentDir.getChildren()) {
+                if (!child.isDirectory() && "yaml".equals(child.getExtension())) {
+                    try {
+                        fragments.put(child.getName(), new String(child.contentsToByteArray(), StandardCharsets.UTF_8));
+                    } catch (IOException e) {
+                        // Bỏ qua file không đọc được
+                    }
+                }
+            }
+        }
+        fragments.put(currentFragment.getName(), currentFragment.getText());
+        
+        Map<String, Object> paths = new LinkedHashMap<>();
+        Map<String, Object> schemas = new TreeMap<>();
+        for (Map.Entry<String, String> entry : fragments.entrySet()) {
+            Map<String, Object> fragment;
+            try {
+                fragment = YAML_MAPPER.readValue(entry.getValue(), new TypeReference<Map<String, Object>>() {});
+            } catch (IOException e) {
+                throw new IllegalStateException("Invalid OpenAPI fragment " + entry.getKey() + ": " + e.getMessage(), e);
+            }
+            if (fragment == null) {
+                continue;
+            }
+            if (fragment.get("paths") instanceof Map) {
+                paths.putAll((Map<String, Object>) fragment.get("paths"));
+            }
+            if (fragment.get("components") instanceof Map
+                    && ((Map<String, Object>) fragment.get("components")).get("schemas") instanceof Map) {
+                schemas.putAll((Map<String, Object>) ((Map<String, Object>) fragment.get("components")).get("schemas"));
+            }
+        }
+        
+        String title = config.getOpenApiTitle() == null || config.getOpenApiTitle().isBlank()
+            ? project.getName() + " API"
+            : config.getOpenApiTitle();
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("title", title);
+        info.put("version", "1.0.0");
+        Map<String, Object> components = new LinkedHashMap<>();
+        components.put("schemas", schemas);
+        
+        Map<String, Object> spec = new LinkedHashMap<>();
+        spec.put("openapi", "3.0.3");
+        spec.put("info", info);
+        spec.put("paths", paths);
+        spec.put("components", components);
+        
+        String content = "# Sinh tự động từ các fragment trong " + getOpenApiFragmentDirectory()
+            + ", sửa fragment hoặc sinh lại thay vì sửa file này\n" + toYaml(spec);
+        return PsiFileFactory.getInstance(project).createFileFromText("openapi.yaml", content);
+    }
+    
+    /**
+     * Directory (relative to the project root) of the per-entity OpenAPI fragments. It is outside
+     * src/main/resources so the fragments are not packaged
+     */
+    public String getOpenApiFragmentDirectory() {
+        return "src/main/openapi";
+    }
+    
+    /**
+     * Resource directory (relative to the project root) of the merged spec, served by Spring Boot as /openapi.yaml
+     */
+    public String getOpenApiSpecDirectory() {
+        return "src/main/resources/static";
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> buildOpenApiPaths(Set<String> dtoFields, Set<String> filterFields) {
+        String basePath = "/" + lcFirst(entityName) + "s";
+        String dtoName = entityName + "Dto";
+        String pagedSchema = config.isUseSliceSearch() ? entityName + "Slice" : entityName + "Page";
+        Map<String, Object> paths = new LinkedHashMap<>();
+        
+        // GET all và POST tạo mới
+        Map<String, Object> collection = new LinkedHashMap<>();
+        if (config.isBoundedResults()) {
+            Map<String, Object> getAll = openApiOperation("list" + entityName + "s", "Danh sách " + entityName + " theo trang");
+            getAll.put("parameters", List.of(
+                openApiParameter("page", "query", false, yamlMap("type", "integer", "format", "int32", "default", 0)),
+                openApiParameter("size", "query", false, yamlMap("type", "integer", "format", "int32", "default", 20,
+                    "maximum", config.getMaxPageSize()))));
+            getAll.put("responses", yamlMap("200", openApiResponse("OK", schemaRef(pagedSchema))));
+            collection.put("get", getAll);
+        } else {
+            Map<String, Object> getAll = openApiOperation("list" + entityName + "s", "Toàn bộ " + entityName);
+            getAll.put("responses", yamlMap("200", openApiResponse("OK", arrayOf(schemaRef(entityName)))));
+            collection.put("get", getAll);
+        }
+        Map<String, Object> create = openApiOperation("create" + entityName, "Tạo " + entityName);
+        create.put("requestBody", openApiRequestBody(schemaRef(dtoName)));
+        create.put("responses", yamlMap(
+            "201", openApiResponse("Created", schemaRef(entityName)),
+            "400", openApiResponse("Validation errors", schemaRef("ValidationErrors"))));
+        collection.put("post", create);
+        paths.put(basePath, collection);
+        
+        // POST /search
+        Map<String, Object> search = openApiOperation("search" + entityName + "s", "Tìm kiếm " + entityName + " theo " + entityName + "Param");
+        search.put("requestBody", openApiRequestBody(schemaRef(entityName + "Param")));
+        search.put("responses", config.isBoundedResults()
+            ? yamlMap("200", openApiResponse("OK", schemaRef(pagedSchema)),
+                               "400", openApiResponse("Page size above the maximum", null))
+            : yamlMap("200", openApiResponse("OK", schemaRef(pagedSchema))));
+        Map<String, Object> searchItem = yamlMap("post", search);
+        if (isGetSearch()) {
+            // GET /search: cùng EntityParam nhưng lấy từ query string
+            Map<String, Object> searchByQuery = openApiOperation("search" + entityName + "sByQuery",
+                "Tìm kiếm " + entityName + " theo query string, cache được");
+            boolean etag = findVersionField() != null;
+            List<Object> parameters = new ArrayList<>();
+            if (etag) {
+                parameters.add(openApiParameter("If-None-Match", "header", false, yamlMap("type", "string")));
+            }
+            paramProperties(filterFields).forEach((name, schema) ->
+                parameters.add(openApiParameter(name, "query", false, (Map<String, Object>) schema)));
+            searchByQuery.put("parameters", parameters);
+            Map<String, Object> ok = openApiResponse("OK", schemaRef(pagedSchema));
+            Map<String, Object> responses = new LinkedHashMap<>();
+            responses.put("200", ok);
+            if (etag) {
+                ok.put("headers", yamlMap("ETag", yamlMap("description", "ETag yếu theo id và @Version của kết quả",
+                    "schema", yamlMap("type", "string"))));
+                responses.put("304", openApiResponse("Not modified", null));
+            }
+            if (config.isBoundedResults()) {
+                responses.put("400", openApiResponse("Page size above the maximum", null));
+            }
+            searchByQuery.put("responses", responses);
+            searchItem = yamlMap("get", searchByQuery, "post", search);
+        }
+        paths.put(basePath + "/search", searchItem);
+        
+        // GET/PUT/PATCH/DELETE theo id
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("parameters", List.of(openApiParameter("id", "path", true, openApiType(resolveIdType()))));
+        Map<String, Object> getById = openApiOperation("get" + entityName, "Lấy " + entityName + " theo id");
+        getById.put("responses", yamlMap(
+            "200", openApiResponse("OK", schemaRef(entityName)),
+            "404", openApiResponse("Not found", null)));
+        item.put("get", getById);
+        
+        Map<String, Object> update = openApiOperation("update" + entityName, "Cập nhật " + entityName);
+        update.put("requestBody", openApiRequestBody(schemaRef(dtoName)));
+        Map<String, Object> updated = isDirectWrites() && !directUpdateFields(dtoFields).isEmpty()
+            ? openApiResponse("Updated", null)
+            : openApiResponse("OK", schemaRef(entityName));
+        update.put("responses", yamlMap(
+            isDirectWrites() && !directUpdateFields(dtoFields).isEmpty() ? "204" : "200", updated,
+            "400", openApiResponse("Validation errors", schemaRef("ValidationErrors")),
+            "404", openApiResponse("Not found", null)));
+        item.put("put", update);
+        
+        if (isPatchEndpoint(dtoFields)) {
+            Map<String, Object> patch = openApiOperation("patch" + entityName, "Cập nhật các trường có trong body");
+            patch.put("requestBody", openApiRequestBody(schemaRef(entityName + "Patch")));
+            patch.put("responses", yamlMap(
+                "200", openApiResponse("OK", schemaRef(entityName)),
+                "400", openApiResponse("Validation errors", schemaRef("ValidationErrors")),
+                "404", openApiResponse("Not found", null)));
+            item.put("patch", patch);
+        }
+        
+        Map<String, Object> delete = openApiOperation("delete" + entityName, "Xóa " + entityName);
+        delete.put("responses", isDirectDelete()
+            ? yamlMap("204", openApiResponse("Deleted", null), "404", openApiResponse("Not found", null))
+            : yamlMap("204", openApiResponse("Deleted", null)));
+        item.put("delete", delete);
+        paths.put(basePath + "/{id}", item);
+        
+        if (config.isGenerateFetchByIds()) {
+            Map<String, Object> getByIds = openApiOperation("get" + entityName + "sByIds", "Lấy nhiều " + entityName + " theo id, theo thứ tự của request");
+            getByIds.put("requestBody", openApiRequestBody(arrayOf(openApiType(resolveIdType()))));
+            getByIds.put("responses", config.isBoundedResults()
+                ? yamlMap("200", openApiResponse("OK", arrayOf(schemaRef(entityName))),
+                    "400", openApiResponse("More than " + config.getMaxPageSize() + " ids", null))
+                : yamlMap("200", openApiResponse("OK", arrayOf(schemaRef(entityName)))));
+            paths.put(basePath + "/by-ids", yamlMap("post", getByIds));
+        }
+        
+        if (config.isGenerateBatchOperations()) {
+            Map<String, Object> batch = new LinkedHashMap<>();
+            Map<String, Object> createBatch = openApiOperation("create" + entityName + "Batch", "Tạo nhiều " + entityName + " theo lô");
+            createBatch.put("requestBody", openApiRequestBody(arrayOf(schemaRef(dtoName))));
+            createBatch.put("responses", yamlMap("201", openApiResponse("Created", arrayOf(schemaRef(entityName))),
+                "400", openApiResponse("Validation errors", schemaRef("ValidationErrors"))));
+            batch.put("post", createBatch);
+            
+            Map<String, Object> updateBatch = openApiOperation("update" + entityName + "Batch", "Cập nhật nhiều " + entityName + " theo lô");
+            updateBatch.put("requestBody", openApiRequestBody(yamlMap("type", "object", "additionalProperties", schemaRef(dtoName))));
+            updateBatch.put("responses", yamlMap("200", openApiResponse("OK", arrayOf(schemaRef(entityName))),
+                "400", openApiResponse("Validation errors", schemaRef("ValidationErrors"))));
+            batch.put("put", updateBatch);
+            
+            Map<String, Object> deleteBatch = openApiOperation("delete" + entityName + "Batch", "Xóa nhiều " + entityName + " theo id");
+            deleteBatch.put("requestBody", openApiRequestBody(arrayOf(openApiType(resolveIdType()))));
+            deleteBatch.put("responses", yamlMap("204", openApiResponse("Deleted", null)));
+            batch.put("delete", deleteBatch);
+            paths.put(basePath + "/batch", batch);
+        }
+        
+        if (config.isGenerateStreamingExport()) {
+            Map<String, Object> export = openApiOperation("export" + entityName + "s", "Xuất toàn bộ " + entityName + " dạng NDJSON hoặc CSV");
+            export.put("parameters", List.of(openApiParameter("format", "query", false,
+                yamlMap("type", "string", "enum", List.of("ndjson", "csv"), "default", "ndjson"))));
+            Map<String, Object> content = new LinkedHashMap<>();
+            content.put("application/x-ndjson", yamlMap("schema", yamlMap("type", "string")));
+            content.put("text/csv", yamlMap("schema", yamlMap("type", "string")));
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("description", "OK");
+            response.put("content", content);
+            export.put("responses", yamlMap("200", response));
+            paths.put(basePath + "/export", yamlMap("get", export));
+        }
+        
+        return paths;
+    }
+    
+    private Map<String, Object> buildReactiveOpenApiPaths() {
+        String basePath = "/" + lcFirst(entityName) + "s";
+        String idType = resolveIdType();
+        Map<String, Object> paths = new LinkedHashMap<>();
+        
+        Map<String, Object> collection = new LinkedHashMap<>();
+        Map<String, Object> getAll = openApiOperation("list" + entityName + "s", "Toàn bộ " + entityName);
+        getAll.put("responses", yamlMap("200", openApiResponse("OK", arrayOf(schemaRef(entityName)))));
+        collection.put("get", getAll);
+        Map<String, Object> create = openApiOperation("create" + entityName, "Tạo " + entityName);
+        create.put("requestBody", openApiRequestBody(schemaRef(entityName + "Dto")));
+        create.put("responses", yamlMap(
+            "201", openApiResponse("Created", schemaRef(entityName)),
+            "400", openApiResponse("Validation errors", null)));
+        collection.put("post", create);
+        paths.put(basePath, collection);
+        
+        Map<String, Object> search = openApiOperation("search" + entityName + "s", "Tìm kiếm " + entityName + " theo " + entityName + "Param");
+        search.put("requestBody", openApiRequestBody(schemaRef(entityName + "Param")));
+        search.put("responses", yamlMap("200", openApiResponse("OK", arrayOf(schemaRef(entityName)))));
+        paths.put(basePath + "/search", yamlMap("post", search));
+        
+        Map<String, Object> searchAfter = openApiOperation("search" + entityName + "sAfter", "Phân trang keyset theo id");
+        searchAfter.put("parameters", List.of(
+            openApiParameter("lastId", "query", false, openApiType(idType)),
+            openApiParameter("size", "query", false, yamlMap("type", "integer", "format", "int32", "default", 20))));
+        searchAfter.put("responses", yamlMap("200", openApiResponse("OK", arrayOf(schemaRef(entityName)))));
+        paths.put(basePath + "/search-after", yamlMap("get", searchAfter));
+        
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("parameters", List.of(openApiParameter("id", "path", true, openApiType(idType))));
+        Map<String, Object> getById = openApiOperation("get" + entityName, "Lấy " + entityName + " theo id");
+        getById.put("responses", yamlMap(
+            "200", openApiResponse("OK", schemaRef(entityName)),
+            "404", openApiResponse("Not found", null)));
+        item.put("get", getById);
+        Map<String, Object> update = openApiOperation("update" + entityName, "Cập nhật " + entityName);
+        update.put("requestBody", openApiRequestBody(schemaRef(entityName + "Dto")));
+        update.put("responses", yamlMap(
+            "200", openApiResponse("OK", schemaRef(entityName)),
+            "400", openApiResponse("Validation errors", null),
+            "404", openApiResponse("Not found", null)));
+        item.put("put", update);
+        Map<String, Object> delete = openApiOperation("delete" + entityName, "Xóa " + entityName);
+        delete.put("responses", yamlMap("204", openApiResponse("Deleted", null)));
+        item.put("delete", delete);
+        paths.put(basePath + "/{id}", item);
+        
+        return paths;
+    }
+    
+    private Map<String, Object> buildOpenApiSchemas(Set<String> dtoFields, Set<String> filterFields,
+                                                    Map<String, ValidationOption> validationOptions) {
+        Map<String, Object> schemas = new LinkedHashMap<>();
+        
+        // Entity được trả về trực tiếp bởi controller
+        Map<String, Object> entityProperties = new LinkedHashMap<>();
+        for (ClassField field : allFields) {
+            entityProperties.put(field.getName(), openApiFieldType(field));
+        }
+        schemas.put(entityName, objectSchema(entityProperties, List.of()));
+        
+        // DTO với các ràng buộc của ValidationOption
+        Map<String, Object> dtoProperties = new LinkedHashMap<>();
+        List<String> required = new ArrayList<>();
+        for (ClassField field : allFields) {
+            if (!dtoFields.contains(field.getName())) {
+                continue;
+            }
+            Map<String, Object> property = openApiFieldType(field);
+            ValidationOption option = validationOptions != null ? validationOptions.get(field.getName()) : null;
+            if (option != null) {
+                if (option.isRequired() || option.isNotBlank() || option.isNotEmpty()) {
+                    required.add(field.getName());
+                }
+                applyValidationConstraints(property, option);
+            }
+            dtoProperties.put(field.getName(), property);
+        }
+        schemas.put(entityName + "Dto", objectSchema(dtoProperties, required));
+        
+        if (isPatchEndpoint(dtoFields)) {
+            Map<String, Object> patchProperties = new LinkedHashMap<>();
+            for (ClassField field : directUpdateFields(dtoFields)) {
+                patchProperties.put(field.getName(), openApiFieldType(field));
+            }
+            Map<String, Object> patchSchema = objectSchema(patchProperties, List.of());
+            patchSchema.put("description", "Chỉ các trường có trong body được cập nhật, null xóa giá trị");
+            schemas.put(entityName + "Patch", patchSchema);
+        }
+        
+        schemas.put(entityName + "Param", objectSchema(paramProperties(filterFields), List.of()));
+        
+        if (!config.isReactive()) {
+            Map<String, Object> pageProperties = new LinkedHashMap<>();
+            pageProperties.put("content", arrayOf(schemaRef(entityName)));
+            if (config.isUseSliceSearch()) {
+                pageProperties.put("page", openApiType("int"));
+                pageProperties.put("size", openApiType("int"));
+                pageProperties.put("hasNext", openApiType("boolean"));
+                schemas.put(entityName + "Slice", objectSchema(pageProperties, List.of()));
+            } else {
+                pageProperties.put("totalElements", openApiType("long"));
+                pageProperties.put("totalPages", openApiType("int"));
+                pageProperties.put("number", openApiType("int"));
+                pageProperties.put("size", openApiType("int"));
+                pageProperties.put("numberOfElements", openApiType("int"));
+                pageProperties.put("first", openApiType("boolean"));
+                pageProperties.put("last", openApiType("boolean"));
+                pageProperties.put("empty", openApiType("boolean"));
+                if (isEstimatedCount()) {
+                    pageProperties.put("estimated", openApiType("boolean"));
+                }
+                schemas.put(entityName + "Page", objectSchema(pageProperties, List.of()));
+            }
             
-        } else {
-            // Simple controller if service is not available
-            code.append("import org.springframework.web.bind.annotation.*;\n\n")
-                .append("@RestController\n")
-                .append("@RequestMapping(\"/").append(lcFirst(entityName)).append("s\")\n")
-                .append("public class ").append(controllerName).append(" {\n");
+            Map<String, Object> validationErrors = new LinkedHashMap<>();
+            validationErrors.put("type", "object");
+            validationErrors.put("additionalProperties", yamlMap("type", "string"));
+            schemas.put("ValidationErrors", validationErrors);
         }
         
-        code.append("}");
+        return schemas;
+    }
+    
+    /**
+     * Properties of the generated EntityParam, following the same rules as generateFilter
+     */
+    private Map<String, Object> paramProperties(Set<String> filterFields) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        for (ClassField field : allFields) {
+            if (!filterFields.contains(field.getName())) {
+                continue;
+            }
+            String type = field.getType();
+            String capitalized = capitalizeFirstLetter(field.getName());
+            if (type.equals("String") || type.equals("boolean") || type.equals("Boolean")
+                    || type.startsWith(entityClass.getQualifiedName() + ".")) {
+                properties.put(field.getName(), openApiFieldType(field));
+            } else if (isNumericType(type)) {
+                properties.put("min" + capitalized, openApiFieldType(field));
+                properties.put("max" + capitalized, openApiFieldType(field));
+            } else if (type.contains("Date") || type.contains("LocalDate")) {
+                properties.put("from" + capitalized, openApiFieldType(field));
+                properties.put("to" + capitalized, openApiFieldType(field));
+            }
+        }
         
-        // Tạo file
-        PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
-        PsiJavaFile controllerFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
-                .createFileFromText(controllerName + ".java", JavaFileType.INSTANCE, code.toString());
+        Map<String, Object> page = openApiType("Integer");
+        page.put("default", 0);
+        Map<String, Object> size = openApiType("Integer");
+        size.put("default", 20);
+        if (config.isBoundedResults()) {
+            page.put("minimum", 0);
+            size.put("minimum", 1);
+            size.put("maximum", config.getMaxPageSize());
+        }
+        properties.put("page", page);
+        properties.put("size", size);
+        return properties;
+    }
+    
+    /**
+     * Maps the Bean Validation constraints configured for a DTO field onto JSON schema keywords
+     */
+    private void applyValidationConstraints(Map<String, Object> property, ValidationOption option) {
+        Object type = property.get("type");
+        boolean array = "array".equals(type);
+        boolean string = "string".equals(type);
+        if ((option.isNotBlank() || option.isNotEmpty()) && (array || string)) {
+            property.put(array ? "minItems" : "minLength", 1);
+        }
+        if (option.isEmail() && string) {
+            property.put("format", "email");
+        }
+        if (option.isSize() && (array || string)) {
+            property.put(array ? "minItems" : "minLength", option.getMinSize());
+            property.put(array ? "maxItems" : "maxLength", option.getMaxSize());
+        }
+        if (option.isRange() && ("integer".equals(type) || "number".equals(type))) {
+            putNumber(property, "minimum", option.getMin());
+            putNumber(property, "maximum", option.getMax());
+        }
+        if (option.isPattern() && option.getPatternValue() != null && !option.getPatternValue().isEmpty()) {
+            property.put("pattern", option.getPatternValue());
+        }
+        // OpenAPI không có từ khóa cho @Past/@Future nên ghi vào description
+        if (option.isPast()) {
+            property.put("description", option.getMessageForValidation("past"));
+        } else if (option.isFuture()) {
+            property.put("description", option.getMessageForValidation("future"));
+        }
+    }
+    
+    private void putNumber(Map<String, Object> property, String keyword, String value) {
+        try {
+            property.put(keyword, new BigDecimal(value.trim()));
+        } catch (NumberFormatException | NullPointerException e) {
+            // Giá trị không phải số thì bỏ qua ràng buộc
+        }
+    }
+    
+    /**
+     * JSON schema of an entity field: enums list their constants, associations become objects
+     */
+    private Map<String, Object> openApiFieldType(ClassField field) {
+        PsiField psiField = entityClass.findFieldByName(field.getName(), true);
+        PsiType psiType = psiField != null ? psiField.getType() : null;
+        if (field.isCollection()) {
+            PsiType elementType = psiType instanceof PsiClassType && ((PsiClassType) psiType).getParameters().length > 0
+                ? ((PsiClassType) psiType).getParameters()[0]
+                : null;
+            return arrayOf(elementType != null ? openApiType(elementType.getPresentableText()) : yamlMap("type", "object"));
+        }
+        if (psiType instanceof PsiClassType) {
+            PsiClass psiClass = ((PsiClassType) psiType).resolve();
+            if (psiClass != null && psiClass.isEnum()) {
+                List<String> constants = new ArrayList<>();
+                for (PsiField constant : psiClass.getFields()) {
+                    if (constant instanceof PsiEnumConstant) {
+                        constants.add(constant.getName());
+                    }
+                }
+                Map<String, Object> schema = new LinkedHashMap<>();
+                schema.put("type", "string");
+                schema.put("enum", constants);
+                return schema;
+            }
+        }
+        return openApiType(field.getType());
+    }
+    
+    private Map<String, Object> openApiType(String javaType) {
+        switch (javaType) {
+            case "String":
+            case "char":
+            case "Character":
+                return yamlMap("type", "string");
+            case "int":
+            case "Integer":
+            case "short":
+            case "Short":
+            case "byte":
+            case "Byte":
+                return yamlMap("type", "integer", "format", "int32");
+            case "long":
+            case "Long":
+            case "BigInteger":
+                return yamlMap("type", "integer", "format", "int64");
+            case "float":
+            case "Float":
+                return yamlMap("type", "number", "format", "float");
+            case "double":
+            case "Double":
+                return yamlMap("type", "number", "format", "double");
+            case "BigDecimal":
+                return yamlMap("type", "number");
+            case "boolean":
+            case "Boolean":
+                return yamlMap("type", "boolean");
+            case "LocalDate":
+                return yamlMap("type", "string", "format", "date");
+            case "LocalDateTime":
+            case "OffsetDateTime":
+            case "ZonedDateTime":
+            case "Instant":
+            case "Date":
+            case "Timestamp":
+                return yamlMap("type", "string", "format", "date-time");
+            case "LocalTime":
+                return yamlMap("type", "string", "format", "time");
+            case "UUID":
+                return yamlMap("type", "string", "format", "uuid");
+            case "byte[]":
+                return yamlMap("type", "string", "format", "byte");
+            default:
+                return yamlMap("type", "object");
+        }
+    }
+    
+    private Map<String, Object> objectSchema(Map<String, Object> properties, List<String> required) {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "object");
+        if (!required.isEmpty()) {
+            schema.put("required", required);
+        }
+        schema.put("properties", properties);
+        return schema;
+    }
+    
+    private Map<String, Object> openApiOperation(String operationId, String summary) {
+        Map<String, Object> operation = new LinkedHashMap<>();
+        operation.put("tags", List.of(entityName));
+        operation.put("operationId", operationId);
+        operation.put("summary", summary);
+        return operation;
+    }
+    
+    private Map<String, Object> openApiParameter(String name, String in, boolean required, Map<String, Object> schema) {
+        Map<String, Object> parameter = new LinkedHashMap<>();
+        parameter.put("name", name);
+        parameter.put("in", in);
+        parameter.put("required", required);
+        parameter.put("schema", schema);
+        return parameter;
+    }
+    
+    private Map<String, Object> openApiRequestBody(Map<String, Object> schema) {
+        Map<String, Object> requestBody = new LinkedHashMap<>();
+        requestBody.put("required", true);
+        requestBody.put("content", yamlMap("application/json", yamlMap("schema", schema)));
+        return requestBody;
+    }
+    
+    private Map<String, Object> openApiResponse(String description, Map<String, Object> schema) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("description", description);
+        if (schema != null) {
+            response.put("content", yamlMap("application/json", yamlMap("schema", schema)));
+        }
+        return response;
+    }
+    
+    /**
+     * Ordered map of the given keys and values (key, value, key, value, ...), so the YAML output is stable
+     */
+    private Map<String, Object> yamlMap(Object... keysAndValues) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            map.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return map;
+    }
+    
+    private Map<String, Object> schemaRef(String schemaName) {
+        return yamlMap("$ref", "#/components/schemas/" + schemaName);
+    }
+    
+    private Map<String, Object> arrayOf(Map<String, Object> items) {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "array");
+        schema.put("items", items);
+        return schema;
+    }
+    
+    private String toYaml(Map<String, Object> document) {
+        try {
+            return YAML_MAPPER.writeValueAsString(document);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write OpenAPI document: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Generates the shared SliceResponse returned by the controllers when Slice search is enabled.
+     * It carries hasNext instead of total counts
+     */
+    public PsiClass generateSliceResponse() {
+        String dtoPackage = JavaClassAnalyzer.derivePackageName(basePackage, config.getDtoPackage());
         
-        JavaCodeStyleManager.getInstance(project).optimizeImports(controllerFile);
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(dtoPackage).append(";\n\n")
+            .append("import java.util.List;\n")
+            .append("import org.springframework.data.domain.Slice;\n\n")
+            .append("/**\n")
+            .append(" * Kết quả phân trang không có tổng số bản ghi, chỉ cho biết còn trang tiếp theo hay không\n")
+            .append(" */\n")
+            .append("public class SliceResponse<T> {\n\n")
+            .append("    private final List<T> content;\n")
+            .append("    private final int page;\n")
+            .append("    private final int size;\n")
+            .append("    private final boolean hasNext;\n\n")
+            .append("    public SliceResponse(List<T> content, int page, int size, boolean hasNext) {\n")
+            .append("        this.content = content;\n")
+            .append("        this.page = page;\n")
+            .append("        this.size = size;\n")
+            .append("        this.hasNext = hasNext;\n")
+            .append("    }\n\n")
+            .append("    public static <T> SliceResponse<T> of(Slice<T> slice) {\n")
+            .append("        return new SliceResponse<>(slice.getContent(), slice.getNumber(), slice.getSize(), slice.hasNext());\n")
+            .append("    }\n\n")
+            .append("    public List<T> getContent() {\n")
+            .append("        return content;\n")
+            .append("    }\n\n")
+            .append("    public int getPage() {\n")
+            .append("        return page;\n")
+            .append("    }\n\n")
+            .append("    public int getSize() {\n")
+            .append("        return size;\n")
+            .append("    }\n\n")
+            .append("    public boolean isHasNext() {\n")
+            .append("        return hasNext;\n")
+            .append("    }\n")
+            .append("}");
         
-        return controllerFile.getClasses()[0];
+        PsiJavaFile responseFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText("SliceResponse.java", JavaFileType.INSTANCE, sourceText(code));
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(responseFile);
+        
+        return responseFile.getClasses()[0];
     }
     
     public PsiClass generateFilter(Set<String> selectedFields) {
@@ -901,9 +6211,30 @@ public class CodeGenerationService {
         String filterPackage = dtoPackage + ".filter";
         String paramName = entityName + "Param";
         
+        if (config.isUseRecords()) {
+            return generateRecordFilter(selectedFields, filterPackage, paramName);
+        }
+        
         StringBuilder code = new StringBuilder();
         code.append("package ").append(filterPackage).append(";\n\n");
         
+        // Param dùng làm cache key nên cần equals/hashCode khi không có Lombok
+        boolean generateEquality = !config.isUseLombok() && isSearchCached();
+        if (generateEquality) {
+            code.append("import java.util.Objects;\n\n");
+        }
+        if (config.isBoundedResults()) {
+            code.append("import javax.validation.constraints.Max;\n")
+                .append("import javax.validation.constraints.Min;\n\n");
+        }
+        if (isCountedSearch()) {
+            code.append("import java.util.Arrays;\n")
+                .append("import java.util.List;\n\n");
+        }
+        if (isGetSearch()) {
+            code.append("import org.springframework.format.annotation.DateTimeFormat;\n\n");
+        }
+        
         // Thêm import Lombok nếu cần
         if (config.isUseLombok()) {
             code.append("import lombok.Data;\n")
@@ -916,6 +6247,10 @@ public class CodeGenerationService {
         
         code.append("public class ").append(paramName).append(" {\n\n");
         
+        if (config.isBoundedResults()) {
+            code.append("    public static final int MAX_PAGE_SIZE = ").append(config.getMaxPageSize()).append(";\n\n");
+        }
+        
         // Thêm các trường lọc
         for (ClassField field : allFields) {
             if (selectedFields.contains(field.getName())) {
@@ -932,9 +6267,10 @@ public class CodeGenerationService {
                 }
                 // Cho trường ngày tháng
                 else if (field.getType().contains("Date") || field.getType().contains("LocalDate")) {
-                    code.append("    private ").append(field.getType()).append(" from")
+                    String format = dateTimeFormatAnnotation(field.getType());
+                    code.append("    ").append(format).append("private ").append(field.getType()).append(" from")
                         .append(capitalizeFirstLetter(field.getName())).append(";\n");
-                    code.append("    private ").append(field.getType()).append(" to")
+                    code.append("    ").append(format).append("private ").append(field.getType()).append(" to")
                         .append(capitalizeFirstLetter(field.getName())).append(";\n");
                 }
                 // Cho trường boolean
@@ -1038,8 +6374,16 @@ public class CodeGenerationService {
         }
         
         code.append("    // Phương thức trả về trang số\n");
-        code.append("    private Integer page = 0;\n");
-        code.append("    private Integer size = 20;\n\n");
+        if (config.isBoundedResults()) {
+            code.append("    @Min(0)\n")
+                .append("    private Integer page = 0;\n")
+                .append("    @Min(1)\n")
+                .append("    @Max(MAX_PAGE_SIZE)\n")
+                .append("    private Integer size = 20;\n\n");
+        } else {
+            code.append("    private Integer page = 0;\n");
+            code.append("    private Integer size = 20;\n\n");
+        }
         
         if (!config.isUseLombok()) {
             // Getter/setter cho page và size
@@ -1060,18 +6404,379 @@ public class CodeGenerationService {
                 .append("    }\n\n");
         }
         
+        if (generateEquality) {
+            appendParamEquality(code, paramName, filterParamNames(selectedFields));
+        }
+        
+        if (isCountedSearch()) {
+            code.append("    /**\n")
+                .append("     * Khóa cache của tổng số bản ghi: chỉ gồm các điều kiện lọc, không gồm page/size\n")
+                .append("     */\n")
+                .append("    public List<Object> countKey() {\n")
+                .append("        return Arrays.asList(").append(String.join(", ", filterParamNames(selectedFields))).append(");\n")
+                .append("    }\n\n");
+        }
+        
         code.append("}");
         
         // Tạo file
         PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
         PsiJavaFile paramFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
-                .createFileFromText(paramName + ".java", JavaFileType.INSTANCE, code.toString());
+                .createFileFromText(paramName + ".java", JavaFileType.INSTANCE, sourceText(code));
+        
+        JavaCodeStyleManager.getInstance(project).optimizeImports(paramFile);
+        
+        return paramFile.getClasses()[0];
+    }
+    
+    /**
+     * Generates the EntityParam as a record. Records already provide equals/hashCode for the cache
+     * keys; the compact constructor applies the page/size defaults of the class version
+     */
+    private PsiClass generateRecordFilter(Set<String> selectedFields, String filterPackage, String paramName) {
+        List<String> components = filterParamDeclarations(selectedFields);
+        List<ClassField> filterFields = allFields.stream()
+            .filter(field -> selectedFields.contains(field.getName()))
+            .toList();
+        
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(filterPackage).append(";\n\n");
+        if (config.isBoundedResults()) {
+            code.append("import javax.validation.constraints.Max;\n")
+                .append("import javax.validation.constraints.Min;\n");
+        }
+        if (isCountedSearch()) {
+            code.append("import java.util.Arrays;\n")
+                .append("import java.util.List;\n");
+        }
+        if (isGetSearch()) {
+            code.append("import org.springframework.format.annotation.DateTimeFormat;\n");
+        }
+        appendFieldTypeImports(code, filterFields);
+        code.append("\n");
+        
+        code.append("public record ").append(paramName).append("(\n");
+        for (String component : components) {
+            code.append("        ").append(component).append(",\n");
+        }
+        if (config.isBoundedResults()) {
+            code.append("        @Min(0) Integer page,\n")
+                .append("        @Min(1) @Max(MAX_PAGE_SIZE) Integer size\n");
+        } else {
+            code.append("        Integer page,\n")
+                .append("        Integer size\n");
+        }
+        code.append(") {\n\n");
+        
+        if (config.isBoundedResults()) {
+            code.append("    public static final int MAX_PAGE_SIZE = ").append(config.getMaxPageSize()).append(";\n\n");
+        }
+        
+        code.append("    public ").append(paramName).append(" {\n")
+            .append("        if (page == null) {\n")
+            .append("            page = 0;\n")
+            .append("        }\n")
+            .append("        if (size == null) {\n")
+            .append("            size = 20;\n")
+            .append("        }\n")
+            .append("    }\n\n");
+        
+        // Param chỉ phân trang, không có điều kiện lọc
+        List<String> args = new ArrayList<>();
+        for (int i = 0; i < components.size(); i++) {
+            args.add("null");
+        }
+        args.add("page");
+        args.add("size");
+        code.append("    public static ").append(paramName).append(" of(int page, int size) {\n")
+            .append("        return new ").append(paramName).append("(").append(String.join(", ", args)).append(");\n")
+            .append("    }\n");
+        
+        if (isCountedSearch()) {
+            code.append("\n")
+                .append("    /**\n")
+                .append("     * Khóa cache của tổng số bản ghi: chỉ gồm các điều kiện lọc, không gồm page/size\n")
+                .append("     */\n")
+                .append("    public List<Object> countKey() {\n")
+                .append("        return Arrays.asList(").append(String.join(", ", filterParamNames(selectedFields))).append(");\n")
+                .append("    }\n");
+        }
+        code.append("}");
+        
+        PsiJavaFile paramFile = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText(paramName + ".java", JavaFileType.INSTANCE, sourceText(code));
         
         JavaCodeStyleManager.getInstance(project).optimizeImports(paramFile);
         
         return paramFile.getClasses()[0];
     }
     
+    /**
+     * Returns "Type name" of the filter fields declared in the generated EntityParam, in the
+     * same order as filterParamNames
+     */
+    private List<String> filterParamDeclarations(Set<String> selectedFields) {
+        List<String> declarations = new ArrayList<>();
+        for (ClassField field : allFields) {
+            if (!selectedFields.contains(field.getName())) {
+                continue;
+            }
+            String fieldType = field.getType();
+            if (isNumericType(fieldType)) {
+                declarations.add(fieldType + " min" + capitalizeFirstLetter(field.getName()));
+                declarations.add(fieldType + " max" + capitalizeFirstLetter(field.getName()));
+            } else if (!fieldType.equals("String") && (fieldType.contains("Date") || fieldType.contains("LocalDate"))) {
+                String format = dateTimeFormatAnnotation(fieldType);
+                declarations.add(format + fieldType + " from" + capitalizeFirstLetter(field.getName()));
+                declarations.add(format + fieldType + " to" + capitalizeFirstLetter(field.getName()));
+            } else if (fieldType.equals("boolean") || fieldType.equals("Boolean")) {
+                declarations.add("Boolean " + field.getName());
+            } else if (fieldType.equals("String") || fieldType.startsWith(entityClass.getQualifiedName() + ".")) {
+                declarations.add(fieldType + " " + field.getName());
+            }
+        }
+        return declarations;
+    }
+    
+    /**
+     * Accessor call of an EntityParam property: record component or JavaBean getter
+     */
+    private String paramAccessor(String propertyName) {
+        return config.isUseRecords() ? propertyName + "()" : "get" + capitalizeFirstLetter(propertyName) + "()";
+    }
+    
+    private String dtoAccessor(ClassField field) {
+        if (config.isUseRecords()) {
+            return field.getName() + "()";
+        }
+        // DTO không dùng Lombok luôn sinh getXxx, kể cả với boolean
+        return (config.isUseLombok() ? getterName(field) : "get" + capitalizeFirstLetter(field.getName())) + "()";
+    }
+    
+    /**
+     * Expression converting the String expression to the id type, as Spring converts a path variable
+     */
+    private String idFromString(String expression) {
+        switch (resolveIdType()) {
+            case "String":
+                return expression;
+            case "UUID":
+                return "UUID.fromString(" + expression + ")";
+            case "long":
+                return "Long.parseLong(" + expression + ")";
+            case "int":
+                return "Integer.parseInt(" + expression + ")";
+            default:
+                return resolveIdType() + ".valueOf(" + expression + ")";
+        }
+    }
+    
+    /**
+     * Resolves the type of the field annotated with @Id, defaulting to Long
+     */
+    private String resolveIdType() {
+        for (ClassField field : allFields) {
+            if (field.getAnnotations().stream().anyMatch(a -> a.endsWith("Id"))) {
+                return field.getType();
+            }
+        }
+        return "Long";
+    }
+    
+    /**
+     * Resolves the name of the field annotated with @Id, defaulting to "id"
+     */
+    private String resolveIdFieldName() {
+        for (ClassField field : allFields) {
+            if (field.getAnnotations().stream().anyMatch(a -> a.endsWith("Id"))) {
+                return field.getName();
+            }
+        }
+        return "id";
+    }
+    
+    /**
+     * Resolves the table name from @Table(name), then @Entity(name), falling back to the
+     * snake_case class name used by Spring Boot's default naming strategy
+     */
+    private String resolveTableName() {
+        String tableName = annotationStringValue(entityClass, "Table", "name");
+        if (tableName != null) {
+            return tableName;
+        }
+        String logicalName = annotationStringValue(entityClass, "Entity", "name");
+        return toSnakeCase(logicalName != null ? logicalName : entityName);
+    }
+    
+    /**
+     * Resolves the column name from @Column(name) or @JoinColumn(name), falling back to the
+     * snake_case field name (with an _id suffix for to-one associations)
+     */
+    private String resolveColumnName(ClassField field) {
+        PsiField psiField = entityClass.findFieldByName(field.getName(), true);
+        if (psiField != null) {
+            String columnName = annotationStringValue(psiField, "Column", "name");
+            if (columnName == null) {
+                columnName = annotationStringValue(psiField, "JoinColumn", "name");
+            }
+            if (columnName != null) {
+                return columnName;
+            }
+        }
+        boolean toOne = field.getAnnotations().stream()
+            .anyMatch(a -> a.endsWith(".ManyToOne") || a.endsWith(".OneToOne"));
+        return toSnakeCase(field.getName()) + (toOne ? "_id" : "");
+    }
+    
+    /**
+     * Reads a non-empty string attribute of a javax or jakarta persistence annotation
+     */
+    private String annotationStringValue(PsiModifierListOwner owner, String annotationName, String attribute) {
+        PsiAnnotation annotation = owner.getAnnotation("javax.persistence." + annotationName);
+        if (annotation == null) {
+            annotation = owner.getAnnotation("jakarta.persistence." + annotationName);
+        }
+        if (annotation == null) {
+            return null;
+        }
+        PsiAnnotationMemberValue value = annotation.findAttributeValue(attribute);
+        if (value instanceof PsiLiteralExpression) {
+            Object literal = ((PsiLiteralExpression) value).getValue();
+            if (literal instanceof String && !((String) literal).isEmpty()) {
+                return (String) literal;
+            }
+        }
+        return null;
+    }
+    
+    private String toSnakeCase(String str) {
+        return str.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase();
+    }
+    
+    /**
+     * Page search whose total is cached and/or estimated instead of recomputed by Spring Data
+     */
+    private boolean isCountedSearch() {
+        return !config.isUseSliceSearch() && (config.isCacheSearchCounts() || config.isUseEstimatedCount());
+    }
+    
+    private boolean isEstimatedCount() {
+        return !config.isUseSliceSearch() && config.isUseEstimatedCount();
+    }
+    
+    /**
+     * Paged result type of the generated repository and service: Slice skips the count query
+     */
+    private String pageType() {
+        return config.isUseSliceSearch() ? "Slice" : "Page";
+    }
+    
+    private String findAllPagedMethod() {
+        return config.isUseSliceSearch() ? "findAllBy" : "findAll";
+    }
+    
+    private String pagedResultType() {
+        return config.isUseSliceSearch() ? "SliceResponse<" + entityName + ">" : "Page<" + entityName + ">";
+    }
+    
+    private String pagedResult(String expression) {
+        return config.isUseSliceSearch() ? "SliceResponse.of(" + expression + ")" : expression;
+    }
+    
+    /**
+     * Prefix of the generated List finders: findBy, or findTopNBy when results are bounded
+     */
+    private String listFinderPrefix() {
+        return config.isBoundedResults() ? "findTop" + config.getMaxPageSize() + "By" : "findBy";
+    }
+    
+    private String pageRequestExpression() {
+        return config.isBoundedResults()
+            ? "boundedPageRequest(param." + paramAccessor("page") + ", param." + paramAccessor("size") + ")"
+            : "PageRequest.of(param." + paramAccessor("page") + ", param." + paramAccessor("size") + ")";
+    }
+    
+    /**
+     * Appends the helper clamping page and size so a request never loads more than MAX_PAGE_SIZE rows
+     */
+    private void appendBoundedPageRequestMethod(StringBuilder code) {
+        code.append("\n")
+            .append("    private static Pageable boundedPageRequest(Integer page, Integer size) {\n")
+            .append("        int safePage = page == null ? 0 : Math.max(page, 0);\n")
+            .append("        int safeSize = size == null ? MAX_PAGE_SIZE : Math.min(Math.max(size, 1), MAX_PAGE_SIZE);\n")
+            .append("        return PageRequest.of(safePage, safeSize);\n")
+            .append("    }\n");
+    }
+    
+    private String cacheName() {
+        return lcFirst(entityName);
+    }
+    
+    private String searchCacheName() {
+        return lcFirst(entityName) + "Search";
+    }
+    
+    private String getterName(ClassField field) {
+        String prefix = field.getType().equals("boolean") ? "is" : "get";
+        return prefix + capitalizeFirstLetter(field.getName());
+    }
+    
+    /**
+     * Returns the names of the filter fields declared in the generated EntityParam, in declaration order
+     */
+    private List<String> filterParamNames(Set<String> selectedFields) {
+        List<String> names = new java.util.ArrayList<>();
+        for (ClassField field : allFields) {
+            if (!selectedFields.contains(field.getName())) {
+                continue;
+            }
+            String fieldType = field.getType();
+            if (isNumericType(fieldType)) {
+                names.add("min" + capitalizeFirstLetter(field.getName()));
+                names.add("max" + capitalizeFirstLetter(field.getName()));
+            } else if (!fieldType.equals("String") && (fieldType.contains("Date") || fieldType.contains("LocalDate"))) {
+                names.add("from" + capitalizeFirstLetter(field.getName()));
+                names.add("to" + capitalizeFirstLetter(field.getName()));
+            } else if (fieldType.equals("String") || fieldType.equals("boolean") || fieldType.equals("Boolean")
+                    || fieldType.startsWith(entityClass.getQualifiedName() + ".")) {
+                names.add(field.getName());
+            }
+        }
+        return names;
+    }
+    
+    /**
+     * Appends equals/hashCode over the filter fields plus page and size
+     */
+    private void appendParamEquality(StringBuilder code, String paramName, List<String> fieldNames) {
+        List<String> names = new java.util.ArrayList<>(fieldNames);
+        names.add("page");
+        names.add("size");
+        
+        code.append("    @Override\n")
+            .append("    public boolean equals(Object o) {\n")
+            .append("        if (this == o) {\n")
+            .append("            return true;\n")
+            .append("        }\n")
+            .append("        if (o == null || getClass() != o.getClass()) {\n")
+            .append("            return false;\n")
+            .append("        }\n")
+            .append("        ").append(paramName).append(" that = (").append(paramName).append(") o;\n")
+            .append("        return ");
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) {
+                code.append("\n            && ");
+            }
+            code.append("Objects.equals(").append(names.get(i)).append(", that.").append(names.get(i)).append(")");
+        }
+        code.append(";\n")
+            .append("    }\n\n")
+            .append("    @Override\n")
+            .append("    public int hashCode() {\n")
+            .append("        return Objects.hash(").append(String.join(", ", names)).append(");\n")
+            .append("    }\n\n");
+    }
+    
     private boolean isNumericType(String type) {
         return type.equals("int") || type.equals("Integer") || 
                type.equals("long") || type.equals("Long") ||
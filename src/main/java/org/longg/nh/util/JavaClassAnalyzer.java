@@ -157,6 +157,33 @@ public class JavaClassAnalyzer {
                 });
     }
 
+    /**
+     * Finds the first of the given javax or jakarta persistence annotations
+     */
+    public static PsiAnnotation findPersistenceAnnotation(PsiModifierListOwner owner, String... annotationNames) {
+        for (String annotationName : annotationNames) {
+            PsiAnnotation annotation = owner.getAnnotation("javax.persistence." + annotationName);
+            if (annotation == null) {
+                annotation = owner.getAnnotation("jakarta.persistence." + annotationName);
+            }
+            if (annotation != null) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether an association annotation loads eagerly; to-one associations are EAGER by default
+     */
+    public static boolean isEagerFetch(PsiAnnotation association, boolean eagerByDefault) {
+        PsiAnnotationMemberValue fetch = association.findDeclaredAttributeValue("fetch");
+        if (fetch == null) {
+            return eagerByDefault;
+        }
+        return fetch.getText().endsWith("EAGER");
+    }
+
     public static String getPackageName(PsiJavaFile javaFile) {
         return javaFile.getPackageName();
     }
@@ -0,0 +1,50 @@
+package org.longg.nh.util;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.psi.PsiDirectory;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+
+public class ResourceFileWriter {
+
+    /**
+     * Saves a non-Java file (e.g. a migration script) under a directory relative to the project root,
+     * replacing an existing file with the same name unless its content is unchanged
+     */
+    public static PsiFile save(Project project, PsiFile file, String relativePath) {
+        PsiDirectory rootDir = ApplicationManager.getApplication().runReadAction(
+            (Computable<PsiDirectory>) () -> PsiManager.getInstance(project).findDirectory(project.getBaseDir())
+        );
+        if (rootDir == null) {
+            throw new RuntimeException("Cannot find project directory");
+        }
+        
+        PsiDirectory targetDir = WriteCommandAction.writeCommandAction(project)
+            .compute(() -> {
+                PsiDirectory currentDir = rootDir;
+                for (String part : relativePath.split("/")) {
+                    if (part.isEmpty()) continue;
+                    PsiDirectory existingDir = currentDir.findSubdirectory(part);
+                    currentDir = existingDir != null ? existingDir : currentDir.createSubdirectory(part);
+                }
+                return currentDir;
+            });
+        
+        PsiFile existingFile = ApplicationManager.getApplication().runReadAction(
+            (Computable<PsiFile>) () -> targetDir.findFile(file.getName())
+        );
+        if (existingFile != null) {
+            if (existingFile.getText().equals(file.getText())) {
+                return existingFile;
+            }
+            WriteCommandAction.writeCommandAction(project)
+                .run(() -> existingFile.delete());
+        }
+        
+        return (PsiFile) WriteCommandAction.writeCommandAction(project)
+            .compute(() -> targetDir.add(file));
+    }
+}